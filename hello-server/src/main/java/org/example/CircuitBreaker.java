@@ -0,0 +1,136 @@
+package org.example;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops calling a dependency after a run of failures, and lets it back in once a probe succeeds.
+ *
+ * <p>While closed, callers ask {@link #allowRequest()} and report each call. After
+ * {@code failureThreshold} failures in a row the breaker opens: callers are turned away without
+ * waiting on the dependency, and a background thread runs the probe every probe interval. The
+ * first probe that returns closes the breaker again; whatever the probe returns is added to the
+ * event recording it, so a probe that also catches the dependency up can say how far.
+ *
+ * <p>State changes are recorded as span events: on the current span when a request trips the
+ * breaker, and on a span of their own when the probe closes it.
+ */
+final class CircuitBreaker implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final AttributeKey<String> NAME = AttributeKey.stringKey("circuit_breaker.name");
+    private static final AttributeKey<Long> FAILURES = AttributeKey.longKey("circuit_breaker.consecutive_failures");
+    private static final AttributeKey<String> ERROR = AttributeKey.stringKey("circuit_breaker.error");
+
+    enum State {
+        CLOSED,
+        OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long probeIntervalMillis;
+    private final Callable<Attributes> probe;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final ScheduledExecutorService prober;
+
+    CircuitBreaker(String name, int failureThreshold, long probeIntervalMillis, Callable<Attributes> probe) {
+        if (failureThreshold <= 0 || probeIntervalMillis <= 0) {
+            throw new IllegalArgumentException("failureThreshold and probeIntervalMillis must be positive");
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.probe = probe;
+        this.prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-breaker-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** Tells whether the dependency may be called, false while the breaker is open. */
+    boolean allowRequest() {
+        return state.get() == State.CLOSED;
+    }
+
+    State getState() {
+        return state.get();
+    }
+
+    void recordSuccess() {
+        // a plain read first, most calls have nothing to reset
+        if (consecutiveFailures.get() != 0) {
+            consecutiveFailures.set(0);
+        }
+    }
+
+    void recordFailure(Throwable error) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (failures >= failureThreshold && state.compareAndSet(State.CLOSED, State.OPEN)) {
+            logger.warn("Opening the {} circuit breaker after {} failures in a row", name, failures);
+            Span.current().addEvent("circuit_breaker.opened", Attributes.of(
+                    NAME, name, FAILURES, (long) failures, ERROR, String.valueOf(error)));
+            scheduleProbe();
+        }
+    }
+
+    private void scheduleProbe() {
+        try {
+            prober.schedule(this::runProbe, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private void runProbe() {
+        Attributes result;
+        try {
+            result = probe.call();
+        } catch (Exception e) {
+            logger.debug("The {} circuit breaker probe failed: {}", name, e.toString());
+            scheduleProbe();
+            return;
+        }
+        consecutiveFailures.set(0);
+        state.set(State.CLOSED);
+        logger.info("Closing the {} circuit breaker", name);
+        // no request is in progress on the probe thread
+        Span span = GlobalOpenTelemetry.getTracer("org.example.hello-server").spanBuilder(name + " circuit breaker").startSpan();
+        span.addEvent("circuit_breaker.closed", result == null
+                ? Attributes.of(NAME, name)
+                : Attributes.builder().put(NAME, name).putAll(result).build());
+        span.end();
+    }
+
+    @Override
+    public void close() {
+        prober.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "CircuitBreaker{"
+                + "name="
+                + name
+                + ", state="
+                + state.get()
+                + ", failureThreshold="
+                + failureThreshold
+                + ", probeIntervalMillis="
+                + probeIntervalMillis
+                + '}';
+    }
+}
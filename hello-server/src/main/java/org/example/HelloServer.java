@@ -6,15 +6,23 @@ import com.sun.net.httpserver.HttpExchange;
 import io.lettuce.core.RedisURI;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.sync.RedisCommands;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.instrumentation.annotations.WithSpan;
+import org.example.utils.TracingUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.time.Instant;
 import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class HelloServer {
@@ -22,23 +30,97 @@ public class HelloServer {
     private static final String REDIS_HOST = "localhost";
     private static final int REDIS_PORT = 6379;
     private static final String REQUEST_COUNT_KEY = "hello_server:request_count";
-    private static final Instant START_TIME = Instant.now();
+    static final ServerMetrics METRICS = new ServerMetrics();
+    // dispatcher, pool or virtual
+    private static final String CONFIG_EXECUTOR = "hello.server.executor";
+    private static final String CONFIG_POOL_THREADS = "hello.server.pool.threads";
+    private static final String CONFIG_POOL_QUEUE = "hello.server.pool.queue";
+    private static final int DEFAULT_POOL_THREADS = 64;
+    private static final int DEFAULT_POOL_QUEUE = 1000;
+    // sync or write-behind
+    private static final String CONFIG_COUNTER_MODE = "hello.server.counter.mode";
+    private static final String CONFIG_COUNTER_FLUSH_INTERVAL = "hello.server.counter.flush.interval.ms";
+    private static final String CONFIG_COUNTER_MAX_STALENESS = "hello.server.counter.max.staleness.ms";
+    private static final long DEFAULT_COUNTER_FLUSH_INTERVAL_MS = 5;
+    private static final long DEFAULT_COUNTER_MAX_STALENESS_MS = 1000;
+    private static final String CONFIG_BREAKER_FAILURES = "hello.server.redis.breaker.failures";
+    private static final String CONFIG_BREAKER_PROBE_INTERVAL = "hello.server.redis.breaker.probe.interval.ms";
+    private static final int DEFAULT_BREAKER_FAILURES = 3;
+    private static final long DEFAULT_BREAKER_PROBE_INTERVAL_MS = 1000;
+    private static final AttributeKey<Long> RECONCILED_COUNT = AttributeKey.longKey("hello_server.reconciled_count");
 
     public static void main(String[] args) throws IOException {
         HttpServer server = HttpServer.create(new InetSocketAddress(8080), 0);
-        server.createContext("/", new HelloHandler());
-        server.createContext("/health", new HealthHandler());
-        server.createContext("/metrics", new MetricsHandler());
-        server.setExecutor(null);
+        server.createContext("/", METRICS.instrument("hello", new HelloHandler()));
+        server.createContext("/health", METRICS.instrument("health", new HealthHandler()));
+        server.createContext("/metrics", METRICS.instrument("metrics", new MetricsHandler()));
+        ExecutorService executor = createExecutor(ExecutorMode.parse(System.getProperty(CONFIG_EXECUTOR, "pool")));
+        // null runs every exchange on the dispatcher thread
+        server.setExecutor(executor);
         server.start();
         logger.info("Server started at http://localhost:8080/");
     }
 
+    enum ExecutorMode {
+        // the single HttpServer dispatcher thread, one request at a time
+        DISPATCHER,
+        // a bounded pool of platform threads
+        POOL,
+        // a virtual thread per request, on Java 21 and later
+        VIRTUAL;
+
+        static ExecutorMode parse(String mode) {
+            return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Creates the executor running the exchanges, {@code null} for the dispatcher thread. Tasks are
+     * wrapped to run in the context current when they were submitted: the dispatcher has none, so
+     * every request starts from the root context on whatever thread runs it, and the server span
+     * of the agent is the parent of the {@code @WithSpan} handler span in every mode.
+     */
+    static ExecutorService createExecutor(ExecutorMode mode) {
+        switch (mode) {
+            case DISPATCHER:
+                logger.info("Handling requests on the dispatcher thread");
+                return null;
+            case VIRTUAL:
+                ExecutorService virtual = TracingUtils.newVirtualThreadPerTaskExecutor();
+                if (virtual != null) {
+                    logger.info("Handling requests on a virtual thread each");
+                    return TracingUtils.contextPropagating(virtual);
+                }
+                logger.warn("Virtual threads need Java 21 or later, using a bounded pool instead");
+                return createExecutor(ExecutorMode.POOL);
+            default:
+                int threads = Integer.getInteger(CONFIG_POOL_THREADS, DEFAULT_POOL_THREADS);
+                int queue = Integer.getInteger(CONFIG_POOL_QUEUE, DEFAULT_POOL_QUEUE);
+                AtomicInteger threadCount = new AtomicInteger();
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(queue),
+                        runnable -> {
+                            Thread thread = new Thread(runnable, "hello-server-" + threadCount.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        },
+                        // a full queue pushes back on the dispatcher instead of dropping connections
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                pool.allowCoreThreadTimeOut(true);
+                logger.info("Handling requests on a pool of {} threads with a queue of {}", threads, queue);
+                return TracingUtils.contextPropagating(pool);
+        }
+    }
+
     // Lettuce Redis client implementation
     static class LettuceRedisClient {
         private static final AtomicLong requestCount = new AtomicLong(0);
         private static final io.lettuce.core.RedisClient redisClient;
         private static final StatefulRedisConnection<String, String> connection;
+        // null when every request increments Redis itself
+        private static final WriteBehindCounter writeBehindCounter;
+        // opened by failed increments, so that requests stop waiting on the Redis timeout
+        private static final CircuitBreaker circuitBreaker;
 
         static {
             try {
@@ -50,9 +132,19 @@ public class HelloServer {
                 redisClient = io.lettuce.core.RedisClient.create(redisURI);
                 connection = redisClient.connect();
                 logger.info("Connected to Redis at {}:{}", REDIS_HOST, REDIS_PORT);
+                writeBehindCounter = createWriteBehindCounter(System.getProperty(CONFIG_COUNTER_MODE, "sync"));
+                circuitBreaker = new CircuitBreaker("redis",
+                        Integer.getInteger(CONFIG_BREAKER_FAILURES, DEFAULT_BREAKER_FAILURES),
+                        Long.getLong(CONFIG_BREAKER_PROBE_INTERVAL, DEFAULT_BREAKER_PROBE_INTERVAL_MS),
+                        LettuceRedisClient::probeAndReconcile);
 
                 // Register shutdown hook to close resources
                 Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    circuitBreaker.close();
+                    if (writeBehindCounter != null) {
+                        // the last increments, before the connection goes
+                        writeBehindCounter.close();
+                    }
                     logger.info("Shutting down Redis connection");
                     if (connection != null) {
                         connection.close();
@@ -67,16 +159,69 @@ public class HelloServer {
             }
         }
 
+        private static WriteBehindCounter createWriteBehindCounter(String mode) {
+            switch (mode.trim().toLowerCase(Locale.ROOT)) {
+                case "sync":
+                    return null;
+                case "write-behind":
+                    long flushInterval = Long.getLong(CONFIG_COUNTER_FLUSH_INTERVAL, DEFAULT_COUNTER_FLUSH_INTERVAL_MS);
+                    long maxStaleness = Long.getLong(CONFIG_COUNTER_MAX_STALENESS, DEFAULT_COUNTER_MAX_STALENESS_MS);
+                    logger.info("Counting requests locally, flushing to Redis every {} ms", flushInterval);
+                    return new WriteBehindCounter(delta -> {
+                        long start = System.nanoTime();
+                        return connection.async().incrby(REQUEST_COUNT_KEY, delta)
+                                .whenComplete((count, error) -> METRICS.recordRedisCall(System.nanoTime() - start));
+                    }, flushInterval, maxStaleness);
+                default:
+                    throw new IllegalArgumentException("Unknown " + CONFIG_COUNTER_MODE + ": " + mode);
+            }
+        }
+
         public static void incrementRequestCount() {
+            if (writeBehindCounter != null) {
+                writeBehindCounter.increment();
+                return;
+            }
+            if (!circuitBreaker.allowRequest()) {
+                // Redis is down, count locally until the probe reconciles it
+                requestCount.incrementAndGet();
+                return;
+            }
+            // counted locally by requests that saw the breaker open just before it closed
+            long leftover = requestCount.get() == 0 ? 0 : requestCount.getAndSet(0);
+            long start = System.nanoTime();
             try {
                 RedisCommands<String, String> commands = connection.sync();
-                String response = commands.incr(REQUEST_COUNT_KEY).toString();
+                String response = (leftover == 0
+                        ? commands.incr(REQUEST_COUNT_KEY)
+                        : commands.incrby(REQUEST_COUNT_KEY, leftover + 1)).toString();
+                METRICS.recordRedisCall(System.nanoTime() - start);
+                circuitBreaker.recordSuccess();
                 logger.info("Redis response: {}", response);
             } catch (Exception e) {
+                METRICS.recordRedisCall(System.nanoTime() - start);
                 logger.error("Error connecting to Redis", e);
                 // Fallback to local counter if Redis is unavailable
-                requestCount.incrementAndGet();
+                requestCount.addAndGet(leftover + 1);
+                circuitBreaker.recordFailure(e);
+            }
+        }
+
+        // runs on the probe thread while the breaker is open
+        private static Attributes probeAndReconcile() {
+            RedisCommands<String, String> commands = connection.sync();
+            commands.ping();
+            long delta = requestCount.getAndSet(0);
+            if (delta != 0) {
+                try {
+                    commands.incrby(REQUEST_COUNT_KEY, delta);
+                } catch (RuntimeException e) {
+                    requestCount.addAndGet(delta);
+                    throw e;
+                }
+                logger.info("Reconciled {} requests counted while Redis was down", delta);
             }
+            return Attributes.of(RECONCILED_COUNT, delta);
         }
     }
 
@@ -111,14 +256,8 @@ public class HelloServer {
     static class MetricsHandler implements HttpHandler {
         @WithSpan
         public void handle(HttpExchange exchange) throws IOException {
-            long uptimeSeconds = Instant.now().getEpochSecond() - START_TIME.getEpochSecond();
-            String response = "{\"uptime\":" + uptimeSeconds + "}";
-            exchange.getResponseHeaders().set("Content-Type", "application/json");
-            exchange.sendResponseHeaders(200, response.getBytes().length);
-            OutputStream os = exchange.getResponseBody();
             logger.info("Metrics requested");
-            os.write(response.getBytes());
-            os.close();
+            METRICS.handler().handle(exchange);
         }
     }
 }
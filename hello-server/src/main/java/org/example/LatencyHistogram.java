@@ -0,0 +1,94 @@
+package org.example;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed, log-linear buckets, recorded without locks or allocation.
+ *
+ * <p>As in HdrHistogram, a bucket is found from the bits of the value rather than by searching the
+ * bounds: each power of two of microseconds is split into two buckets, so a bucket is at most half
+ * as wide as its lower bound, from 1 microsecond up to about 33 seconds. Each bucket is a {@link
+ * LongAdder}, so threads recording at once do not contend on a single counter.
+ */
+final class LatencyHistogram {
+    // powers of two of microseconds, the last bucket ends at 2^(MAX_EXPONENT + 1)
+    private static final int MAX_EXPONENT = 24;
+    static final int BUCKETS = 2 * (MAX_EXPONENT + 1);
+    // upper bounds in microseconds, inclusive
+    private static final long[] BOUNDS_MICROS = new long[BUCKETS];
+    // the bounds in seconds, as Prometheus labels them
+    private static final String[] BOUND_LABELS = new String[BUCKETS + 1];
+
+    static {
+        BOUNDS_MICROS[0] = 1;
+        BOUNDS_MICROS[1] = 2;
+        for (int exponent = 1; exponent <= MAX_EXPONENT; exponent++) {
+            long half = 1L << (exponent - 1);
+            BOUNDS_MICROS[2 * exponent] = (1L << exponent) + half;
+            BOUNDS_MICROS[2 * exponent + 1] = (1L << exponent) + 2 * half;
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            BOUND_LABELS[bucket] = BigDecimal.valueOf(BOUNDS_MICROS[bucket], 6).stripTrailingZeros().toPlainString();
+        }
+        BOUND_LABELS[BUCKETS] = "+Inf";
+    }
+
+    // one more for the values past the last bound
+    private final LongAdder[] buckets = new LongAdder[BUCKETS + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        buckets[bucket(nanos)].increment();
+        sumNanos.add(Math.max(nanos, 0));
+    }
+
+    /** Returns the bucket whose bound is the smallest one not below the value. */
+    static int bucket(long nanos) {
+        // whole microseconds rounded up, without overflowing near Long.MAX_VALUE, minus one so
+        // that a value on a bound stays in its bucket
+        long value = Math.max(nanos / 1000 + (nanos % 1000 > 0 ? 1 : 0), 1) - 1;
+        if (value < 2) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS;
+        }
+        int half = (int) (value >>> (exponent - 1)) & 1;
+        return 2 * exponent + half;
+    }
+
+    /**
+     * Appends the histogram in the Prometheus text format, with the buckets cumulative as it
+     * expects; {@code labels} are put before {@code le}, and end with a comma when there are any.
+     */
+    void appendTo(StringBuilder out, String name, String labels) {
+        long cumulative = 0;
+        for (int bucket = 0; bucket <= BUCKETS; bucket++) {
+            cumulative += buckets[bucket].sum();
+            out.append(name).append("_bucket{").append(labels).append("le=\"").append(BOUND_LABELS[bucket]).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        out.append(name).append("_sum");
+        appendLabels(out, labels);
+        out.append(' ').append(sumNanos.sum() / 1_000_000_000.0).append('\n');
+        // the count from the same reads as the buckets, so that it matches +Inf
+        out.append(name).append("_count");
+        appendLabels(out, labels);
+        out.append(' ').append(cumulative).append('\n');
+    }
+
+    private static void appendLabels(StringBuilder out, String labels) {
+        if (!labels.isEmpty()) {
+            // without the trailing comma
+            out.append('{').append(labels, 0, labels.length() - 1).append('}');
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The server's own request and Redis metrics, served at {@code /metrics} in the Prometheus text
+ * format.
+ *
+ * <p>Requests are counted and timed by wrapping each handler with {@link #instrument}; a request
+ * is an error when its handler throws or answers with a 5xx status. Recording only adds to
+ * {@link LongAdder}s created up front. A scrape renders everything into a builder and a byte
+ * buffer that are kept for the next scrape, scrapes taking turns on them.
+ */
+final class ServerMetrics {
+    private static final Instant START_TIME = Instant.now();
+
+    private final Map<String, HandlerMetrics> handlers = new ConcurrentHashMap<>();
+    private final LatencyHistogram redisLatency = new LatencyHistogram();
+    // reused by every scrape, under the lock of this object
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+    private byte[] bytes = new byte[16 * 1024];
+
+    /** Wraps a handler so that its requests are counted and timed under the given name. */
+    HttpHandler instrument(String name, HttpHandler handler) {
+        HandlerMetrics metrics = handlers.computeIfAbsent(name, HandlerMetrics::new);
+        return exchange -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                handler.handle(exchange);
+                failed = exchange.getResponseCode() >= 500;
+            } finally {
+                metrics.requests.increment();
+                if (failed) {
+                    metrics.errors.increment();
+                }
+                metrics.latency.record(System.nanoTime() - start);
+            }
+        };
+    }
+
+    void recordRedisCall(long nanos) {
+        redisLatency.record(nanos);
+    }
+
+    /** Serves the metrics to a scrape. */
+    HttpHandler handler() {
+        return this::write;
+    }
+
+    private synchronized void write(HttpExchange exchange) throws IOException {
+        render();
+        int length = encode();
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes, 0, length);
+        }
+    }
+
+    private void render() {
+        StringBuilder out = text;
+        out.setLength(0);
+        out.append("# HELP hello_server_uptime_seconds Time since the server started.\n");
+        out.append("# TYPE hello_server_uptime_seconds gauge\n");
+        out.append("hello_server_uptime_seconds ").append(Instant.now().getEpochSecond() - START_TIME.getEpochSecond()).append('\n');
+
+        out.append("# HELP hello_server_requests_total Requests handled, per handler.\n");
+        out.append("# TYPE hello_server_requests_total counter\n");
+        for (HandlerMetrics metrics : handlers.values()) {
+            out.append("hello_server_requests_total{").append(metrics.labels, 0, metrics.labels.length() - 1).append("} ")
+                    .append(metrics.requests.sum()).append('\n');
+        }
+        out.append("# HELP hello_server_request_errors_total Requests that failed or answered 5xx, per handler.\n");
+        out.append("# TYPE hello_server_request_errors_total counter\n");
+        for (HandlerMetrics metrics : handlers.values()) {
+            out.append("hello_server_request_errors_total{").append(metrics.labels, 0, metrics.labels.length() - 1).append("} ")
+                    .append(metrics.errors.sum()).append('\n');
+        }
+        out.append("# HELP hello_server_request_duration_seconds Time to handle a request, per handler.\n");
+        out.append("# TYPE hello_server_request_duration_seconds histogram\n");
+        for (HandlerMetrics metrics : handlers.values()) {
+            metrics.latency.appendTo(out, "hello_server_request_duration_seconds", metrics.labels);
+        }
+        out.append("# HELP hello_server_redis_call_duration_seconds Time of the calls incrementing the request count in Redis.\n");
+        out.append("# TYPE hello_server_redis_call_duration_seconds histogram\n");
+        redisLatency.appendTo(out, "hello_server_redis_call_duration_seconds", "");
+    }
+
+    // the text is ASCII, names and labels included
+    private int encode() {
+        int length = text.length();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+        }
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) text.charAt(i);
+        }
+        return length;
+    }
+
+    private static final class HandlerMetrics {
+        final String labels;
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        HandlerMetrics(String name) {
+            this.labels = "handler=\"" + name + "\",";
+        }
+    }
+}
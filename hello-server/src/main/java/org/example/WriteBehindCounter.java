@@ -0,0 +1,149 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+/**
+ * Counts locally and adds the count to a remote counter in the background, so that counting
+ * never waits for the remote side.
+ *
+ * <p>Increments go into a {@link LongAdder}. Every flush interval, whatever has been counted since
+ * the last flush is sent as a single increment, with at most one in flight. A failed increment is
+ * added back and retried, with the interval doubling up to the maximum staleness while failures
+ * last, so the remote count lags by about a flush interval normally and by the maximum staleness
+ * at worst when the remote side is down.
+ */
+final class WriteBehindCounter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindCounter.class);
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final LongFunction<CompletionStage<Long>> incrementBy;
+    private final long flushIntervalMillis;
+    private final long maxStalenessMillis;
+    private final LongAdder pending = new LongAdder();
+    private final ScheduledExecutorService flusher;
+    // one flush at a time updates it, on the flusher or the thread completing the increment
+    private volatile long delayMillis;
+    // completes once the outcome of the last increment sent has been handled
+    private volatile CompletionStage<?> inFlight;
+
+    WriteBehindCounter(LongFunction<CompletionStage<Long>> incrementBy, long flushIntervalMillis, long maxStalenessMillis) {
+        if (flushIntervalMillis <= 0 || maxStalenessMillis < flushIntervalMillis) {
+            throw new IllegalArgumentException("Need 0 < flushIntervalMillis <= maxStalenessMillis");
+        }
+        this.incrementBy = incrementBy;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxStalenessMillis = maxStalenessMillis;
+        this.delayMillis = flushIntervalMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-counter-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.schedule(this::flush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void increment() {
+        pending.increment();
+    }
+
+    long getPending() {
+        return pending.sum();
+    }
+
+    private void flush() {
+        // subtracting what was read keeps increments made meanwhile
+        long delta = pending.sum();
+        if (delta == 0) {
+            scheduleNext();
+            return;
+        }
+        pending.add(-delta);
+        CompletionStage<Long> result;
+        try {
+            result = incrementBy.apply(delta);
+        } catch (RuntimeException e) {
+            failed(delta, e);
+            scheduleNext();
+            return;
+        }
+        inFlight = result.whenComplete((total, error) -> {
+            if (error != null) {
+                failed(delta, error);
+            } else {
+                delayMillis = flushIntervalMillis;
+                logger.debug("Flushed {} requests, count is {}", delta, total);
+            }
+            scheduleNext();
+        });
+    }
+
+    private void failed(long delta, Throwable error) {
+        pending.add(delta);
+        delayMillis = Math.min(delayMillis * 2, maxStalenessMillis);
+        logger.warn("Failed to flush {} requests, retrying in {} ms: {}", delta, delayMillis, error.toString());
+    }
+
+    private void scheduleNext() {
+        try {
+            flusher.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // closed, the final flush sends what is left
+        }
+    }
+
+    /**
+     * Stops flushing in the background and sends what is left, waiting a few seconds at most for
+     * the increment in flight and as long for the final one.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            // a flush already scheduled still runs
+            flusher.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            awaitInFlight();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        long delta = pending.sum();
+        if (delta == 0) {
+            return;
+        }
+        pending.add(-delta);
+        try {
+            incrementBy.apply(delta).toCompletableFuture().get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            logger.info("Flushed the last {} requests", delta);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Failed the final flush of {} requests", delta, e);
+        }
+    }
+
+    // a failed increment adds its delta back, which the final flush must include
+    private void awaitInFlight() throws InterruptedException {
+        CompletionStage<?> last = inFlight;
+        if (last == null) {
+            return;
+        }
+        try {
+            last.toCompletableFuture().get(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // handled by the flush that sent it
+        } catch (TimeoutException e) {
+            logger.warn("Gave up waiting for an increment in flight, its requests may not be counted");
+        }
+    }
+}
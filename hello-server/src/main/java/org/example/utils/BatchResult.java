@@ -0,0 +1,50 @@
+package org.example.utils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a batch run by {@link TracingUtils#inParallelLinkedTraces}: for each item, in
+ * the order of the items, either its result or what it threw.
+ *
+ * @param <R> the type of the per-item results
+ */
+public final class BatchResult<R> {
+    private final List<R> results;
+    private final List<Throwable> errors;
+    private final int failedCount;
+
+    BatchResult(final List<R> results, final List<Throwable> errors) {
+        this.results = Collections.unmodifiableList(results);
+        this.errors = Collections.unmodifiableList(errors);
+        int failed = 0;
+        for (Throwable error : errors) {
+            if (error != null) {
+                failed++;
+            }
+        }
+        this.failedCount = failed;
+    }
+
+    /** Returns the result of each item, {@code null} for the items that failed. */
+    public List<R> getResults() {
+        return results;
+    }
+
+    /** Returns what each item threw, an exception or an error, {@code null} for the items that succeeded. */
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    public int getSucceededCount() {
+        return results.size() - failedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public boolean hasFailures() {
+        return failedCount > 0;
+    }
+}
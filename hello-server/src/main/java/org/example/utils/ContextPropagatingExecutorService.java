@@ -0,0 +1,124 @@
+package org.example.utils;
+
+import io.opentelemetry.context.Context;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs each task in the context that was current when it was submitted, like {@link
+ * Context#taskWrapping(ExecutorService)}, but hands tasks submitted in the root context to the
+ * delegate as they are, without a wrapper.
+ */
+final class ContextPropagatingExecutorService implements ExecutorService {
+    private final ExecutorService delegate;
+
+    ContextPropagatingExecutorService(final ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    /** Wraps an executor the same way; an {@link ExecutorService} keeps its lifecycle methods. */
+    static Executor wrap(final Executor executor) {
+        if (executor instanceof ExecutorService) {
+            return new ContextPropagatingExecutorService((ExecutorService) executor);
+        }
+        return command -> executor.execute(wrap(command));
+    }
+
+    static Runnable wrap(final Runnable task) {
+        final Context context = Context.current();
+        // nothing to carry, no wrapper to allocate
+        return context == Context.root() ? task : context.wrap(task);
+    }
+
+    static <T> Callable<T> wrap(final Callable<T> task) {
+        final Context context = Context.current();
+        return context == Context.root() ? task : context.wrap(task);
+    }
+
+    private static <T> Collection<? extends Callable<T>> wrapAll(final Collection<? extends Callable<T>> tasks) {
+        final Context context = Context.current();
+        if (context == Context.root()) {
+            return tasks;
+        }
+        final List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(context.wrap(task));
+        }
+        return wrapped;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        delegate.execute(wrap(command));
+    }
+
+    @Override
+    public <T> Future<T> submit(final Callable<T> task) {
+        return delegate.submit(wrap(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(final Runnable task, final T result) {
+        return delegate.submit(wrap(task), result);
+    }
+
+    @Override
+    public Future<?> submit(final Runnable task) {
+        return delegate.submit(wrap(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return delegate.invokeAll(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks, final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(final Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        return delegate.invokeAny(wrapAll(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(final Collection<? extends Callable<T>> tasks, final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
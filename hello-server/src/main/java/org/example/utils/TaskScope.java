@@ -0,0 +1,140 @@
+package org.example.utils;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A scope for subtasks that must all finish before the task that forked them goes on, in the
+ * manner of {@code StructuredTaskScope.ShutdownOnFailure}, for runtimes without it.
+ *
+ * <p>Subtasks are forked, joined and the scope closed by the thread that opened it. Each subtask
+ * runs in the context that was current when it was forked, so its spans are children of the span
+ * of the forking task. The first subtask to fail cancels the others, and {@link #join()} throws
+ * its exception. Closing the scope cancels whatever is still running and waits for it to return, so
+ * no subtask outlives it.
+ *
+ * <pre>{@code
+ * try (TaskScope scope = TracingUtils.openTaskScope()) {
+ *     Future<User> user = scope.fork(() -> findUser(id));
+ *     Future<Long> count = scope.fork(() -> countOrders(id));
+ *     scope.join();
+ *     return new Summary(user.get(), count.get());
+ * }
+ * }</pre>
+ */
+public final class TaskScope implements AutoCloseable {
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private final List<Subtask> subtasks = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    TaskScope(final ExecutorService executor, final boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /** Starts a subtask in the current context. */
+    public <T> Future<T> fork(final Callable<T> task) {
+        final Callable<T> inContext = ContextPropagatingExecutorService.wrap(task);
+        final Subtask subtask = new Subtask();
+        final Future<T> future = executor.submit(() -> {
+            if (!subtask.started.compareAndSet(false, true)) {
+                // cancelled before it started
+                return null;
+            }
+            try {
+                return inContext.call();
+            } catch (Exception | Error e) {
+                if (failure.compareAndSet(null, e)) {
+                    cancelAll();
+                }
+                throw e;
+            } finally {
+                subtask.finished.countDown();
+            }
+        });
+        subtask.future = future;
+        subtasks.add(subtask);
+        if (failure.get() != null) {
+            // forked after a failure, never wanted
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for every subtask to finish; a cancelled subtask that was running is waited for until
+     * it returns.
+     *
+     * @throws ExecutionException with the exception of the first subtask that failed
+     */
+    public void join() throws InterruptedException, ExecutionException {
+        for (Subtask subtask : subtasks) {
+            try {
+                subtask.future.get();
+            } catch (CancellationException | ExecutionException e) {
+                // the first failure is thrown below
+            }
+            subtask.awaitFinished();
+        }
+        final Throwable first = failure.get();
+        if (first != null) {
+            throw new ExecutionException(first);
+        }
+    }
+
+    private void cancelAll() {
+        for (Subtask subtask : subtasks) {
+            subtask.future.cancel(true);
+        }
+    }
+
+    /**
+     * Cancels the subtasks still running and waits for them to return, then shuts down the executor
+     * if the scope created it and waits for it to terminate. An interrupt stops the waiting.
+     */
+    @Override
+    public void close() {
+        cancelAll();
+        try {
+            for (Subtask subtask : subtasks) {
+                subtask.awaitFinished();
+            }
+            if (ownsExecutor) {
+                executor.shutdownNow();
+                // every subtask has returned, only the threads are left to stop
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            if (ownsExecutor) {
+                executor.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Subtask {
+        // claimed by the subtask when it runs, or by the scope once it is cancelled so that it never does
+        final AtomicBoolean started = new AtomicBoolean();
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile Future<?> future;
+
+        /** Waits until the subtask has returned; call only once its future is done. */
+        void awaitFinished() throws InterruptedException {
+            if (started.compareAndSet(false, true)) {
+                // cancelled before it ran
+                finished.countDown();
+            }
+            finished.await();
+        }
+    }
+}
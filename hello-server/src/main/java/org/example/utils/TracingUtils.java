@@ -1,11 +1,26 @@
 package org.example.utils;
 
 import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.StatusCode;
 import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import lombok.val;
 
@@ -15,6 +30,11 @@ import lombok.val;
  */
 public class TracingUtils {
     private static final String NAME = "nexla_custom_span";
+    private static final AttributeKey<Long> BATCH_SIZE = AttributeKey.longKey("batch.size");
+    private static final AttributeKey<Long> BATCH_SUCCEEDED = AttributeKey.longKey("batch.succeeded");
+    private static final AttributeKey<Long> BATCH_FAILED = AttributeKey.longKey("batch.failed");
+    private static final AttributeKey<Long> BATCH_MAX_CONCURRENCY = AttributeKey.longKey("batch.max_concurrency");
+    private static final AttributeKey<Long> BATCH_INDEX = AttributeKey.longKey("batch.index");
 
     private final Tracer tracer;
 
@@ -88,25 +108,190 @@ public class TracingUtils {
         return runInNewLinkedTrace(name, supplier);
     }
 
+    /**
+     * Runs a function on each item of a batch, in parallel, each in a new trace linked to a summary
+     * span of the batch.
+     *
+     * <p>Items run on virtual threads on Java 21 and later, on the common {@link ForkJoinPool}
+     * otherwise, with at most as many at once as there are processors.
+     *
+     * @see #inParallelLinkedTraces(String, Collection, int, Executor, Function)
+     */
+    public <T, R> BatchResult<R> inParallelLinkedTraces(
+            final String name, final Collection<? extends T> items, final Function<? super T, ? extends R> function)
+            throws InterruptedException {
+        val virtualThreads = newVirtualThreadPerTaskExecutor();
+        if (virtualThreads == null) {
+            return inParallelLinkedTraces(
+                    name, items, Runtime.getRuntime().availableProcessors(), ForkJoinPool.commonPool(), function);
+        }
+        try {
+            return inParallelLinkedTraces(
+                    name, items, Runtime.getRuntime().availableProcessors(), virtualThreads, function);
+        } finally {
+            virtualThreads.shutdown();
+        }
+    }
+
+    /**
+     * Runs a function on each item of a batch on the given executor, with at most {@code
+     * maxConcurrency} items at once, and waits for all of them.
+     *
+     * <p>A summary span named {@code name} is started in the current trace. Each item then runs in
+     * a new trace, under a root span named {@code name + ".item"} linked to the summary span, like
+     * {@link #inNewLinkedTrace(String, Supplier)} does on the caller's thread. An item that throws
+     * marks its own span as failed and does not stop the others. Once all items are done, the
+     * summary span gets the number of items that succeeded and failed, and is marked as failed if
+     * any did.
+     *
+     * @param name name of the summary span
+     * @param items the items of the batch
+     * @param maxConcurrency the most items to run at once; the caller waits for a free slot
+     * @param executor runs the items, e.g. a virtual thread per task executor or a ForkJoinPool
+     * @param function logic for processing an item
+     * @return the result or throwable of each item, in the order of the items
+     * @throws InterruptedException if interrupted while waiting; items already started go on
+     */
+    public <T, R> BatchResult<R> inParallelLinkedTraces(
+            final String name,
+            final Collection<? extends T> items,
+            final int maxConcurrency,
+            final Executor executor,
+            final Function<? super T, ? extends R> function)
+            throws InterruptedException {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        val size = items.size();
+        val results = new ArrayList<R>(Collections.nCopies(size, null));
+        val errors = new ArrayList<Throwable>(Collections.nCopies(size, null));
+        val summarySpan = spanBuilder(name).startSpan();
+        summarySpan.setAttribute(BATCH_SIZE, (long) size);
+        summarySpan.setAttribute(BATCH_MAX_CONCURRENCY, (long) maxConcurrency);
+        val link = summarySpan.getSpanContext();
+        val permits = new Semaphore(maxConcurrency);
+        val done = new CountDownLatch(size);
+        try {
+            int index = 0;
+            for (T item : items) {
+                val itemIndex = index++;
+                permits.acquire();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            val itemSpan = linkedRootSpanBuilder(name + ".item", link)
+                                    .setAttribute(BATCH_INDEX, (long) itemIndex);
+                            // each item writes only its own slot, the latch publishes them
+                            results.set(itemIndex, runInSpan(itemSpan, () -> function.apply(item)));
+                        } catch (Throwable t) {
+                            // an Error too, or the batch would not know the item failed
+                            errors.set(itemIndex, t);
+                        } finally {
+                            permits.release();
+                            done.countDown();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    errors.set(itemIndex, e);
+                    permits.release();
+                    done.countDown();
+                }
+            }
+            done.await();
+            val result = new BatchResult<R>(results, errors);
+            summarySpan.setAttribute(BATCH_SUCCEEDED, (long) result.getSucceededCount());
+            summarySpan.setAttribute(BATCH_FAILED, (long) result.getFailedCount());
+            if (result.hasFailures()) {
+                summarySpan.setStatus(StatusCode.ERROR, result.getFailedCount() + " of " + size + " items failed");
+            }
+            return result;
+        } catch (InterruptedException e) {
+            summarySpan.setStatus(StatusCode.ERROR, "interrupted");
+            throw e;
+        } finally {
+            summarySpan.end();
+        }
+    }
+
+    /**
+     * Wraps an executor so that each task runs in the context that was current when it was
+     * submitted, so that spans started by the task are children of the submitter's span.
+     *
+     * <p>The context is captured with a single read of {@link Context#current()}; a task submitted
+     * outside of any span is handed on as it is, without a wrapper. An {@link ExecutorService} is
+     * returned as one, see {@link #contextPropagating(ExecutorService)}.
+     */
+    public static Executor contextPropagating(final Executor executor) {
+        return ContextPropagatingExecutorService.wrap(executor);
+    }
+
+    /**
+     * Wraps an executor service so that each task runs in the context that was current when it
+     * was submitted. Shutting down the wrapper shuts down the executor.
+     */
+    public static ExecutorService contextPropagating(final ExecutorService executor) {
+        return new ContextPropagatingExecutorService(executor);
+    }
+
+    /**
+     * Returns an executor that runs each task in the context it was submitted in, on a virtual
+     * thread of its own on Java 21 and later, on a cached pool of daemon threads otherwise.
+     */
+    public static ExecutorService newContextPropagatingVirtualThreadExecutor() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(runnable -> {
+                val thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return contextPropagating(executor);
+    }
+
+    /** Opens a {@link TaskScope} whose subtasks run on virtual threads, or daemon threads before Java 21. */
+    public static TaskScope openTaskScope() {
+        return new TaskScope(newContextPropagatingVirtualThreadExecutor(), true);
+    }
+
+    /** Opens a {@link TaskScope} whose subtasks run on the given executor, which it leaves running. */
+    public static TaskScope openTaskScope(final ExecutorService executor) {
+        return new TaskScope(executor, false);
+    }
+
+    /**
+     * Returns a new executor that starts a virtual thread per task, or {@code null} before Java 21.
+     * It is looked up at runtime, as the utilities are built for Java 11.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
     private <T> T runInNewLinkedTrace(final String name, final Supplier<T> supplier) {
         val currentSpan = Span.current();
-        val parentContext = currentSpan.getSpanContext();
+        return runInSpan(linkedRootSpanBuilder(name, currentSpan.getSpanContext()), supplier);
+    }
 
+    private SpanBuilder linkedRootSpanBuilder(final String name, final SpanContext link) {
         val spanBuilder = spanBuilder(name);
         spanBuilder.setNoParent(); // new trace_id
-        if (parentContext.isValid()) {
-            spanBuilder.addLink(parentContext);
+        if (link.isValid()) {
+            spanBuilder.addLink(link);
         }
-        return runInSpan(spanBuilder, supplier);
+        return spanBuilder;
     }
 
     private <T> T runInSpan(final SpanBuilder spanBuilder, Supplier<T> supplier) {
         val span = spanBuilder.startSpan();
         try (val ignored = span.makeCurrent()) {
             return supplier.get();
-        } catch (Exception e) {
+        } catch (Throwable t) {
             span.setStatus(StatusCode.ERROR);
-            throw e;
+            throw t;
         } finally {
             span.end();
         }
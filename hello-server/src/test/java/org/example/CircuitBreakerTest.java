@@ -0,0 +1,96 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+    private static final RuntimeException FAILURE = new IllegalStateException("down");
+
+    private static void awaitState(CircuitBreaker breaker, CircuitBreaker.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (breaker.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(state, breaker.getState());
+    }
+
+    @Test
+    public void testOpensAfterThresholdFailuresInARow() {
+        // Arrange
+        try (CircuitBreaker breaker = new CircuitBreaker("test", 3, 60_000, () -> null)) {
+
+            // Act
+            breaker.recordFailure(FAILURE);
+            breaker.recordFailure(FAILURE);
+            boolean allowedBeforeThreshold = breaker.allowRequest();
+            breaker.recordFailure(FAILURE);
+
+            // Assert
+            assertTrue(allowedBeforeThreshold);
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            assertFalse(breaker.allowRequest());
+        }
+    }
+
+    @Test
+    public void testSuccessResetsConsecutiveFailures() {
+        // Arrange
+        try (CircuitBreaker breaker = new CircuitBreaker("test", 2, 60_000, () -> null)) {
+
+            // Act
+            breaker.recordFailure(FAILURE);
+            breaker.recordSuccess();
+            breaker.recordFailure(FAILURE);
+
+            // Assert
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+            assertTrue(breaker.allowRequest());
+        }
+    }
+
+    @Test
+    public void testStaysOpenWhileProbeFailsThenCloses() throws InterruptedException {
+        // Arrange
+        AtomicInteger probes = new AtomicInteger();
+        try (CircuitBreaker breaker = new CircuitBreaker("test", 1, 1, () -> {
+            if (probes.incrementAndGet() < 3) {
+                throw new IllegalStateException("still down");
+            }
+            return Attributes.of(AttributeKey.longKey("caught_up"), 1L);
+        })) {
+
+            // Act
+            breaker.recordFailure(FAILURE);
+
+            // Assert
+            awaitState(breaker, CircuitBreaker.State.CLOSED);
+            assertEquals(3, probes.get(), "The breaker should stay open until a probe succeeds");
+            assertTrue(breaker.allowRequest());
+        }
+    }
+
+    @Test
+    public void testReopensAfterClosing() throws InterruptedException {
+        // Arrange
+        try (CircuitBreaker breaker = new CircuitBreaker("test", 2, 50, () -> null)) {
+            breaker.recordFailure(FAILURE);
+            breaker.recordFailure(FAILURE);
+            awaitState(breaker, CircuitBreaker.State.CLOSED);
+
+            // Act
+            breaker.recordFailure(FAILURE);
+            CircuitBreaker.State afterOneFailure = breaker.getState();
+            breaker.recordFailure(FAILURE);
+
+            // Assert
+            assertEquals(CircuitBreaker.State.CLOSED, afterOneFailure, "Closing should reset the failure count");
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        }
+    }
+}
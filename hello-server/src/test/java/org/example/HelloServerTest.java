@@ -0,0 +1,83 @@
+package org.example;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HelloServerTest {
+    private static final ContextKey<String> REQUEST = ContextKey.named("request");
+
+    private static boolean virtualThreadsAvailable() {
+        return Runtime.version().feature() >= 21;
+    }
+
+    @Test
+    public void testParsesExecutorModes() {
+        // Act & Assert
+        assertEquals(HelloServer.ExecutorMode.DISPATCHER, HelloServer.ExecutorMode.parse("dispatcher"));
+        assertEquals(HelloServer.ExecutorMode.POOL, HelloServer.ExecutorMode.parse(" Pool "));
+        assertEquals(HelloServer.ExecutorMode.VIRTUAL, HelloServer.ExecutorMode.parse("VIRTUAL"));
+        assertThrows(IllegalArgumentException.class, () -> HelloServer.ExecutorMode.parse("threads"));
+    }
+
+    @Test
+    public void testDispatcherModeHasNoExecutor() {
+        // Act
+        ExecutorService executor = HelloServer.createExecutor(HelloServer.ExecutorMode.DISPATCHER);
+
+        // Assert
+        assertNull(executor);
+    }
+
+    @Test
+    public void testPoolModeRunsOnDaemonThreadsInSubmittingContext() throws Exception {
+        // Arrange
+        ExecutorService executor = HelloServer.createExecutor(HelloServer.ExecutorMode.POOL);
+
+        // Act
+        Future<String> thread;
+        Future<String> request;
+        try (Scope ignored = Context.current().with(REQUEST, "hello").makeCurrent()) {
+            thread = executor.submit(() -> Thread.currentThread().getName() + " daemon=" + Thread.currentThread().isDaemon());
+            request = executor.submit(() -> Context.current().get(REQUEST));
+        }
+        Future<String> outsideContext = executor.submit(() -> Context.current().get(REQUEST));
+
+        // Assert
+        assertTrue(thread.get(5, TimeUnit.SECONDS).matches("hello-server-\\d+ daemon=true"));
+        assertEquals("hello", request.get(5, TimeUnit.SECONDS));
+        assertNull(outsideContext.get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testVirtualModeUsesVirtualThreadsOrFallsBackToPool() throws Exception {
+        // Arrange
+        ExecutorService executor = HelloServer.createExecutor(HelloServer.ExecutorMode.VIRTUAL);
+
+        // Act
+        String threadName;
+        String request;
+        try (Scope ignored = Context.current().with(REQUEST, "hello").makeCurrent()) {
+            threadName = executor.submit(() -> Thread.currentThread().toString()).get(5, TimeUnit.SECONDS);
+            request = executor.submit(() -> Context.current().get(REQUEST)).get(5, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Assert
+        if (virtualThreadsAvailable()) {
+            assertTrue(threadName.startsWith("VirtualThread"), threadName);
+        } else {
+            assertTrue(threadName.contains("hello-server-"), threadName);
+        }
+        assertEquals("hello", request);
+    }
+}
@@ -0,0 +1,85 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testValuesOnABoundStayInItsBucket() {
+        // Arrange: the first bounds are 1, 2, 3, 4, 6 and 8 microseconds
+
+        // Act & Assert
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(0, LatencyHistogram.bucket(1_000));
+        assertEquals(1, LatencyHistogram.bucket(1_001));
+        assertEquals(1, LatencyHistogram.bucket(2_000));
+        assertEquals(2, LatencyHistogram.bucket(3_000));
+        assertEquals(3, LatencyHistogram.bucket(4_000));
+        assertEquals(4, LatencyHistogram.bucket(4_001));
+        assertEquals(4, LatencyHistogram.bucket(6_000));
+        assertEquals(5, LatencyHistogram.bucket(6_001));
+        assertEquals(5, LatencyHistogram.bucket(8_000));
+        assertEquals(6, LatencyHistogram.bucket(8_001));
+    }
+
+    @Test
+    public void testBucketsGrowWithTheValue() {
+        // Arrange
+        int previous = 0;
+
+        // Act & Assert
+        for (long micros = 1; micros <= 1L << 26; micros += Math.max(1, micros / 7)) {
+            int bucket = LatencyHistogram.bucket(micros * 1_000);
+            assertTrue(bucket >= previous, "Bucket of " + micros + "us went down");
+            assertTrue(bucket - previous <= 1, "Bucket of " + micros + "us skipped one");
+            previous = bucket;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(TimeUnit.MICROSECONDS.toNanos(1L << 25)));
+        assertEquals(LatencyHistogram.BUCKETS, LatencyHistogram.bucket(TimeUnit.MICROSECONDS.toNanos(1L << 25) + 1));
+        assertEquals(LatencyHistogram.BUCKETS, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testAppendsCumulativeBucketsInPrometheusFormat() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_500);
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.record(TimeUnit.MINUTES.toNanos(1));
+        StringBuilder out = new StringBuilder();
+
+        // Act
+        histogram.appendTo(out, "latency_seconds", "handler=\"hello\",");
+
+        // Assert
+        List<String> lines = List.of(out.toString().split("\n"));
+        assertEquals(LatencyHistogram.BUCKETS + 3, lines.size());
+        assertEquals("latency_seconds_bucket{handler=\"hello\",le=\"0.000001\"} 0", lines.get(0));
+        assertEquals("latency_seconds_bucket{handler=\"hello\",le=\"0.000002\"} 1", lines.get(1));
+        assertTrue(lines.contains("latency_seconds_bucket{handler=\"hello\",le=\"0.006144\"} 2"), out.toString());
+        assertEquals("latency_seconds_bucket{handler=\"hello\",le=\"33.554432\"} 2", lines.get(LatencyHistogram.BUCKETS - 1));
+        assertEquals("latency_seconds_bucket{handler=\"hello\",le=\"+Inf\"} 3", lines.get(LatencyHistogram.BUCKETS));
+        assertEquals("latency_seconds_sum{handler=\"hello\"} 60.0050015", lines.get(LatencyHistogram.BUCKETS + 1));
+        assertEquals("latency_seconds_count{handler=\"hello\"} 3", lines.get(LatencyHistogram.BUCKETS + 2));
+    }
+
+    @Test
+    public void testAppendsWithoutLabels() {
+        // Arrange
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000);
+        StringBuilder out = new StringBuilder();
+
+        // Act
+        histogram.appendTo(out, "latency_seconds", "");
+
+        // Assert
+        assertTrue(out.toString().startsWith("latency_seconds_bucket{le=\"0.000001\"} 1\n"));
+        assertTrue(out.toString().endsWith("latency_seconds_sum 1.0E-6\nlatency_seconds_count 1\n"), out.toString());
+    }
+}
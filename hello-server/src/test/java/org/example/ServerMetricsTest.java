@@ -0,0 +1,133 @@
+package org.example;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerMetricsTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private ServerMetrics metrics;
+    private HttpServer server;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        metrics = new ServerMetrics();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", metrics.instrument("ok", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        }));
+        server.createContext("/unavailable", metrics.instrument("unavailable", exchange -> {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        }));
+        server.createContext("/broken", metrics.instrument("broken", exchange -> {
+            throw new IllegalStateException("broken");
+        }));
+        server.createContext("/metrics", metrics.handler());
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private static long count(String body, String series) {
+        Matcher matcher = Pattern.compile("^" + Pattern.quote(series) + " (\\d+)$", Pattern.MULTILINE).matcher(body);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    @Test
+    public void testCountsRequestsAndErrorsPerHandler() throws IOException, InterruptedException {
+        // Arrange
+        get("/ok");
+        get("/ok");
+        get("/unavailable");
+        try {
+            get("/broken");
+        } catch (IOException e) {
+            // the server closes the connection without an answer, and the client may have retried
+        }
+
+        // Act
+        HttpResponse<String> response = get("/metrics");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((count(response.body(), "hello_server_request_duration_seconds_count{handler=\"ok\"}") < 2
+                || count(response.body(), "hello_server_request_duration_seconds_count{handler=\"unavailable\"}") < 1
+                || count(response.body(), "hello_server_request_duration_seconds_count{handler=\"broken\"}") < 1)
+                && System.nanoTime() < deadline) {
+            // requests are counted once their handler returns, which can be after the client has its answer
+            Thread.sleep(10);
+            response = get("/metrics");
+        }
+
+        // Assert
+        assertEquals(200, response.statusCode());
+        assertEquals("text/plain; version=0.0.4; charset=utf-8", response.headers().firstValue("Content-Type").orElse(null));
+        String body = response.body();
+        assertTrue(body.contains("hello_server_requests_total{handler=\"ok\"} 2\n"), body);
+        assertTrue(body.contains("hello_server_request_errors_total{handler=\"ok\"} 0\n"), body);
+        assertTrue(body.contains("hello_server_requests_total{handler=\"unavailable\"} 1\n"), body);
+        assertTrue(body.contains("hello_server_request_errors_total{handler=\"unavailable\"} 1\n"), body);
+        long broken = count(body, "hello_server_requests_total{handler=\"broken\"}");
+        assertTrue(broken > 0, body);
+        assertEquals(broken, count(body, "hello_server_request_errors_total{handler=\"broken\"}"));
+        assertTrue(body.contains("hello_server_request_duration_seconds_count{handler=\"ok\"} 2\n"), body);
+    }
+
+    @Test
+    public void testRendersEveryFamilyWithHelpAndType() throws IOException, InterruptedException {
+        // Arrange
+        metrics.recordRedisCall(2_000);
+
+        // Act
+        String body = get("/metrics").body();
+
+        // Assert
+        for (String family : new String[] {"hello_server_uptime_seconds gauge", "hello_server_requests_total counter",
+                "hello_server_request_errors_total counter", "hello_server_request_duration_seconds histogram",
+                "hello_server_redis_call_duration_seconds histogram"}) {
+            String name = family.substring(0, family.indexOf(' '));
+            assertTrue(body.contains("# HELP " + name + " "), body);
+            assertTrue(body.contains("# TYPE " + family + "\n"), body);
+        }
+        assertTrue(body.contains("hello_server_redis_call_duration_seconds_bucket{le=\"0.000002\"} 1\n"), body);
+        assertTrue(body.contains("hello_server_redis_call_duration_seconds_count 1\n"), body);
+        assertTrue(body.endsWith("\n"));
+    }
+
+    @Test
+    public void testScrapesReuseBuffersWithoutLeftovers() throws IOException, InterruptedException {
+        // Arrange
+        String first = get("/metrics").body();
+
+        // Act
+        String second = get("/metrics").body();
+
+        // Assert
+        assertEquals(first.length(), second.length());
+        assertEquals(first.replaceAll("uptime_seconds \\d+", ""), second.replaceAll("uptime_seconds \\d+", ""));
+    }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindCounterTest {
+    private final List<Long> sent = new CopyOnWriteArrayList<>();
+    private WriteBehindCounter counter;
+
+    @AfterEach
+    public void tearDown() {
+        if (counter != null) {
+            counter.close();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    private long sentTotal() {
+        return sent.stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Test
+    public void testSendsIncrementsInTheBackground() throws InterruptedException {
+        // Arrange
+        counter = new WriteBehindCounter(delta -> {
+            sent.add(delta);
+            return CompletableFuture.completedFuture(delta);
+        }, 1, 100);
+
+        // Act
+        for (int i = 0; i < 5; i++) {
+            counter.increment();
+        }
+
+        // Assert
+        await(() -> sentTotal() == 5);
+        assertEquals(0, counter.getPending());
+    }
+
+    @Test
+    public void testRetriesFailedIncrements() throws InterruptedException {
+        // Arrange
+        counter = new WriteBehindCounter(delta -> {
+            sent.add(delta);
+            return sent.size() <= 2
+                    ? CompletableFuture.failedFuture(new IllegalStateException("down"))
+                    : CompletableFuture.completedFuture(delta);
+        }, 1, 4);
+
+        // Act
+        counter.increment();
+        counter.increment();
+        counter.increment();
+
+        // Assert
+        await(() -> sent.size() >= 3);
+        assertEquals(3L, sent.get(0));
+        assertEquals(3L, sent.get(1), "A failed increment should be sent again");
+        await(() -> counter.getPending() == 0);
+    }
+
+    @Test
+    public void testCloseWaitsForIncrementInFlight() throws InterruptedException {
+        // Arrange
+        CompletableFuture<Long> held = new CompletableFuture<>();
+        counter = new WriteBehindCounter(delta -> {
+            sent.add(delta);
+            return sent.size() == 1 ? held : CompletableFuture.completedFuture(delta);
+        }, 1, 100);
+        counter.increment();
+        counter.increment();
+        await(() -> sent.size() == 1);
+        counter.increment();
+
+        // Act
+        Thread closing = new Thread(counter::close);
+        closing.start();
+        Thread.sleep(50);
+        held.completeExceptionally(new IllegalStateException("down"));
+        closing.join(10_000);
+
+        // Assert
+        assertEquals(List.of(2L, 3L), sent, "The final flush should include the failed increment");
+        assertEquals(0, counter.getPending());
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchResultTest {
+
+    @Test
+    public void testCountsFailedItemsWhateverTheyThrew() {
+        // Arrange
+        Throwable exception = new IllegalStateException("failed");
+        Throwable error = new AssertionError("failed");
+
+        // Act
+        BatchResult<String> result = new BatchResult<>(
+                Arrays.asList("a", null, "c", null), Arrays.asList(null, exception, null, error));
+
+        // Assert
+        assertEquals(2, result.getSucceededCount());
+        assertEquals(2, result.getFailedCount());
+        assertTrue(result.hasFailures());
+        assertEquals(Arrays.asList("a", null, "c", null), result.getResults());
+        assertSame(exception, result.getErrors().get(1));
+        assertSame(error, result.getErrors().get(3));
+    }
+
+    @Test
+    public void testSucceededItemsMayReturnNull() {
+        // Arrange & Act
+        BatchResult<String> result = new BatchResult<>(Arrays.asList(null, "b"), Arrays.asList(null, null));
+
+        // Assert
+        assertEquals(2, result.getSucceededCount());
+        assertFalse(result.hasFailures());
+    }
+
+    @Test
+    public void testListsAreUnmodifiable() {
+        // Arrange
+        List<String> results = new ArrayList<>(List.of("a"));
+        List<Throwable> errors = new ArrayList<>(Arrays.asList((Throwable) null));
+
+        // Act
+        BatchResult<String> result = new BatchResult<>(results, errors);
+
+        // Assert
+        assertThrows(UnsupportedOperationException.class, () -> result.getResults().set(0, "b"));
+        assertThrows(UnsupportedOperationException.class, () -> result.getErrors().set(0, new RuntimeException()));
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.utils;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContextPropagatingExecutorServiceTest {
+    private static final ContextKey<String> REQUEST = ContextKey.named("request");
+
+    private final ExecutorService delegate = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void tearDown() {
+        delegate.shutdownNow();
+    }
+
+    @Test
+    public void testTasksInTheRootContextAreNotWrapped() {
+        // Arrange
+        Runnable runnable = () -> { };
+        Callable<String> callable = () -> "done";
+
+        // Act & Assert
+        assertSame(runnable, ContextPropagatingExecutorService.wrap(runnable));
+        assertSame(callable, ContextPropagatingExecutorService.wrap(callable));
+    }
+
+    @Test
+    public void testTasksRunInTheContextTheyWereSubmittedIn() throws Exception {
+        // Arrange
+        ExecutorService executor = TracingUtils.contextPropagating(delegate);
+        AtomicReference<String> executed = new AtomicReference<>();
+
+        // Act
+        String submitted;
+        String invoked;
+        try (Scope ignored = Context.current().with(REQUEST, "42").makeCurrent()) {
+            executor.execute(() -> executed.set(Context.current().get(REQUEST)));
+            submitted = executor.submit(() -> Context.current().get(REQUEST)).get();
+            Callable<String> task = () -> Context.current().get(REQUEST);
+            invoked = executor.invokeAny(List.of(task));
+        }
+        String outside = executor.submit(() -> Context.current().get(REQUEST)).get();
+
+        // Assert
+        assertEquals("42", executed.get());
+        assertEquals("42", submitted);
+        assertEquals("42", invoked);
+        assertNull(outside, "A task submitted outside of the scope should not see its context");
+    }
+
+    @Test
+    public void testPlainExecutorIsWrappedToo() throws InterruptedException {
+        // Arrange
+        Executor executor = TracingUtils.contextPropagating((Executor) command -> new Thread(command).start());
+        AtomicReference<String> executed = new AtomicReference<>();
+        Thread[] ran = new Thread[1];
+
+        // Act
+        try (Scope ignored = Context.current().with(REQUEST, "42").makeCurrent()) {
+            executor.execute(() -> {
+                executed.set(Context.current().get(REQUEST));
+                ran[0] = Thread.currentThread();
+            });
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executed.get() == null && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        // Assert
+        assertEquals("42", executed.get());
+        assertNotSame(Thread.currentThread(), ran[0]);
+    }
+
+    @Test
+    public void testShutdownReachesTheDelegate() throws InterruptedException {
+        // Arrange
+        ExecutorService executor = TracingUtils.contextPropagating(delegate);
+
+        // Act
+        executor.shutdown();
+
+        // Assert
+        assertTrue(delegate.isShutdown());
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+}
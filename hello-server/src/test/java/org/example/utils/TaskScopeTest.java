@@ -0,0 +1,138 @@
+package org.example.utils;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.ContextKey;
+import io.opentelemetry.context.Scope;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskScopeTest {
+    private static final ContextKey<String> REQUEST = ContextKey.named("request");
+
+    // keeps running for a while after it is interrupted, like a task finishing a write
+    private static void runPastInterrupt(CountDownLatch started, AtomicBoolean returned) {
+        started.countDown();
+        try {
+            Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+        } finally {
+            returned.set(true);
+        }
+    }
+
+    @Test
+    public void testJoinWaitsForEverySubtask() throws Exception {
+        // Arrange
+        try (TaskScope scope = TracingUtils.openTaskScope()) {
+            Future<Integer> first = scope.fork(() -> 1);
+            Future<Integer> second = scope.fork(() -> {
+                Thread.sleep(20);
+                return 2;
+            });
+
+            // Act
+            scope.join();
+
+            // Assert
+            assertTrue(second.isDone());
+            assertEquals(3, first.get() + second.get());
+        }
+    }
+
+    @Test
+    public void testFirstFailureCancelsTheOthersAndIsThrownByJoin() throws InterruptedException {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean returned = new AtomicBoolean();
+        IllegalStateException failure = new IllegalStateException("failed");
+        try (TaskScope scope = TracingUtils.openTaskScope()) {
+            Future<?> slow = scope.fork(() -> {
+                runPastInterrupt(started, returned);
+                return null;
+            });
+            started.await();
+            scope.fork(() -> {
+                throw failure;
+            });
+
+            // Act
+            ExecutionException thrown = assertThrows(ExecutionException.class, scope::join);
+
+            // Assert
+            assertSame(failure, thrown.getCause());
+            assertTrue(slow.isCancelled());
+            assertTrue(returned.get(), "join should wait for the cancelled subtask to return");
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForCancelledSubtasks() throws InterruptedException {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean returned = new AtomicBoolean();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        TaskScope scope = TracingUtils.openTaskScope(executor);
+        scope.fork(() -> {
+            runPastInterrupt(started, returned);
+            return null;
+        });
+        started.await();
+
+        // Act
+        scope.close();
+
+        // Assert
+        assertTrue(returned.get(), "close should wait for the cancelled subtask to return");
+        assertFalse(executor.isShutdown(), "The scope should leave an executor it was given running");
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCloseTerminatesTheExecutorItCreated() throws Exception {
+        // Arrange
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean returned = new AtomicBoolean();
+        TaskScope scope = TracingUtils.openTaskScope();
+        scope.fork(() -> {
+            runPastInterrupt(started, returned);
+            return null;
+        });
+        started.await();
+        Future<?> neverStarted = scope.fork(() -> null);
+
+        // Act
+        scope.close();
+
+        // Assert
+        assertTrue(returned.get());
+        assertTrue(neverStarted.isDone());
+    }
+
+    @Test
+    public void testSubtasksRunInTheForkingContext() throws Exception {
+        // Arrange
+        try (TaskScope scope = TracingUtils.openTaskScope();
+             Scope ignored = Context.current().with(REQUEST, "42").makeCurrent()) {
+
+            // Act
+            Future<String> request = scope.fork(() -> Context.current().get(REQUEST));
+            scope.join();
+
+            // Assert
+            assertEquals("42", request.get());
+        }
+    }
+}
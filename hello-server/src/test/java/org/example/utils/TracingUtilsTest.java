@@ -0,0 +1,105 @@
+package org.example.utils;
+
+import io.opentelemetry.api.trace.TracerProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TracingUtilsTest {
+    private final TracingUtils tracingUtils = new TracingUtils(TracerProvider.noop().get("test"));
+
+    @Test
+    public void testRunsEveryItemAndKeepsTheirOrder() throws InterruptedException {
+        // Arrange
+        List<Integer> items = List.of(1, 2, 3, 4, 5, 6, 7, 8);
+
+        // Act
+        BatchResult<Integer> result = tracingUtils.inParallelLinkedTraces("batch", items, item -> item * 10);
+
+        // Assert
+        assertEquals(List.of(10, 20, 30, 40, 50, 60, 70, 80), result.getResults());
+        assertEquals(8, result.getSucceededCount());
+        assertFalse(result.hasFailures());
+    }
+
+    @Test
+    public void testCollectsExceptionsAndErrorsOfFailedItems() throws InterruptedException {
+        // Arrange
+        List<Integer> items = List.of(1, 2, 3);
+
+        // Act
+        BatchResult<Integer> result = tracingUtils.inParallelLinkedTraces("batch", items, item -> {
+            if (item == 1) {
+                throw new IllegalArgumentException("bad item");
+            }
+            if (item == 2) {
+                throw new AssertionError("broken item");
+            }
+            return item;
+        });
+
+        // Assert
+        assertEquals(2, result.getFailedCount());
+        assertInstanceOf(IllegalArgumentException.class, result.getErrors().get(0));
+        assertInstanceOf(AssertionError.class, result.getErrors().get(1));
+        assertNull(result.getErrors().get(2));
+        assertEquals(3, result.getResults().get(2));
+    }
+
+    @Test
+    public void testRunsAtMostMaxConcurrencyItemsAtOnce() throws InterruptedException {
+        // Arrange
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+
+        // Act
+        BatchResult<Integer> result = tracingUtils.inParallelLinkedTraces("batch", List.of(1, 2, 3, 4, 5, 6, 7, 8), 2, executor, item -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return item;
+        });
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(8, result.getSucceededCount());
+        assertTrue(mostRunning.get() <= 2, "Ran " + mostRunning.get() + " items at once");
+    }
+
+    @Test
+    public void testCountsRejectedItemsAsFailed() throws InterruptedException {
+        // Arrange
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+
+        // Act
+        BatchResult<Integer> result = tracingUtils.inParallelLinkedTraces("batch", List.of(1, 2), 1, executor, item -> item);
+
+        // Assert
+        assertEquals(2, result.getFailedCount());
+    }
+
+    @Test
+    public void testVirtualThreadExecutorOnlyFromJava21() {
+        // Arrange & Act
+        ExecutorService executor = TracingUtils.newVirtualThreadPerTaskExecutor();
+
+        // Assert
+        assertEquals(Runtime.version().feature() >= 21, executor != null);
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.benchmark;
+
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Minimal map backed {@link ConfigProperties} for creating providers outside of the agent. */
+final class BenchmarkConfigProperties implements ConfigProperties {
+    private final Map<String, String> properties;
+
+    BenchmarkConfigProperties(Map<String, String> properties) {
+        this.properties = new HashMap<>(properties);
+    }
+
+    @Override
+    public String getString(String name) {
+        return properties.get(name);
+    }
+
+    @Override
+    public Boolean getBoolean(String name) {
+        String value = properties.get(name);
+        return value == null ? null : Boolean.parseBoolean(value);
+    }
+
+    @Override
+    public Integer getInt(String name) {
+        String value = properties.get(name);
+        return value == null ? null : Integer.parseInt(value);
+    }
+
+    @Override
+    public Long getLong(String name) {
+        String value = properties.get(name);
+        return value == null ? null : Long.parseLong(value);
+    }
+
+    @Override
+    public Double getDouble(String name) {
+        String value = properties.get(name);
+        return value == null ? null : Double.parseDouble(value);
+    }
+
+    @Override
+    public Duration getDuration(String name) {
+        String value = properties.get(name);
+        return value == null ? null : Duration.ofMillis(Long.parseLong(value));
+    }
+
+    @Override
+    public List<String> getList(String name) {
+        String value = properties.get(name);
+        return value == null ? Collections.emptyList() : Arrays.asList(value.split(","));
+    }
+
+    @Override
+    public Map<String, String> getMap(String name) {
+        return Collections.emptyMap();
+    }
+}
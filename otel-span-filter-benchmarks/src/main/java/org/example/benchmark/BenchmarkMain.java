@@ -0,0 +1,26 @@
+package org.example.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the span filter benchmarks with the GC profiler enabled, so that every result reports
+ * {@code gc.alloc.rate.norm} (bytes/op) next to the time per operation.
+ *
+ * <p>Accepts the regular JMH command line, e.g. {@code java -jar target/benchmarks.jar
+ * RuleBasedRoutingSampler -p ruleCount=1000 -t 4}.
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.benchmark;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.example.RuleBasedSamplerProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Measures the sampler as the agent builds it: YAML rules routed by span kind. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeSamplerBenchmark {
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int ruleCount;
+
+    @Param({"true", "false"})
+    boolean matching;
+
+    private Path yamlFile;
+    private Sampler sampler;
+    private Attributes attributes;
+
+    @Setup
+    public void setUp() throws IOException {
+        yamlFile = Files.createTempFile("sampler-drop-config", ".yaml");
+        Files.writeString(yamlFile, RuleSets.yaml(ruleCount));
+        System.setProperty("rule.sampler.drop.conf.file", yamlFile.toString());
+
+        Map<String, String> config = new HashMap<>();
+        sampler = new RuleBasedSamplerProvider().createSampler(new BenchmarkConfigProperties(config));
+        attributes = Attributes.of(AttributeKey.stringKey(RuleSets.URL_PATH),
+                matching ? RuleSets.pathMatchingLastRule(ruleCount) : RuleSets.NON_MATCHING_PATH);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(yamlFile);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SamplingResult serverSpan() {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "GET", SpanKind.SERVER, attributes, Collections.emptyList());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SamplingResult spanKindWithoutRules() {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "GET", SpanKind.INTERNAL, attributes, Collections.emptyList());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SamplingResult serverSpanAllThreads() {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "GET", SpanKind.SERVER, attributes, Collections.emptyList());
+    }
+}
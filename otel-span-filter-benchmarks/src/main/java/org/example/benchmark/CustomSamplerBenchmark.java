@@ -0,0 +1,61 @@
+package org.example.benchmark;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.example.CustomSampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CustomSamplerBenchmark {
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    /** A Redis health check that is dropped, and a regular command that falls through. */
+    @Param({"true", "false"})
+    boolean matching;
+
+    private Sampler sampler;
+    private Attributes attributes;
+
+    @Setup
+    public void setUp() {
+        sampler = new CustomSampler(Sampler.parentBased(Sampler.alwaysOn()));
+        attributes = Attributes.of(
+                AttributeKey.stringKey("db.system"), "redis",
+                AttributeKey.stringKey("db.statement"), matching ? "PING" : "INCR hello_server:request_count");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SamplingResult shouldSample() {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "INCR", SpanKind.CLIENT, attributes, Collections.emptyList());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SamplingResult shouldSampleAllThreads() {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "INCR", SpanKind.CLIENT, attributes, Collections.emptyList());
+    }
+}
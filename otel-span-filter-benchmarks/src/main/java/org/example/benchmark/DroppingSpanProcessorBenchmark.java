@@ -0,0 +1,117 @@
+package org.example.benchmark;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import org.example.DroppingSpanProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DroppingSpanProcessorBenchmark {
+    private static final String PREFIX = "HiTest";
+
+    @Param({"true", "false"})
+    boolean matching;
+
+    @Param({"4", "32"})
+    int attributeCount;
+
+    private SdkTracerProvider tracerProvider;
+    private SpanProcessor processor;
+    private ReadableSpan span;
+
+    @Setup
+    public void setUp() {
+        // capture one ended span from a real SDK to feed to the processor
+        ReadableSpan[] captured = new ReadableSpan[1];
+        tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(new CapturingProcessor(captured))
+                .build();
+        SpanBuilder builder = tracerProvider.get("benchmark")
+                .spanBuilder("GET /hello")
+                .setSpanKind(SpanKind.SERVER);
+        for (int i = 0; i < attributeCount; i++) {
+            String key = matching && i == attributeCount - 1 ? PREFIX + ".flag" : "attribute." + i;
+            builder.setAttribute(key, "value-" + i);
+        }
+        Span started = builder.startSpan();
+        started.end();
+        span = captured[0];
+
+        processor = new DroppingSpanProcessor(SpanProcessor.composite(), PREFIX);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tracerProvider.close();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void onEnd() {
+        processor.onEnd(span);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void onEndAllThreads() {
+        processor.onEnd(span);
+    }
+
+    private static final class CapturingProcessor implements SpanProcessor {
+        private final ReadableSpan[] captured;
+
+        CapturingProcessor(ReadableSpan[] captured) {
+            this.captured = captured;
+        }
+
+        @Override
+        public void onStart(Context parentContext, ReadWriteSpan span) {
+        }
+
+        @Override
+        public boolean isStartRequired() {
+            return false;
+        }
+
+        @Override
+        public void onEnd(ReadableSpan span) {
+            captured[0] = span;
+        }
+
+        @Override
+        public boolean isEndRequired() {
+            return true;
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
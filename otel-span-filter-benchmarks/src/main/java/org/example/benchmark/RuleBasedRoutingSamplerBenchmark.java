@@ -0,0 +1,73 @@
+package org.example.benchmark;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import org.example.RuleBasedRoutingSampler;
+import org.example.RuleBasedRoutingSamplerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleBasedRoutingSamplerBenchmark {
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    int ruleCount;
+
+    @Param({"true", "false"})
+    boolean matching;
+
+    @Param({"false", "true"})
+    boolean cached;
+
+    private Sampler sampler;
+    private Attributes attributes;
+
+    @Setup
+    public void setUp() {
+        AttributeKey<String> urlPath = AttributeKey.stringKey(RuleSets.URL_PATH);
+        RuleBasedRoutingSamplerBuilder builder = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn());
+        for (int i = 0; i < ruleCount; i++) {
+            builder.drop(urlPath, RuleSets.pattern(i));
+        }
+        if (cached) {
+            builder.cacheDecisions(1024);
+        }
+        sampler = builder.build();
+        attributes = Attributes.of(urlPath, matching ? RuleSets.pathMatchingLastRule(ruleCount) : RuleSets.NON_MATCHING_PATH);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public SamplingResult shouldSample() {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "GET", SpanKind.SERVER, attributes, Collections.emptyList());
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SamplingResult shouldSampleAllThreads() {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "GET", SpanKind.SERVER, attributes, Collections.emptyList());
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.benchmark;
+
+/**
+ * Generates drop rule sets of a given size. Rules alternate between the shapes found in
+ * {@code sampler-drop-config.yaml}: anchored literals, prefixes and genuine regular expressions.
+ */
+final class RuleSets {
+    static final String URL_PATH = "url.path";
+    static final String NON_MATCHING_PATH = "/hello";
+
+    private RuleSets() {
+    }
+
+    /** Returns the pattern of rule {@code i}. */
+    static String pattern(int i) {
+        switch (i % 3) {
+            case 0:
+                return "^/health/" + i + "$";
+            case 1:
+                return "^/actuator/" + i;
+            default:
+                return "^/api/v[0-9]+/items/" + i + "$";
+        }
+    }
+
+    /** Returns a path that is only matched by the last rule, the worst case for a linear scan. */
+    static String pathMatchingLastRule(int ruleCount) {
+        int i = ruleCount - 1;
+        switch (i % 3) {
+            case 0:
+                return "/health/" + i;
+            case 1:
+                return "/actuator/" + i + "/info";
+            default:
+                return "/api/v2/items/" + i;
+        }
+    }
+
+    /** Renders the rules as a {@code sampler-drop-config.yaml} document for SERVER spans. */
+    static String yaml(int ruleCount) {
+        StringBuilder yaml = new StringBuilder()
+                .append("rules:\n")
+                .append("  drop:\n")
+                .append("    - spanKind: SERVER\n")
+                .append("      attributes:\n")
+                .append("        - ").append(URL_PATH).append(":\n");
+        for (int i = 0; i < ruleCount; i++) {
+            yaml.append("            - \"").append(pattern(i)).append("\"\n");
+        }
+        return yaml.toString();
+    }
+}
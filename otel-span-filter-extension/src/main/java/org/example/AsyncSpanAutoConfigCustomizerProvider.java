@@ -0,0 +1,42 @@
+package org.example;
+
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class AsyncSpanAutoConfigCustomizerProvider implements AutoConfigurationCustomizerProvider {
+    private static final Logger logger = Logger.getLogger(AsyncSpanAutoConfigCustomizerProvider.class.getName());
+    private static final String CONFIG_ENABLED = "span.filter.async.enabled";
+    private static final String CONFIG_BUFFER_SIZE = "span.filter.async.buffer.size";
+    private static final String CONFIG_FULL_POLICY = "span.filter.async.full.policy";
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    @Override
+    public void customize(AutoConfigurationCustomizer autoConfigurationCustomizer) {
+        autoConfigurationCustomizer.addSpanProcessorCustomizer((spanProcessor, config) -> {
+            if (!config.getBoolean(CONFIG_ENABLED, false)) {
+                return spanProcessor;
+            }
+            AsyncSpanProcessor.FullPolicy fullPolicy;
+            try {
+                fullPolicy = AsyncSpanProcessor.FullPolicy.parse(config.getString(CONFIG_FULL_POLICY, "inline"));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid " + CONFIG_FULL_POLICY + ", running spans inline when the buffer is full");
+                fullPolicy = AsyncSpanProcessor.FullPolicy.INLINE;
+            }
+            AsyncSpanProcessor asyncSpanProcessor = new AsyncSpanProcessor(
+                    spanProcessor, config.getInt(CONFIG_BUFFER_SIZE, DEFAULT_BUFFER_SIZE), fullPolicy);
+            SpanFilterMetrics.fromConfig(config).register(asyncSpanProcessor);
+            return asyncSpanProcessor;
+        });
+        logger.log(Level.INFO, "Registered SpanProcessor customizer for AsyncSpanProcessor.");
+    }
+
+    @Override
+    public int order() {
+        // Last, so that it wraps every other processor and they all run on its worker
+        return 10;
+    }
+}
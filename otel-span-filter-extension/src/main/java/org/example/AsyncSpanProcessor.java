@@ -0,0 +1,255 @@
+package org.example;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hands ended spans to a worker thread, which runs the wrapped processors, so that filtering does
+ * not add to the latency of the thread ending the span.
+ *
+ * <p>Spans go into a preallocated ring buffer, the same way {@link DecisionAuditLog} records do:
+ * producers claim a slot with a CAS on the head sequence and publish it with a volatile write, and
+ * the single worker consumes published slots in order. The worker parks when the buffer is empty
+ * and producers only wake it when it does. When the buffer is full, the {@link FullPolicy} decides
+ * whether the span is dropped, waits for a free slot, or is processed on the calling thread.
+ * Whatever a wrapped processor throws is logged and the worker goes on with the next span.
+ *
+ * <p>{@link #onStart} is not deferred, the wrapped processors see it on the calling thread.
+ */
+public class AsyncSpanProcessor implements SpanProcessor {
+    private static final Logger logger = Logger.getLogger(AsyncSpanProcessor.class.getName());
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long FLUSH_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    /** What to do with an ended span when the buffer is full. */
+    public enum FullPolicy {
+        /** Drop the span and count it. */
+        DROP,
+        /** Wait for the worker to free a slot. */
+        BLOCK,
+        /** Run the wrapped processors on the calling thread. */
+        INLINE;
+
+        static FullPolicy parse(String policy) {
+            return valueOf(policy.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final SpanProcessor nextProcessor;
+    private final FullPolicy fullPolicy;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    // only advanced by the worker
+    private volatile long tail;
+    private volatile boolean running = true;
+    private volatile boolean workerParked;
+    private final Thread worker;
+
+    private final LongAdder overflows = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public AsyncSpanProcessor(SpanProcessor nextProcessor, int bufferSize, FullPolicy fullPolicy) {
+        this.nextProcessor = Objects.requireNonNull(nextProcessor, "nextProcessor must not be null");
+        this.fullPolicy = Objects.requireNonNull(fullPolicy, "fullPolicy must not be null");
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        // round up to a power of two so that the slot index is a mask
+        int capacity = Integer.highestOneBit(bufferSize - 1) << 1;
+        this.slots = new Slot[Math.max(capacity, 2)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = slots.length - 1;
+        this.worker = new Thread(this::workLoop, "span-filter-async");
+        this.worker.setDaemon(true);
+        this.worker.start();
+        logger.log(Level.INFO, "Initialized AsyncSpanProcessor: " + this);
+    }
+
+    @Override
+    public void onStart(Context context, ReadWriteSpan readWriteSpan) {
+        nextProcessor.onStart(context, readWriteSpan);
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return nextProcessor.isStartRequired();
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        boolean overflowed = false;
+        while (true) {
+            if (!running) {
+                // the worker is stopping, nothing would consume the span
+                nextProcessor.onEnd(span);
+                return;
+            }
+            long sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                if (!overflowed) {
+                    overflowed = true;
+                    overflows.increment();
+                }
+                switch (fullPolicy) {
+                    case DROP:
+                        dropped.increment();
+                        return;
+                    case INLINE:
+                        nextProcessor.onEnd(span);
+                        return;
+                    default:
+                        if (!worker.isAlive()) {
+                            // nothing will free a slot
+                            nextProcessor.onEnd(span);
+                            return;
+                        }
+                        wakeWorker();
+                        LockSupport.parkNanos(FULL_PARK_NANOS);
+                        continue;
+                }
+            }
+            if (head.compareAndSet(sequence, sequence + 1)) {
+                Slot slot = slots[(int) (sequence & mask)];
+                slot.span = span;
+                slot.published = sequence;
+                if (workerParked) {
+                    wakeWorker();
+                }
+                return;
+            }
+        }
+    }
+
+    private void wakeWorker() {
+        LockSupport.unpark(worker);
+    }
+
+    private void workLoop() {
+        while (running) {
+            if (drain() == 0) {
+                workerParked = true;
+                // a span published before the flag was set is seen here, one published after
+                // sees the flag and unparks
+                if (running && head.get() == tail) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                workerParked = false;
+            }
+        }
+        // claimed slots are published shortly after, finish them
+        long end = head.get();
+        while (tail < end) {
+            if (drain() == 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /** Runs the wrapped processors on all published spans; returns how many there were. */
+    int drain() {
+        int drained = 0;
+        long next = tail;
+        Slot slot = slots[(int) (next & mask)];
+        while (slot.published == next) {
+            ReadableSpan span = slot.span;
+            slot.span = null;
+            // hand the slot back to the producers
+            tail = ++next;
+            try {
+                nextProcessor.onEnd(span);
+            } catch (Throwable t) {
+                // an error must not stop the worker, producers blocked on a full buffer wait for it
+                logger.log(Level.WARNING, "Span processor failed on " + span.getName(), t);
+            }
+            drained++;
+            slot = slots[(int) (next & mask)];
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        running = false;
+        wakeWorker();
+        try {
+            worker.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!worker.isAlive()) {
+            // spans claimed while the worker was finishing
+            drain();
+        }
+        return nextProcessor.shutdown();
+    }
+
+    /** Waits until the spans ended before the call have been processed, then flushes the wrapped processors. */
+    @Override
+    public CompletableResultCode forceFlush() {
+        long end = head.get();
+        while (tail < end && worker.isAlive()) {
+            wakeWorker();
+            LockSupport.parkNanos(FLUSH_PARK_NANOS);
+        }
+        return nextProcessor.forceFlush();
+    }
+
+    /** Returns the number of ended spans waiting for the worker. */
+    public long getQueueDepth() {
+        // tail read first, so the depth is never negative
+        long consumed = tail;
+        return head.get() - consumed;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /** Returns how many spans found the buffer full, whatever the policy did with them. */
+    public long getOverflowCount() {
+        return overflows.sum();
+    }
+
+    /** Returns how many spans were dropped because the buffer was full. */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncSpanProcessor{"
+                + "capacity="
+                + slots.length
+                + ", fullPolicy="
+                + fullPolicy
+                + '}';
+    }
+
+    private static final class Slot {
+        // sequence of the span held by this slot once it is written
+        volatile long published = -1;
+        ReadableSpan span;
+    }
+}
@@ -0,0 +1,39 @@
+package org.example;
+
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
+
+import java.nio.file.Paths;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class AttributeBudgetAutoConfigCustomizerProvider implements AutoConfigurationCustomizerProvider {
+    private static final Logger logger = Logger.getLogger(AttributeBudgetAutoConfigCustomizerProvider.class.getName());
+    // the YAML file of the rule based sampler, whose attributeLimits apply here
+    private static final String CONFIG_DROP_RULES_FILE = "rule.sampler.drop.conf.file";
+
+    @Override
+    public void customize(AutoConfigurationCustomizer autoConfigurationCustomizer) {
+        autoConfigurationCustomizer.addSpanProcessorCustomizer((spanProcessor, config) -> {
+            String dropRulesFile = config.getString(CONFIG_DROP_RULES_FILE);
+            if (dropRulesFile == null || dropRulesFile.trim().isEmpty()) {
+                return spanProcessor;
+            }
+            AttributeLimits limits = new DropRuleConfigReader().readAttributeLimitsFromYaml(Paths.get(dropRulesFile.trim()));
+            if (limits.isEmpty()) {
+                return spanProcessor;
+            }
+            AttributeBudgetSpanProcessor budgetSpanProcessor = new AttributeBudgetSpanProcessor(spanProcessor, limits);
+            SpanFilterMetrics.fromConfig(config).register(budgetSpanProcessor);
+            return budgetSpanProcessor;
+        });
+        logger.log(Level.INFO, "Registered SpanProcessor customizer for AttributeBudgetSpanProcessor.");
+    }
+
+    @Override
+    public int order() {
+        // Before DroppingSpanAutoConfigCustomizerProvider, so that it wraps this processor and
+        // dropped spans are never measured
+        return -20;
+    }
+}
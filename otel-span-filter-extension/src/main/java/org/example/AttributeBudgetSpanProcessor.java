@@ -0,0 +1,409 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.AttributeType;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.InstrumentationLibraryInfo;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shrinks the attributes of ended spans before they reach the exporter: values of given keys are
+ * truncated, hashed or redacted, and spans whose attributes exceed the byte budget have their
+ * largest string values truncated until they fit.
+ *
+ * <p>Attributes are measured with a per-thread visitor that allocates nothing, and spans within
+ * their limits are passed on as they are. Only the others are wrapped, with span data that
+ * returns the limited attributes; the span itself is never copied. Sizes are the UTF-8 length of
+ * keys and string values, and 8 bytes per number, which is close to their size once encoded.
+ *
+ * <p>The attributes are read through {@link ReadableSpan#toSpanData()}, which for an ended SDK
+ * span shares the span's own attribute map, whereas {@link ReadableSpan#getAttributes()} copies
+ * all of them on every call.
+ */
+public class AttributeBudgetSpanProcessor implements SpanProcessor {
+    private static final Logger logger = Logger.getLogger(AttributeBudgetSpanProcessor.class.getName());
+    static final String REDACTED = "[REDACTED]";
+    static final String HASH_PREFIX = "sha256:";
+    // truncation to fit the budget keeps at least this much of a value
+    static final int MIN_TRUNCATED_BYTES = 32;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SpanProcessor nextProcessor;
+    private final int maxSpanBytes;
+    private final Map<String, AttributeLimits.KeyRule> keyRules;
+    private final ThreadLocal<SizeScan> scans = ThreadLocal.withInitial(SizeScan::new);
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(AttributeBudgetSpanProcessor::sha256);
+
+    private final LongAdder limitedSpans = new LongAdder();
+    private final Map<String, LongAdder> bytesSaved = new ConcurrentHashMap<>();
+
+    public AttributeBudgetSpanProcessor(SpanProcessor nextProcessor, int maxSpanBytes) {
+        this(nextProcessor, new AttributeLimits(maxSpanBytes, Map.of()));
+    }
+
+    AttributeBudgetSpanProcessor(SpanProcessor nextProcessor, AttributeLimits limits) {
+        this.nextProcessor = Objects.requireNonNull(nextProcessor, "nextProcessor must not be null");
+        Objects.requireNonNull(limits, "limits must not be null");
+        this.maxSpanBytes = limits.getMaxSpanBytes();
+        this.keyRules = limits.getKeyRules();
+        logger.log(Level.INFO, "Initialized AttributeBudgetSpanProcessor: " + limits);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void onStart(Context context, ReadWriteSpan readWriteSpan) {
+        nextProcessor.onStart(context, readWriteSpan);
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return nextProcessor.isStartRequired();
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        // ended, so the span data holds the attributes without a copy
+        Attributes attributes = span.toSpanData().getAttributes();
+        SizeScan scan = scans.get();
+        scan.reset();
+        attributes.forEach(scan);
+        long bytes = scan.bytes;
+        boolean ruleApplies = scan.ruleApplies;
+        scan.reset();
+
+        if (!ruleApplies && bytes <= maxSpanBytes) {
+            nextProcessor.onEnd(span);
+            return;
+        }
+        limitedSpans.increment();
+        nextProcessor.onEnd(new LimitedSpan(span, limit(attributes, bytes)));
+    }
+
+    Attributes limit(Attributes attributes, long bytes) {
+        Map<AttributeKey<?>, Object> values = new LinkedHashMap<>(attributes.asMap());
+        for (Map.Entry<AttributeKey<?>, Object> entry : values.entrySet()) {
+            AttributeLimits.KeyRule rule = keyRules.get(entry.getKey().getKey());
+            if (rule != null && applies(rule, entry.getValue())) {
+                Object limited = apply(rule, entry.getValue());
+                long saved = valueSize(entry.getValue()) - valueSize(limited);
+                bytes -= saved;
+                recordSaved(entry.getKey().getKey(), saved);
+                entry.setValue(limited);
+            }
+        }
+        if (bytes > maxSpanBytes) {
+            fitBudget(values, bytes - maxSpanBytes);
+        }
+
+        AttributesBuilder builder = Attributes.builder();
+        values.forEach((key, value) -> put(builder, key, value));
+        return builder.build();
+    }
+
+    // truncates the largest string values first, as few as needed
+    private void fitBudget(Map<AttributeKey<?>, Object> values, long excess) {
+        List<Map.Entry<AttributeKey<?>, Object>> strings = new ArrayList<>();
+        for (Map.Entry<AttributeKey<?>, Object> entry : values.entrySet()) {
+            if (entry.getKey().getType() == AttributeType.STRING) {
+                strings.add(entry);
+            }
+        }
+        strings.sort((a, b) -> Long.compare(utf8Length((String) b.getValue()), utf8Length((String) a.getValue())));
+        for (Map.Entry<AttributeKey<?>, Object> entry : strings) {
+            if (excess <= 0) {
+                break;
+            }
+            String value = (String) entry.getValue();
+            long size = utf8Length(value);
+            long target = Math.max(MIN_TRUNCATED_BYTES, size - excess);
+            if (target >= size) {
+                continue;
+            }
+            String truncated = truncateUtf8(value, (int) target);
+            long saved = size - utf8Length(truncated);
+            excess -= saved;
+            recordSaved(entry.getKey().getKey(), saved);
+            entry.setValue(truncated);
+        }
+    }
+
+    private static boolean applies(AttributeLimits.KeyRule rule, Object value) {
+        if (value instanceof String) {
+            return rule.action != AttributeLimits.Action.TRUNCATE || ((String) value).length() > rule.maxLength;
+        }
+        if (value instanceof List) {
+            for (Object element : (List<?>) value) {
+                if (element instanceof String && applies(rule, element)) {
+                    return true;
+                }
+            }
+        }
+        // numbers and booleans are left alone
+        return false;
+    }
+
+    private Object apply(AttributeLimits.KeyRule rule, Object value) {
+        if (value instanceof List) {
+            List<Object> limited = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                limited.add(element instanceof String ? apply(rule, element) : element);
+            }
+            return limited;
+        }
+        String string = (String) value;
+        switch (rule.action) {
+            case HASH:
+                return hash(string);
+            case REDACT:
+                return REDACTED;
+            default:
+                return string.length() > rule.maxLength ? truncateChars(string, rule.maxLength) : string;
+        }
+    }
+
+    private String hash(String value) {
+        MessageDigest digest = digests.get();
+        byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+        // 64 bits are enough to tell values apart in a trace backend
+        char[] hex = new char[16];
+        for (int i = 0; i < 8; i++) {
+            hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[hash[i] & 0xf];
+        }
+        return HASH_PREFIX + new String(hex);
+    }
+
+    private void recordSaved(String key, long saved) {
+        if (saved > 0) {
+            bytesSaved.computeIfAbsent(key, k -> new LongAdder()).add(saved);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(AttributesBuilder builder, AttributeKey<?> key, Object value) {
+        builder.put((AttributeKey<Object>) key, value);
+    }
+
+    private static String truncateChars(String value, int maxLength) {
+        int end = maxLength;
+        // do not split a surrogate pair
+        if (end > 0 && Character.isHighSurrogate(value.charAt(end - 1))) {
+            end--;
+        }
+        return value.substring(0, end);
+    }
+
+    // the longest prefix encoded in at most maxBytes
+    static String truncateUtf8(String value, int maxBytes) {
+        int bytes = 0;
+        int i = 0;
+        while (i < value.length()) {
+            char c = value.charAt(i);
+            int width = 1;
+            int size;
+            if (c < 0x80) {
+                size = 1;
+            } else if (c < 0x800) {
+                size = 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                size = 4;
+                width = 2;
+            } else {
+                size = 3;
+            }
+            if (bytes + size > maxBytes) {
+                break;
+            }
+            bytes += size;
+            i += width;
+        }
+        return value.substring(0, i);
+    }
+
+    static long utf8Length(String value) {
+        long bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    static long valueSize(Object value) {
+        if (value instanceof String) {
+            return utf8Length((String) value);
+        }
+        if (value instanceof Boolean) {
+            return 1;
+        }
+        if (value instanceof List) {
+            long bytes = 0;
+            for (Object element : (List<?>) value) {
+                bytes += valueSize(element);
+            }
+            return bytes;
+        }
+        return 8;
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        return nextProcessor.shutdown();
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return nextProcessor.forceFlush();
+    }
+
+    /** Returns how many spans had attributes limited. */
+    public long getLimitedSpanCount() {
+        return limitedSpans.sum();
+    }
+
+    /** Returns the bytes of attribute values removed, per attribute key. */
+    public Map<String, Long> getBytesSaved() {
+        Map<String, Long> saved = new TreeMap<>();
+        bytesSaved.forEach((key, bytes) -> saved.put(key, bytes.sum()));
+        return saved;
+    }
+
+    // reused for every span ended on a thread, so measuring allocates nothing
+    private final class SizeScan implements BiConsumer<AttributeKey<?>, Object> {
+        long bytes;
+        boolean ruleApplies;
+
+        void reset() {
+            bytes = 0;
+            ruleApplies = false;
+        }
+
+        @Override
+        public void accept(AttributeKey<?> key, Object value) {
+            bytes += utf8Length(key.getKey()) + valueSize(value);
+            if (!ruleApplies && !keyRules.isEmpty()) {
+                AttributeLimits.KeyRule rule = keyRules.get(key.getKey());
+                ruleApplies = rule != null && applies(rule, value);
+            }
+        }
+    }
+
+    /** An ended span whose attributes, including those of its span data, are the limited ones. */
+    private static final class LimitedSpan implements ReadableSpan {
+        private final ReadableSpan span;
+        private final Attributes attributes;
+
+        LimitedSpan(ReadableSpan span, Attributes attributes) {
+            this.span = span;
+            this.attributes = attributes;
+        }
+
+        @Override
+        public SpanContext getSpanContext() {
+            return span.getSpanContext();
+        }
+
+        @Override
+        public SpanContext getParentSpanContext() {
+            return span.getParentSpanContext();
+        }
+
+        @Override
+        public String getName() {
+            return span.getName();
+        }
+
+        @Override
+        public SpanData toSpanData() {
+            return new DelegatingSpanData(span.toSpanData()) {
+                @Override
+                public Attributes getAttributes() {
+                    return attributes;
+                }
+            };
+        }
+
+        @Override
+        @Deprecated
+        public InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+            return span.getInstrumentationLibraryInfo();
+        }
+
+        @Override
+        public InstrumentationScopeInfo getInstrumentationScopeInfo() {
+            return span.getInstrumentationScopeInfo();
+        }
+
+        @Override
+        public boolean hasEnded() {
+            return span.hasEnded();
+        }
+
+        @Override
+        public long getLatencyNanos() {
+            return span.getLatencyNanos();
+        }
+
+        @Override
+        public SpanKind getKind() {
+            return span.getKind();
+        }
+
+        @Override
+        public <T> T getAttribute(AttributeKey<T> key) {
+            return attributes.get(key);
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return attributes;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Limits read from the {@code attributeLimits} section of the drop rule YAML: a budget in bytes
+ * for the attributes of each span, and what to do with the values of given keys.
+ */
+final class AttributeLimits {
+    static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private final int maxSpanBytes;
+    private final Map<String, KeyRule> keyRules;
+
+    AttributeLimits(int maxSpanBytes, Map<String, KeyRule> keyRules) {
+        if (maxSpanBytes <= 0) {
+            throw new IllegalArgumentException("maxSpanBytes must be positive");
+        }
+        this.maxSpanBytes = maxSpanBytes;
+        this.keyRules = Map.copyOf(keyRules);
+    }
+
+    static AttributeLimits none() {
+        return new AttributeLimits(UNLIMITED, Map.of());
+    }
+
+    /**
+     * Compiles the limits read from YAML.
+     *
+     * @throws IllegalArgumentException if a key, action or length is invalid
+     */
+    static AttributeLimits compile(DropRuleConfig.AttributeLimitsConfig config) {
+        int maxSpanBytes = config.getMaxSpanBytes() != null ? config.getMaxSpanBytes() : UNLIMITED;
+        Map<String, KeyRule> keyRules = new HashMap<>();
+        if (config.getKeys() != null) {
+            for (DropRuleConfig.KeyLimit limit : config.getKeys()) {
+                if (limit.getKey() == null || limit.getKey().isEmpty()) {
+                    throw new IllegalArgumentException("Key limit without 'key'");
+                }
+                Action action = limit.getAction() != null
+                        ? Action.valueOf(limit.getAction().trim().toUpperCase(Locale.ROOT))
+                        : Action.TRUNCATE;
+                int maxLength = limit.getMaxLength() != null ? limit.getMaxLength() : UNLIMITED;
+                if (action == Action.TRUNCATE && (limit.getMaxLength() == null || maxLength < 0)) {
+                    throw new IllegalArgumentException("Truncated key " + limit.getKey() + " needs a 'maxLength' of at least 0");
+                }
+                if (keyRules.put(limit.getKey(), new KeyRule(action, maxLength)) != null) {
+                    throw new IllegalArgumentException("Key " + limit.getKey() + " is limited twice");
+                }
+            }
+        }
+        return new AttributeLimits(maxSpanBytes, keyRules);
+    }
+
+    int getMaxSpanBytes() {
+        return maxSpanBytes;
+    }
+
+    Map<String, KeyRule> getKeyRules() {
+        return keyRules;
+    }
+
+    boolean isEmpty() {
+        return maxSpanBytes == UNLIMITED && keyRules.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeLimits{"
+                + "maxSpanBytes="
+                + (maxSpanBytes == UNLIMITED ? "unlimited" : Integer.toString(maxSpanBytes))
+                + ", keyRules="
+                + keyRules
+                + '}';
+    }
+
+    enum Action {
+        TRUNCATE,
+        HASH,
+        REDACT
+    }
+
+    static final class KeyRule {
+        final Action action;
+        // in characters, only used to truncate
+        final int maxLength;
+
+        KeyRule(Action action, int maxLength) {
+            this.action = action;
+            this.maxLength = maxLength;
+        }
+
+        @Override
+        public String toString() {
+            return action == Action.TRUNCATE ? "truncate to " + maxLength : action.name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * All {@link SamplingRule}s of a {@link RuleBasedRoutingSampler} that test the same attribute key,
+ * compiled so that an attribute value is scanned once regardless of how many rules exist.
+ *
+ * <p>Patterns that are plain literals (see {@link LiteralPattern}) never reach the regex engine:
+ * anchored literals such as {@code ^/health$} are answered by a hash lookup, prefixes and suffixes
+ * by a {@link LiteralTrie} walk and unanchored literals by {@link String#contains}.
+ *
+ * <p>The remaining patterns are merged into a single alternation {@code (p0)|(p1)|...}. A failed
+ * {@link Matcher#find()} on the combined pattern proves that none of them match, which is the
+ * common case for most spans. When it succeeds, the matching alternative identifies one rule that
+ * matches; only the rules declared before it are then re-checked individually, so the rule
+ * returned is always the first matching one in declaration order.
+ *
+ * <p>Patterns using back references cannot be renumbered into the alternation and are checked
+ * one at a time instead.
+ *
+ * <p>Consecutive rules with the same delegate form a segment; which rule of a segment matches does
+ * not change the outcome, so as soon as one of them matches only earlier segments are still
+ * checked.
+ */
+final class AttributeRuleMatcher {
+    static final int NO_MATCH = -1;
+
+    private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+    final AttributeKey<String> attributeKey;
+    final int firstRuleIndex;
+    // for every rule, the index of the first rule of its segment, see RuleBasedRoutingSampler
+    private final int[] segmentStart;
+
+    // literal rules, see LiteralPattern
+    private final Map<String, Integer> exactRules = new HashMap<>();
+    private final LiteralTrie prefixRules = new LiteralTrie(false);
+    private final LiteralTrie suffixRules = new LiteralTrie(true);
+    private final int[] containsRules;
+    private final String[] containsLiterals;
+    private final boolean hasPrefixRules;
+    private final boolean hasSuffixRules;
+
+    // global rule indexes and patterns taking part in the combined pattern, ascending
+    private final int[] combinedRules;
+    private final Pattern[] combinedPatterns;
+    // capturing group number that opens the alternative of each combined rule
+    private final int[] alternativeGroups;
+    private final Pattern combined;
+    // reused per thread, a fresh Matcher allocates group arrays sized by all combined patterns
+    private final ThreadLocal<Matcher> combinedMatcher;
+    // reused per thread for the re-checks of combined rules, created on first use
+    private final ThreadLocal<Matcher[]> recheckMatchers;
+
+    // rules that have to be evaluated on their own, ascending
+    private final int[] standaloneRules;
+    private final Pattern[] standalonePatterns;
+
+    private AttributeRuleMatcher(AttributeKey<String> attributeKey, List<Integer> ruleIndexes, List<SamplingRule> rules, int[] segmentStart) {
+        this.attributeKey = attributeKey;
+        this.firstRuleIndex = ruleIndexes.get(0);
+        this.segmentStart = segmentStart;
+
+        List<Integer> contains = new ArrayList<>();
+        List<String> containsLiteralList = new ArrayList<>();
+        List<Integer> combinable = new ArrayList<>();
+        List<Integer> standalone = new ArrayList<>();
+        boolean prefixes = false;
+        boolean suffixes = false;
+        for (int index : ruleIndexes) {
+            String regex = rules.get(index).pattern.pattern();
+            LiteralPattern literal = LiteralPattern.parse(regex);
+            if (literal == null) {
+                if (BACK_REFERENCE.matcher(regex).find()) {
+                    standalone.add(index);
+                } else {
+                    combinable.add(index);
+                }
+                continue;
+            }
+            switch (literal.kind) {
+                case EXACT:
+                    exactRules.putIfAbsent(literal.literal, index);
+                    break;
+                case PREFIX:
+                    prefixRules.add(literal.literal, index);
+                    prefixes = true;
+                    break;
+                case SUFFIX:
+                    suffixRules.add(literal.literal, index);
+                    suffixes = true;
+                    break;
+                default:
+                    contains.add(index);
+                    containsLiteralList.add(literal.literal);
+                    break;
+            }
+        }
+        this.hasPrefixRules = prefixes;
+        this.hasSuffixRules = suffixes;
+        this.containsRules = toArray(contains);
+        this.containsLiterals = containsLiteralList.toArray(new String[0]);
+
+        Pattern combinedPattern = null;
+        int[] groups = new int[0];
+        if (combinable.size() > 1) {
+            groups = new int[combinable.size()];
+            StringBuilder alternation = new StringBuilder();
+            int group = 1;
+            for (int i = 0; i < combinable.size(); i++) {
+                Pattern pattern = rules.get(combinable.get(i)).pattern;
+                if (i > 0) {
+                    alternation.append('|');
+                }
+                alternation.append('(').append(pattern.pattern()).append(')');
+                groups[i] = group;
+                group += 1 + pattern.matcher("").groupCount();
+            }
+            try {
+                combinedPattern = Pattern.compile(alternation.toString());
+            } catch (PatternSyntaxException e) {
+                // e.g. the same named group declared by two patterns
+                combinedPattern = null;
+            }
+        }
+        if (combinedPattern == null) {
+            standalone.addAll(combinable);
+            standalone.sort(null);
+            combinable.clear();
+            groups = new int[0];
+        }
+
+        this.combined = combinedPattern;
+        this.combinedMatcher = combinedPattern == null ? null : ThreadLocal.withInitial(() -> combined.matcher(""));
+        this.alternativeGroups = groups;
+        this.combinedRules = toArray(combinable);
+        this.combinedPatterns = patternsOf(combinable, rules);
+        this.recheckMatchers = combinedPattern == null ? null : ThreadLocal.withInitial(() -> new Matcher[this.combinedPatterns.length]);
+        this.standaloneRules = toArray(standalone);
+        this.standalonePatterns = patternsOf(standalone, rules);
+    }
+
+    /**
+     * Groups the rules by attribute key.
+     *
+     * @return one matcher per distinct attribute key, ordered by the index of its first rule
+     */
+    static AttributeRuleMatcher[] compile(List<SamplingRule> rules, int[] segmentStart) {
+        Map<AttributeKey<String>, List<Integer>> indexesByKey = new LinkedHashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            indexesByKey.computeIfAbsent(rules.get(i).attributeKey, k -> new ArrayList<>()).add(i);
+        }
+        AttributeRuleMatcher[] matchers = new AttributeRuleMatcher[indexesByKey.size()];
+        int i = 0;
+        for (Map.Entry<AttributeKey<String>, List<Integer>> entry : indexesByKey.entrySet()) {
+            matchers[i++] = new AttributeRuleMatcher(entry.getKey(), entry.getValue(), rules, segmentStart);
+        }
+        return matchers;
+    }
+
+    /**
+     * Returns the index of a rule on this key whose pattern is found in {@code value}, only
+     * considering rules with an index lower than {@code bound}. The rule belongs to the earliest
+     * matching segment, i.e. it has the same delegate as the first matching rule in declaration
+     * order, which is all that matters for the outcome.
+     *
+     * @return the rule index, or {@link #NO_MATCH}
+     */
+    int firstMatch(String value, int bound) {
+        int limit = bound;
+        int match = NO_MATCH;
+
+        if (!exactRules.isEmpty()) {
+            Integer exact = exactRules.get(value);
+            if (exact == null) {
+                int end = LiteralPattern.endBeforeLineTerminator(value);
+                if (end >= 0) {
+                    exact = exactRules.get(value.substring(0, end));
+                }
+            }
+            if (exact != null && exact < limit) {
+                match = exact;
+                limit = segmentStart[match];
+            }
+        }
+        if (hasPrefixRules) {
+            int prefix = prefixRules.firstMatch(value, value.length(), limit);
+            if (prefix != NO_MATCH) {
+                match = prefix;
+                limit = segmentStart[match];
+            }
+        }
+        if (hasSuffixRules) {
+            int suffix = suffixRules.firstMatch(value, value.length(), limit);
+            if (suffix != NO_MATCH) {
+                match = suffix;
+                limit = segmentStart[match];
+            }
+            int end = LiteralPattern.endBeforeLineTerminator(value);
+            if (end >= 0) {
+                suffix = suffixRules.firstMatch(value, end, limit);
+                if (suffix != NO_MATCH) {
+                    match = suffix;
+                    limit = segmentStart[match];
+                }
+            }
+        }
+        for (int i = 0; i < containsRules.length && containsRules[i] < limit; i++) {
+            if (value.contains(containsLiterals[i])) {
+                match = containsRules[i];
+                limit = segmentStart[match];
+                break;
+            }
+        }
+
+        if (combined != null && combinedRules[0] < limit) {
+            Matcher matcher = combinedMatcher.get().reset(value);
+            if (matcher.find()) {
+                int hit = matchedAlternative(matcher);
+                // rules of earlier segments may still match further along the value
+                int recheckLimit = Math.min(limit, segmentStart[combinedRules[hit]]);
+                Matcher[] rechecks = hit > 0 && combinedRules[0] < recheckLimit ? recheckMatchers.get() : null;
+                for (int i = 0; i < hit && combinedRules[i] < recheckLimit; i++) {
+                    if (recheckMatcher(rechecks, i, value).find()) {
+                        hit = i;
+                        break;
+                    }
+                }
+                if (combinedRules[hit] < limit) {
+                    match = combinedRules[hit];
+                    limit = segmentStart[match];
+                }
+            }
+        }
+
+        for (int i = 0; i < standaloneRules.length && standaloneRules[i] < limit; i++) {
+            if (standalonePatterns[i].matcher(value).find()) {
+                return standaloneRules[i];
+            }
+        }
+        return match;
+    }
+
+    private Matcher recheckMatcher(Matcher[] rechecks, int i, String value) {
+        Matcher matcher = rechecks[i];
+        if (matcher == null) {
+            matcher = combinedPatterns[i].matcher(value);
+            rechecks[i] = matcher;
+            return matcher;
+        }
+        return matcher.reset(value);
+    }
+
+    private int matchedAlternative(Matcher matcher) {
+        for (int i = 0; i < alternativeGroups.length; i++) {
+            if (matcher.start(alternativeGroups[i]) != -1) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Combined pattern matched without any alternative: " + combined);
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static Pattern[] patternsOf(List<Integer> indexes, List<SamplingRule> rules) {
+        Pattern[] result = new Pattern[indexes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = rules.get(indexes.get(i)).pattern;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeRuleMatcher{"
+                + "attributeKey="
+                + attributeKey
+                + ", exact="
+                + exactRules.keySet()
+                + ", contains="
+                + containsLiterals.length
+                + ", combined="
+                + combined
+                + ", standalone="
+                + standaloneRules.length
+                + '}';
+    }
+}
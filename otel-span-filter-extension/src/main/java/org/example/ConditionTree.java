@@ -0,0 +1,296 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Rules made of several conditions that must all hold, such as {@code db.system=redis} and {@code
+ * db.statement} starting with {@code PING}, compiled into a decision diagram.
+ *
+ * <p>A condition is an attribute key with the patterns its value may match. Identical conditions
+ * of different rules are compiled once. Every node of the diagram tests one condition and leads to
+ * the rules that can still hold, so a span never evaluates a condition twice and evaluation stops
+ * as soon as a rule holds or none can anymore. At each node the cheapest remaining condition is
+ * tested first, preferring the ones shared by more rules: a presence test, then an exact value,
+ * then a prefix or suffix, then a substring and regular expressions last.
+ *
+ * <p>Nodes reached with the same remaining rules are shared, which keeps the diagram small for
+ * realistic rule sets; at most {@value #MAX_CONDITIONS} distinct conditions and {@value
+ * #MAX_NODES} nodes are accepted per span kind.
+ */
+final class ConditionTree {
+    static final int MAX_CONDITIONS = 64;
+    static final int MAX_NODES = 4096;
+
+    // inlined incubating attribute to prevent direct dependency on incubating semconv
+    private static final AttributeKey<String> THREAD_NAME = AttributeKey.stringKey("thread.name");
+
+    // conditions cost, cheapest first
+    private static final int PRESENCE = 0;
+    private static final int EXACT = 1;
+    private static final int AFFIX = 2;
+    private static final int CONTAINS = 3;
+    private static final int REGEX = 4;
+
+    private static final Node NO_RULE = new Node(-1, null, null, AttributeRuleMatcher.NO_MATCH);
+
+    private final Condition[] conditions;
+    private final List<Map<AttributeKey<String>, Set<String>>> rules;
+    private final Node root;
+    private final int nodeCount;
+
+    private ConditionTree(Condition[] conditions, List<Map<AttributeKey<String>, Set<String>>> rules, Node root, int nodeCount) {
+        this.conditions = conditions;
+        this.rules = rules;
+        this.root = root;
+        this.nodeCount = nodeCount;
+    }
+
+    /**
+     * Compiles rules, each a map from attribute key to the patterns the value of that key may
+     * match. A rule holds when every one of its keys has a value matching one of its patterns.
+     *
+     * @throws IllegalArgumentException if a pattern is invalid or the rules are too many
+     */
+    static ConditionTree compile(List<Map<AttributeKey<String>, Set<String>>> rules) {
+        Map<String, Integer> conditionIds = new HashMap<>();
+        List<Condition> conditions = new ArrayList<>();
+        long[] ruleConditions = new long[rules.size()];
+        for (int r = 0; r < rules.size(); r++) {
+            if (rules.get(r).isEmpty()) {
+                throw new IllegalArgumentException("Rule without conditions");
+            }
+            for (Map.Entry<AttributeKey<String>, Set<String>> entry : rules.get(r).entrySet()) {
+                Set<String> patterns = new TreeSet<>(entry.getValue());
+                String id = entry.getKey().getKey() + '\u0000' + String.join("\u0000", patterns);
+                Integer conditionId = conditionIds.get(id);
+                if (conditionId == null) {
+                    if (conditions.size() == MAX_CONDITIONS) {
+                        throw new IllegalArgumentException("More than " + MAX_CONDITIONS + " distinct conditions");
+                    }
+                    conditionId = conditions.size();
+                    conditionIds.put(id, conditionId);
+                    conditions.add(new Condition(entry.getKey(), patterns));
+                }
+                ruleConditions[r] |= 1L << conditionId;
+            }
+        }
+
+        Builder builder = new Builder(conditions.toArray(new Condition[0]));
+        List<long[]> state = new ArrayList<>();
+        for (int r = 0; r < ruleConditions.length; r++) {
+            state.add(new long[]{ruleConditions[r], r});
+        }
+        Node root = builder.build(state);
+        return new ConditionTree(builder.conditions, List.copyOf(rules), root, builder.memo.size());
+    }
+
+    /** Returns the index of a rule that holds for the given attributes, or {@link AttributeRuleMatcher#NO_MATCH}. */
+    int firstMatch(Attributes attributes) {
+        Node node = root;
+        while (node.condition >= 0) {
+            node = conditions[node.condition].test(attributes) ? node.ifTrue : node.ifFalse;
+        }
+        return node.rule;
+    }
+
+    List<Map<AttributeKey<String>, Set<String>>> getRules() {
+        return rules;
+    }
+
+    int getConditionCount() {
+        return conditions.length;
+    }
+
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ConditionTree{rules=" + rules + '}';
+    }
+
+    private static final class Builder {
+        final Condition[] conditions;
+        // nodes by the rules still possible and their remaining conditions, so equal states share a node
+        final Map<List<Long>, Node> memo = new HashMap<>();
+
+        Builder(Condition[] conditions) {
+            this.conditions = conditions;
+        }
+
+        // state: {remaining conditions, rule index} of every rule that can still hold
+        Node build(List<long[]> state) {
+            List<long[]> rules = simplify(state);
+            if (rules.isEmpty()) {
+                return NO_RULE;
+            }
+            if (rules.get(0)[0] == 0) {
+                // nothing left to check for this rule, it holds
+                return new Node(-1, null, null, (int) rules.get(0)[1]);
+            }
+            List<Long> key = new ArrayList<>(rules.size() * 2);
+            for (long[] rule : rules) {
+                key.add(rule[0]);
+                key.add(rule[1]);
+            }
+            Node node = memo.get(key);
+            if (node != null) {
+                return node;
+            }
+            if (memo.size() == MAX_NODES) {
+                throw new IllegalArgumentException("Conditions need more than " + MAX_NODES + " decision nodes");
+            }
+
+            int condition = choose(rules);
+            long bit = 1L << condition;
+            List<long[]> ifTrue = new ArrayList<>(rules.size());
+            List<long[]> ifFalse = new ArrayList<>(rules.size());
+            for (long[] rule : rules) {
+                ifTrue.add(new long[]{rule[0] & ~bit, rule[1]});
+                if ((rule[0] & bit) == 0) {
+                    ifFalse.add(rule);
+                }
+            }
+            node = new Node(condition, build(ifTrue), build(ifFalse), AttributeRuleMatcher.NO_MATCH);
+            memo.put(key, node);
+            return node;
+        }
+
+        // drops rules needing a superset of the conditions of another one: they can only hold if it does
+        private static List<long[]> simplify(List<long[]> state) {
+            Map<Long, long[]> byConditions = new LinkedHashMap<>();
+            for (long[] rule : state) {
+                byConditions.merge(rule[0], rule, (a, b) -> a[1] <= b[1] ? a : b);
+            }
+            List<long[]> rules = new ArrayList<>();
+            for (long[] rule : byConditions.values()) {
+                boolean implied = false;
+                for (long[] other : byConditions.values()) {
+                    if (other != rule && (rule[0] & other[0]) == other[0]) {
+                        implied = true;
+                        break;
+                    }
+                }
+                if (!implied) {
+                    rules.add(rule);
+                }
+            }
+            // a rule with nothing left to check implies all others, so it is alone when present;
+            // sorted by rule index for a stable memo key
+            rules.sort((a, b) -> Long.compare(a[1], b[1]));
+            return rules;
+        }
+
+        // the cheapest condition, then the one most rules need, then the first compiled
+        private int choose(List<long[]> rules) {
+            long candidates = 0;
+            for (long[] rule : rules) {
+                candidates |= rule[0];
+            }
+            int best = -1;
+            int bestUses = 0;
+            for (long remaining = candidates; remaining != 0; remaining &= remaining - 1) {
+                int condition = Long.numberOfTrailingZeros(remaining);
+                int uses = 0;
+                for (long[] rule : rules) {
+                    if ((rule[0] & (1L << condition)) != 0) {
+                        uses++;
+                    }
+                }
+                if (best < 0
+                        || conditions[condition].cost < conditions[best].cost
+                        || conditions[condition].cost == conditions[best].cost && uses > bestUses) {
+                    best = condition;
+                    bestUses = uses;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Node {
+        // condition tested by this node, -1 for a leaf
+        final int condition;
+        final Node ifTrue;
+        final Node ifFalse;
+        // for a leaf, the rule that holds or NO_MATCH
+        final int rule;
+
+        Node(int condition, Node ifTrue, Node ifFalse, int rule) {
+            this.condition = condition;
+            this.ifTrue = ifTrue;
+            this.ifFalse = ifFalse;
+            this.rule = rule;
+        }
+    }
+
+    private static final class Condition {
+        final AttributeKey<String> attributeKey;
+        final int cost;
+        // null for a presence test
+        private final AttributeRuleMatcher matcher;
+        private final int patternCount;
+
+        Condition(AttributeKey<String> attributeKey, Set<String> patterns) {
+            this.attributeKey = attributeKey;
+            this.patternCount = patterns.size();
+            int cost = PRESENCE;
+            boolean matchesAnything = false;
+            List<SamplingRule> rules = new ArrayList<>();
+            for (String pattern : patterns) {
+                matchesAnything |= matchesAnything(pattern);
+                cost = Math.max(cost, cost(pattern));
+                rules.add(new SamplingRule(attributeKey, pattern, Sampler.alwaysOff()));
+            }
+            if (matchesAnything) {
+                this.cost = PRESENCE;
+                this.matcher = null;
+            } else {
+                this.cost = cost;
+                // same delegate for all, so the first match found is enough
+                this.matcher = AttributeRuleMatcher.compile(rules, new int[rules.size()])[0];
+            }
+        }
+
+        private static boolean matchesAnything(String pattern) {
+            return pattern.isEmpty() || pattern.equals(".*") || pattern.equals("^.*") || pattern.equals("^.*$") || pattern.equals(".*$");
+        }
+
+        private static int cost(String pattern) {
+            LiteralPattern literal = LiteralPattern.parse(pattern);
+            if (literal == null) {
+                return REGEX;
+            }
+            switch (literal.kind) {
+                case EXACT:
+                    return EXACT;
+                case PREFIX:
+                case SUFFIX:
+                    return AFFIX;
+                default:
+                    return CONTAINS;
+            }
+        }
+
+        boolean test(Attributes attributes) {
+            String value = attributeKey.getKey().equals(THREAD_NAME.getKey())
+                    ? Thread.currentThread().getName()
+                    : attributes.get(attributeKey);
+            if (value == null) {
+                return false;
+            }
+            return matcher == null || matcher.firstMatch(value, patternCount) != AttributeRuleMatcher.NO_MATCH;
+        }
+    }
+}
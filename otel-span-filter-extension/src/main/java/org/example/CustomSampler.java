@@ -16,27 +16,38 @@ import java.util.logging.Logger;
 public class CustomSampler implements Sampler {
     private static final String name = CustomSampler.class.getSimpleName();
     private static final Logger logger = java.util.logging.Logger.getLogger(CustomSampler.class.getName());
+    private static final SamplingResult DROP = SamplingResult.create(SamplingDecision.DROP);
     private final Sampler rootSampler;
+    private final DecisionAuditLog auditLog;
 
     public CustomSampler(Sampler rootSampler) {
+        this(rootSampler, DecisionAuditLog.disabled());
+    }
+
+    CustomSampler(Sampler rootSampler, DecisionAuditLog auditLog) {
         this.rootSampler = rootSampler;
+        this.auditLog = auditLog;
     }
     @Override
     public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind, Attributes attributes, List<LinkData> parentLinks) {
-        var map = attributes.asMap();
-        for(var entry : map.entrySet()) {
-            System.out.println("Entry: " + entry);
-            logger.info("Entry: " + entry);
-        }
         if (isRedisMaintaince(attributes)) {
-            return SamplingResult.create(SamplingDecision.DROP);
+            audit(traceId, name, SamplingDecision.DROP, "redis-maintenance");
+            return DROP;
         }
         if (isMetricEndpoint(name)) {
-            return SamplingResult.create(SamplingDecision.DROP);
+            audit(traceId, name, SamplingDecision.DROP, "metrics-endpoint");
+            return DROP;
         }
         // var urlPath = attributes.get(UrlAttributes.URL_PATH);
-        logger.info("Falling back to parent sampler.");
-        return rootSampler.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        SamplingResult result = rootSampler.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        audit(traceId, name, result.getDecision(), "fallback");
+        return result;
+    }
+
+    private void audit(String traceId, String name, SamplingDecision decision, String rule) {
+        if (auditLog.shouldRecord()) {
+            auditLog.record(traceId, name, decision.name(), rule);
+        }
     }
 
     @Override
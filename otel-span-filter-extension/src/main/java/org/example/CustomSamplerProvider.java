@@ -11,19 +11,27 @@ import java.util.logging.Logger;
 public class CustomSamplerProvider implements ConfigurableSamplerProvider {
     private static final String name = CustomSamplerProvider.class.getSimpleName();
     private static final Logger logger = java.util.logging.Logger.getLogger(CustomSamplerProvider.class.getName());
+    // otel.traces.sampler names this provider, so the sampler to delegate to is configured here
+    private static final String CONFIG_DELEGATE = "custom.sampler.delegate";
+    private static final String CONFIG_THROUGHPUT_WINDOW_SECONDS = "custom.sampler.throughput.window.seconds";
+    private static final double DEFAULT_RATIO = 0.05;
+    private static final double DEFAULT_SPANS_PER_SECOND = 100;
+    private static final int DEFAULT_THROUGHPUT_WINDOW_SECONDS = 10;
     @Override
     public Sampler createSampler(ConfigProperties config) {
         logger.finer("Creating Sampler for " + name);
         // Get the user-specified sampler name and argument
         // https://opentelemetry.io/docs/specs/otel/configuration/sdk-environment-variables/
-        String samplerName = config.getString("otel.traces.sampler", SamplerType.PARENT_BASED_ALWAYS_ON.name());
-        String samplerArg = config.getString("otel.traces.sampler.arg", "0.05");
+        String samplerName = config.getString("otel.traces.sampler", SamplerType.PARENT_BASED_ALWAYS_ON.getName());
+        if (!SamplerType.isKnown(samplerName)) {
+            samplerName = config.getString(CONFIG_DELEGATE, SamplerType.PARENT_BASED_ALWAYS_ON.getName());
+        }
+        String samplerArg = config.getString("otel.traces.sampler.arg");
         logger.info("Using " + samplerName + " with argument " + samplerArg);
-        System.out.println("Using " + samplerName + " with argument " + samplerArg);
 
-        // Example: Configure a default parent-based trace ID ratio sampler to delegate to
-        // which is the default
-        return new CustomSampler(Sampler.parentBased(Sampler.alwaysOn()));
+        Sampler delegate = buildSampler(SamplerType.fromString(samplerName), samplerArg,
+                config.getInt(CONFIG_THROUGHPUT_WINDOW_SECONDS, DEFAULT_THROUGHPUT_WINDOW_SECONDS));
+        return new CustomSampler(delegate, DecisionAuditLog.fromConfig(config));
     }
 
     @Override
@@ -31,7 +39,7 @@ public class CustomSamplerProvider implements ConfigurableSamplerProvider {
         return name;
     }
 
-    private Sampler buildSampler(final SamplerType samplerType, final String parseRatio) {
+    private Sampler buildSampler(final SamplerType samplerType, final String parseRatio, final int throughputWindowSeconds) {
         switch (samplerType) {
             case ALWAYS_ON:
                 return Sampler.alwaysOn();
@@ -45,6 +53,10 @@ public class CustomSamplerProvider implements ConfigurableSamplerProvider {
                 return Sampler.parentBased(Sampler.alwaysOff());
             case PARENT_BASED_TRACE_ID_RATIO:
                 return Sampler.parentBased(Sampler.traceIdRatioBased(parseRatio(parseRatio)));
+            case TARGET_THROUGHPUT:
+                return new TargetThroughputSampler(parseSpansPerSecond(parseRatio), throughputWindowSeconds);
+            case PARENT_BASED_TARGET_THROUGHPUT:
+                return Sampler.parentBased(new TargetThroughputSampler(parseSpansPerSecond(parseRatio), throughputWindowSeconds));
             default:
                 return Sampler.parentBased(Sampler.alwaysOn());
         }
@@ -53,8 +65,17 @@ public class CustomSamplerProvider implements ConfigurableSamplerProvider {
     private double parseRatio(String arg) {
         try {
             return Double.parseDouble(arg);
-        } catch (NumberFormatException e) {
-            return 0.05;
+        } catch (NullPointerException | NumberFormatException e) {
+            return DEFAULT_RATIO;
+        }
+    }
+
+    private double parseSpansPerSecond(String arg) {
+        try {
+            double spansPerSecond = Double.parseDouble(arg);
+            return spansPerSecond > 0 ? spansPerSecond : DEFAULT_SPANS_PER_SECOND;
+        } catch (NullPointerException | NumberFormatException e) {
+            return DEFAULT_SPANS_PER_SECOND;
         }
     }
 
@@ -66,7 +87,10 @@ public class CustomSamplerProvider implements ConfigurableSamplerProvider {
         TRACE_ID_RATIO("traceidratio"),
         PARENT_BASED_ALWAYS_ON("parentbased_always_on"),
         PARENT_BASED_ALWAYS_OFF("parentbased_always_off"),
-        PARENT_BASED_TRACE_ID_RATIO("parentbased_traceidratio");
+        PARENT_BASED_TRACE_ID_RATIO("parentbased_traceidratio"),
+        // otel.traces.sampler.arg is the number of spans per second to keep
+        TARGET_THROUGHPUT("target_throughput"),
+        PARENT_BASED_TARGET_THROUGHPUT("parentbased_target_throughput");
 
         private final String name;
 
@@ -78,6 +102,15 @@ public class CustomSamplerProvider implements ConfigurableSamplerProvider {
             return name;
         }
 
+        private static boolean isKnown(String name) {
+            for (SamplerType type : SamplerType.values()) {
+                if (type.getName().equalsIgnoreCase(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         private static SamplerType fromString(String name) {
             for (SamplerType type : SamplerType.values()) {
                 if (type.getName().equalsIgnoreCase(name)) {
@@ -0,0 +1,267 @@
+package org.example;
+
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records sampling and filtering decisions (trace id, span name, decision, matched rule) without
+ * logging on the request thread.
+ *
+ * <p>Records go into a fixed-size, lock-free ring buffer: producers claim a slot with a CAS on the
+ * head sequence, fill it and publish it with a volatile write; a single background thread drains
+ * published slots to the log, or to a file when {@code span.filter.audit.file} is set. When the
+ * drainer falls behind and the buffer is full, records are dropped and counted rather than
+ * blocking the producer.
+ *
+ * <p>With {@code span.filter.audit.sample.ratio=N}, only about one in N decisions is recorded, which
+ * keeps a debugging trail at a fraction of the cost.
+ *
+ * <p>The shared log is closed, draining what is left, when the {@link DroppingSpanProcessor} using
+ * it shuts down, or at JVM exit when only a sampler uses it, as samplers have no shutdown.
+ */
+final class DecisionAuditLog implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(DecisionAuditLog.class.getName());
+    private static final String CONFIG_ENABLED = "span.filter.audit.enabled";
+    private static final String CONFIG_BUFFER_SIZE = "span.filter.audit.buffer.size";
+    private static final String CONFIG_SAMPLE_RATIO = "span.filter.audit.sample.ratio";
+    private static final String CONFIG_FILE = "span.filter.audit.file";
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final long IDLE_PARK_NANOS = 100_000_000L;
+
+    private static final DecisionAuditLog DISABLED = new DecisionAuditLog();
+    private static DecisionAuditLog shared;
+
+    private final boolean enabled;
+    private final int sampleRatio;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    // only advanced by the drain thread
+    private volatile long tail;
+    private final LongAdder dropped = new LongAdder();
+    private final BufferedWriter writer;
+    private final Thread drainer;
+    private volatile boolean running;
+
+    private DecisionAuditLog() {
+        this.enabled = false;
+        this.sampleRatio = 1;
+        this.slots = new Slot[0];
+        this.mask = 0;
+        this.writer = null;
+        this.drainer = null;
+    }
+
+    DecisionAuditLog(int bufferSize, int sampleRatio, BufferedWriter writer) {
+        this(bufferSize, sampleRatio, writer, true);
+    }
+
+    /** With {@code background} false, nothing drains the buffer until {@link #drain()} is called. */
+    DecisionAuditLog(int bufferSize, int sampleRatio, BufferedWriter writer, boolean background) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.enabled = true;
+        this.sampleRatio = Math.max(1, sampleRatio);
+        // round up to a power of two so that the slot index is a mask
+        int capacity = Integer.highestOneBit(bufferSize - 1) << 1;
+        this.slots = new Slot[Math.max(capacity, 2)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = slots.length - 1;
+        this.writer = writer;
+        this.running = true;
+        if (background) {
+            this.drainer = new Thread(this::drainLoop, "span-filter-audit");
+            this.drainer.setDaemon(true);
+            this.drainer.start();
+        } else {
+            this.drainer = null;
+        }
+    }
+
+    /** Returns an audit log that records nothing. */
+    static DecisionAuditLog disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Returns the audit log shared by the samplers and processors of this extension, creating it
+     * from the given configuration on first use.
+     */
+    static synchronized DecisionAuditLog fromConfig(ConfigProperties config) {
+        if (shared != null) {
+            return shared;
+        }
+        if (!config.getBoolean(CONFIG_ENABLED, false)) {
+            shared = DISABLED;
+            return shared;
+        }
+        BufferedWriter writer = null;
+        String file = config.getString(CONFIG_FILE);
+        if (file != null && !file.trim().isEmpty()) {
+            try {
+                writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Cannot open audit file " + file + ", auditing to the log instead", e);
+            }
+        }
+        int sampleRatio = config.getInt(CONFIG_SAMPLE_RATIO, 1);
+        shared = new DecisionAuditLog(config.getInt(CONFIG_BUFFER_SIZE, DEFAULT_BUFFER_SIZE), sampleRatio, writer);
+        Runtime.getRuntime().addShutdownHook(new Thread(shared::close, "span-filter-audit-close"));
+        logger.info("Auditing one in " + sampleRatio + " span decisions to " + (writer != null ? file : "the log"));
+        return shared;
+    }
+
+    /**
+     * Tells whether the current decision should be recorded. Callers check this before building
+     * anything to record, so a disabled or sampled-out audit costs a branch.
+     */
+    boolean shouldRecord() {
+        return enabled && (sampleRatio == 1 || ThreadLocalRandom.current().nextInt(sampleRatio) == 0);
+    }
+
+    /** Queues a decision for the drain thread; never blocks. Does nothing once the log is closed. */
+    void record(String traceId, String spanName, String decision, String matchedRule) {
+        if (!running) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail >= slots.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.timestamp = System.currentTimeMillis();
+        slot.traceId = traceId;
+        slot.spanName = spanName;
+        slot.decision = decision;
+        slot.matchedRule = matchedRule;
+        slot.published = sequence;
+    }
+
+    /** Returns the number of records lost because the buffer was full. */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void drainLoop() {
+        while (running) {
+            if (drain() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        drain();
+        flushWriter();
+    }
+
+    /** Writes out all published records; returns how many there were. */
+    int drain() {
+        int drained = 0;
+        long next = tail;
+        Slot slot = slots[(int) (next & mask)];
+        while (slot.published == next) {
+            String line = format(slot);
+            slot.traceId = null;
+            slot.spanName = null;
+            slot.decision = null;
+            slot.matchedRule = null;
+            // hand the slot back to the producers
+            tail = ++next;
+            write(line);
+            drained++;
+            slot = slots[(int) (next & mask)];
+        }
+        if (drained > 0) {
+            flushWriter();
+        }
+        return drained;
+    }
+
+    private static String format(Slot slot) {
+        return Instant.ofEpochMilli(slot.timestamp)
+                + " traceId=" + slot.traceId
+                + " span=\"" + slot.spanName + '"'
+                + " decision=" + slot.decision
+                + " rule=" + slot.matchedRule;
+    }
+
+    private void write(String line) {
+        if (writer == null) {
+            logger.info(line);
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to write audit record", e);
+        }
+    }
+
+    private void flushWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to flush audit file", e);
+        }
+    }
+
+    /** Writes out the records still buffered and closes the file; later calls do nothing. */
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (drainer == null) {
+            drain();
+        } else {
+            LockSupport.unpark(drainer);
+            try {
+                drainer.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to close audit file", e);
+            }
+        }
+    }
+
+    private static final class Slot {
+        // sequence of the record held by this slot once it is completely written
+        volatile long published = -1;
+        long timestamp;
+        String traceId;
+        String spanName;
+        String decision;
+        String matchedRule;
+    }
+}
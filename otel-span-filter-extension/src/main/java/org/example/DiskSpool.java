@@ -0,0 +1,475 @@
+package org.example;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A first-in first-out queue of byte records kept in memory-mapped segment files, so that it
+ * survives a restart of the process.
+ *
+ * <p>Each segment is a file of {@code segmentBytes}, mapped once and filled with records of a
+ * length, a CRC32 and the payload. The length is written last, so a record cut short by a crash
+ * reads as the end of the segment. The first bytes of a segment hold how far it has been read,
+ * which lets a restarted process go on where it stopped rather than from the start. Segments are
+ * deleted once read; when the next segment would exceed {@code maxBytes}, the oldest is deleted
+ * unread.
+ *
+ * <p>Appending copies the record into the mapped segment; it never waits for the disk. With
+ * {@code preallocate}, the next segment is created and mapped ahead of time by a background
+ * thread, so that filling a segment only swaps in the spare; without it, or while the spool is at
+ * its quota, the segment is created by the appending thread. All methods are synchronized.
+ *
+ * <p>Segments are unmapped before their file is deleted. A deleted file that is still mapped keeps
+ * its disk space, and on some platforms its directory entry, until the buffer is garbage
+ * collected, which can be long after the spool let go of it. Unmapping relies on {@code
+ * sun.misc.Unsafe#invokeCleaner}; on a runtime without it, mappings are released by the garbage
+ * collector, and the disk used can exceed {@code maxBytes} until then.
+ */
+final class DiskSpool implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(DiskSpool.class.getName());
+    private static final String PREFIX = "spool-";
+    private static final String SUFFIX = ".seg";
+    // read offset and a magic number
+    static final int HEADER_BYTES = 16;
+    private static final long MAGIC = 0x4f544c5053504f4cL;
+    // length and CRC32
+    static final int RECORD_OVERHEAD = 8;
+    // Unsafe.invokeCleaner and its receiver, null where unavailable
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.FINE, "Cannot unmap spool segments, leaving it to the garbage collector", e);
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = invokeCleaner == null ? null : unsafe;
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long maxBytes;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    // null unless preallocating
+    private final ExecutorService preallocator;
+    // created ahead of time for the sequence after the last segment
+    private Segment spare;
+    private boolean preparing;
+    private boolean closed;
+    // the segment and size of the record returned by the last peek
+    private Segment peekedSegment;
+    private int peekedSize;
+
+    // unread records, written under the lock
+    private volatile long pending;
+    private long appended;
+    private long evictedSegments;
+    private long evictedRecords;
+    private long rejected;
+
+    DiskSpool(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        this(directory, segmentBytes, maxBytes, false);
+    }
+
+    DiskSpool(Path directory, int segmentBytes, long maxBytes, boolean preallocate) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory must not be null");
+        if (segmentBytes <= HEADER_BYTES + RECORD_OVERHEAD) {
+            throw new IllegalArgumentException("segmentBytes is too small");
+        }
+        if (maxBytes < segmentBytes) {
+            throw new IllegalArgumentException("maxBytes must hold at least one segment");
+        }
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        recover();
+        if (preallocate) {
+            this.preallocator = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "span-spool-preallocate");
+                thread.setDaemon(true);
+                return thread;
+            });
+            synchronized (this) {
+                prepareSpare();
+            }
+        } else {
+            this.preallocator = null;
+        }
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long sequence;
+                try {
+                    sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Segment segment = Segment.open(file, sequence, Files.size(file));
+                if (segment == null) {
+                    logger.warning("Ignoring spool segment that is not one: " + file);
+                    continue;
+                }
+                segments.put(sequence, segment);
+                pending += segment.countUnread();
+            }
+        }
+        // fully read segments, other than the one appended to, are leftovers of a crash
+        while (segments.size() > 1 && segments.firstEntry().getValue().isRead()) {
+            delete(segments.pollFirstEntry().getValue());
+        }
+        if (!segments.isEmpty()) {
+            logger.info("Recovered " + getPendingCount() + " spooled records from " + directory);
+        }
+    }
+
+    /**
+     * Appends a record; returns false if it cannot fit in a segment.
+     *
+     * @throws IOException if a new segment cannot be created, or the spool is closed
+     */
+    synchronized boolean append(byte[] record) throws IOException {
+        if (closed) {
+            throw new IOException("The spool is closed");
+        }
+        int size = RECORD_OVERHEAD + record.length;
+        if (size > segmentBytes - HEADER_BYTES) {
+            rejected++;
+            return false;
+        }
+        Segment segment = segments.isEmpty() ? null : segments.lastEntry().getValue();
+        if (segment == null || segment.writePosition + size > segment.buffer.capacity()) {
+            segment = newSegment(segment == null ? 0 : segment.sequence + 1);
+        }
+        segment.write(record);
+        appended++;
+        pending++;
+        return true;
+    }
+
+    private Segment newSegment(long sequence) throws IOException {
+        awaitSpare();
+        if (closed) {
+            throw new IOException("The spool is closed");
+        }
+        while (!segments.isEmpty() && (long) (segments.size() + 1) * segmentBytes > maxBytes) {
+            Segment oldest = segments.pollFirstEntry().getValue();
+            evictedSegments++;
+            long unread = oldest.countUnread();
+            evictedRecords += unread;
+            pending -= unread;
+            if (oldest == peekedSegment) {
+                peekedSegment = null;
+            }
+            delete(oldest);
+        }
+        Segment segment = spare;
+        spare = null;
+        if (segment == null || segment.sequence != sequence) {
+            if (segment != null) {
+                delete(segment);
+            }
+            segment = Segment.create(file(sequence), sequence, segmentBytes);
+        }
+        segments.put(sequence, segment);
+        prepareSpare();
+        return segment;
+    }
+
+    private Path file(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", PREFIX, sequence, SUFFIX));
+    }
+
+    // waits for a spare being created rather than racing it for the same file
+    private void awaitSpare() {
+        boolean interrupted = false;
+        while (preparing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // a spare is only created while it fits in the quota next to the existing segments
+    private void prepareSpare() {
+        if (preallocator == null || closed || spare != null || preparing
+                || (long) (segments.size() + 1) * segmentBytes > maxBytes) {
+            return;
+        }
+        long sequence = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        preparing = true;
+        preallocator.execute(() -> {
+            Segment segment = null;
+            try {
+                segment = Segment.create(file(sequence), sequence, segmentBytes);
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to preallocate spool segment " + file(sequence), e);
+            }
+            synchronized (this) {
+                preparing = false;
+                notifyAll();
+                if (segment == null) {
+                    return;
+                }
+                if (closed) {
+                    delete(segment);
+                } else {
+                    spare = segment;
+                }
+            }
+        });
+    }
+
+    /** Returns a copy of the oldest unread record, or {@code null} if there is none. */
+    synchronized byte[] peek() {
+        if (closed) {
+            return null;
+        }
+        while (!segments.isEmpty()) {
+            Segment segment = segments.firstEntry().getValue();
+            if (!segment.isRead()) {
+                byte[] record = segment.readNext();
+                peekedSegment = segment;
+                peekedSize = RECORD_OVERHEAD + record.length;
+                return record;
+            }
+            if (segment == segments.lastEntry().getValue()) {
+                break;
+            }
+            delete(segments.pollFirstEntry().getValue());
+        }
+        peekedSegment = null;
+        return null;
+    }
+
+    /** Marks the record returned by the last {@link #peek()} as read, unless it was evicted since. */
+    synchronized void commit() {
+        Segment segment = peekedSegment;
+        if (segment == null) {
+            return;
+        }
+        peekedSegment = null;
+        segment.advanceRead(peekedSize);
+        pending--;
+        if (segment.isRead() && segment != segments.lastEntry().getValue()) {
+            segments.remove(segment.sequence);
+            delete(segment);
+        }
+    }
+
+    /** Tells whether every record has been read, without taking the lock. */
+    boolean isEmpty() {
+        return pending == 0;
+    }
+
+    long getPendingCount() {
+        return pending;
+    }
+
+    /** Returns the size of the segment files, including the spare. */
+    synchronized long getDiskBytes() {
+        return (long) (segments.size() + (spare != null ? 1 : 0)) * segmentBytes;
+    }
+
+    synchronized long getAppendedCount() {
+        return appended;
+    }
+
+    synchronized long getEvictedSegmentCount() {
+        return evictedSegments;
+    }
+
+    synchronized long getEvictedRecordCount() {
+        return evictedRecords;
+    }
+
+    synchronized long getRejectedCount() {
+        return rejected;
+    }
+
+    private void delete(Segment segment) {
+        unmap(segment.buffer);
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to delete spool segment " + segment.file, e);
+        }
+    }
+
+    // the buffer must not be used afterwards, all uses are under the lock of the spool
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.log(Level.FINE, "Failed to unmap a spool segment", e);
+        }
+    }
+
+    /** Writes the mapped segments out to their files and unmaps them; the spool is unusable afterwards. */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (preallocator != null) {
+            preallocator.shutdown();
+        }
+        if (spare != null) {
+            delete(spare);
+            spare = null;
+        }
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+            unmap(segment.buffer);
+        }
+        peekedSegment = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DiskSpool{"
+                + "directory="
+                + directory
+                + ", segmentBytes="
+                + segmentBytes
+                + ", maxBytes="
+                + maxBytes
+                + '}';
+    }
+
+    private static final class Segment {
+        final Path file;
+        final long sequence;
+        final MappedByteBuffer buffer;
+        int readPosition;
+        int writePosition;
+
+        private Segment(Path file, long sequence, MappedByteBuffer buffer, int readPosition, int writePosition) {
+            this.file = file;
+            this.sequence = sequence;
+            this.buffer = buffer;
+            this.readPosition = readPosition;
+            this.writePosition = writePosition;
+        }
+
+        static Segment create(Path file, long sequence, int size) throws IOException {
+            MappedByteBuffer buffer = map(file, size);
+            buffer.putLong(0, HEADER_BYTES);
+            buffer.putLong(8, MAGIC);
+            return new Segment(file, sequence, buffer, HEADER_BYTES, HEADER_BYTES);
+        }
+
+        // null if the file is not a segment
+        static Segment open(Path file, long sequence, long size) throws IOException {
+            if (size <= HEADER_BYTES || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = map(file, (int) size);
+            if (buffer.getLong(8) != MAGIC) {
+                return null;
+            }
+            int writePosition = HEADER_BYTES;
+            while (writePosition + RECORD_OVERHEAD <= size) {
+                int length = buffer.getInt(writePosition);
+                if (length <= 0 || writePosition + RECORD_OVERHEAD + (long) length > size
+                        || crc(buffer, writePosition + RECORD_OVERHEAD, length) != buffer.getInt(writePosition + 4)) {
+                    break;
+                }
+                writePosition += RECORD_OVERHEAD + length;
+            }
+            long readPosition = buffer.getLong(0);
+            if (readPosition < HEADER_BYTES || readPosition > writePosition) {
+                readPosition = HEADER_BYTES;
+            }
+            return new Segment(file, sequence, buffer, (int) readPosition, writePosition);
+        }
+
+        private static MappedByteBuffer map(Path file, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // the mapping stays valid once the channel is closed
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        }
+
+        private static int crc(ByteBuffer buffer, int position, int length) {
+            ByteBuffer view = buffer.duplicate();
+            view.position(position).limit(position + length);
+            CRC32 crc = new CRC32();
+            crc.update(view);
+            return (int) crc.getValue();
+        }
+
+        void write(byte[] record) {
+            int position = writePosition;
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + RECORD_OVERHEAD);
+            view.put(record);
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            buffer.putInt(position + 4, (int) crc.getValue());
+            // the length last, so that a partly written record is not read
+            buffer.putInt(position, record.length);
+            writePosition = position + RECORD_OVERHEAD + record.length;
+        }
+
+        byte[] readNext() {
+            int length = buffer.getInt(readPosition);
+            byte[] record = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(readPosition + RECORD_OVERHEAD);
+            view.get(record);
+            return record;
+        }
+
+        void advanceRead(int size) {
+            readPosition += size;
+            buffer.putLong(0, readPosition);
+        }
+
+        boolean isRead() {
+            return readPosition >= writePosition;
+        }
+
+        long countUnread() {
+            long count = 0;
+            for (int position = readPosition; position < writePosition; position += RECORD_OVERHEAD + buffer.getInt(position)) {
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -5,12 +5,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import io.opentelemetry.api.trace.SpanKind;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.val;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -22,12 +25,17 @@ import java.util.logging.Logger;
 public class DropRuleConfig {
     private static final Logger logger = Logger.getLogger(DropRuleConfig.class.getName());
     private List<DropRule> drop;
+    private List<RateLimitRule> rateLimit;
+    private List<EndOfSpanRule> endOfSpan;
+    private AttributeLimitsConfig attributeLimits;
 
     @Data
     @JsonIgnoreProperties(ignoreUnknown = true)
     public static class DropRule {
         private SpanKind spanKind;
         private List<Map<String, Set<String>>> attributes;
+        // conditions that must all hold, instead of any of the attributes
+        private List<Map<String, Set<String>>> allOf;
 
         /**
          * Converts the list of attribute maps to a single map for easier processing.
@@ -46,15 +54,116 @@ public class DropRuleConfig {
 
             return result;
         }
+
+        /**
+         * Converts the list of {@code allOf} condition maps to a single map, merging the patterns
+         * of a key listed twice.
+         *
+         * @return A map containing every condition key and the patterns its value may match
+         */
+        public Map<String, Set<String>> getAllOfAsMap() {
+            val result = new LinkedHashMap<String, Set<String>>();
+            if (allOf == null) {
+                return result;
+            }
+
+            for (val conditionMap : allOf) {
+                conditionMap.forEach((key, patterns) -> result.computeIfAbsent(key, k -> new LinkedHashSet<>()).addAll(patterns));
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Keeps at most {@code tracesPerSecond} spans per second for each value of the listed
+     * attributes that matches one of their patterns, and drops the rest. Values beyond
+     * {@code maxBuckets} distinct ones share a single limit.
+     */
+    @Data
+    @EqualsAndHashCode(callSuper = true)
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class RateLimitRule extends DropRule {
+        private Double tracesPerSecond;
+        private Integer maxBuckets;
+    }
+
+    /**
+     * Drops ended spans, in {@link DroppingSpanProcessor}, whose duration is within the given
+     * bounds and whose typed attributes satisfy every condition. The span kind is optional, a rule
+     * without one applies to every kind.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class EndOfSpanRule {
+        private SpanKind spanKind;
+        // inclusive lower and exclusive upper bound of the span duration
+        private Double minDurationMs;
+        private Double maxDurationMs;
+        private List<TypedCondition> conditions;
+    }
+
+    /**
+     * A condition on an attribute of type {@code long}, {@code double}, {@code boolean} or {@code
+     * string}: equal to {@code value}, or for numbers within the inclusive {@code min} and {@code
+     * max} bounds.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class TypedCondition {
+        private String key;
+        private String type;
+        private String value;
+        private String min;
+        private String max;
+    }
+
+    /**
+     * Limits applied to the attributes of exported spans: a budget in bytes for each span, and
+     * per key rules.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class AttributeLimitsConfig {
+        private Integer maxSpanBytes;
+        private List<KeyLimit> keys;
+    }
+
+    /**
+     * What to do with the value of one attribute key: {@code truncate} it to {@code maxLength}
+     * characters, the default, replace it with a {@code hash}, or {@code redact} it.
+     */
+    @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class KeyLimit {
+        private String key;
+        private String action;
+        private Integer maxLength;
     }
 
     /**
      * Creates a DropRuleConfig from a YAML file.
      * 
      * @param yamlPath The path to the YAML file
-     * @return A new DropRuleConfig instance
+     * @return A new DropRuleConfig instance, empty if the file could not be parsed
      */
     public static DropRuleConfig fromYaml(Path yamlPath) {
+        try {
+            return parseYaml(yamlPath);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to parse YAML file: " + e.getMessage(), e);
+            return new DropRuleConfig();
+        }
+    }
+
+    /**
+     * Creates a DropRuleConfig from a YAML file, failing instead of falling back to an empty config.
+     *
+     * @param yamlPath The path to the YAML file
+     * @return A new DropRuleConfig instance
+     * @throws IOException if the file cannot be read or is not valid YAML
+     */
+    public static DropRuleConfig parseYaml(Path yamlPath) throws IOException {
         try (val inputStream = Files.newInputStream(yamlPath)) {
             val mapper = new ObjectMapper(new YAMLFactory());
 
@@ -67,9 +176,6 @@ public class DropRuleConfig {
             }
 
             return rulesWrapper.getRules();
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Failed to parse YAML file: " + e.getMessage(), e);
-            return new DropRuleConfig();
         }
     }
 
@@ -3,9 +3,12 @@ package org.example;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.trace.SpanKind;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,49 +35,273 @@ class DropRuleConfigReader {
      * @return Map<SpanKind, Map<AttributeKey<String>, Set<String>>> where the inner map contains attribute keys and sets of pattern values
      */
     Map<SpanKind, Map<AttributeKey<String>, Set<String>>> readDropRulesFromYaml(final Path yamlFile) {
-        Map<SpanKind, Map<AttributeKey<String>, Set<String>>> dropRulesBySpanKind = new HashMap<>();
         try {
-            // Use the DropRuleConfig.fromYaml method to create a DropRuleConfig instance
-            DropRuleConfig dropRuleConfig = DropRuleConfig.fromYaml(yamlFile);
-
-            // Convert the DropRuleConfig to the required format
-            for (DropRuleConfig.DropRule rule : dropRuleConfig.getDrop()) {
-                SpanKind spanKind = rule.getSpanKind();
-                if (spanKind == null) {
-                    logger.warning("Invalid rule: missing 'spanKind'");
-                    continue;
-                }
-
-                List<Map<String, Set<String>>> attributesList = rule.getAttributes();
-                if (attributesList == null || attributesList.isEmpty()) {
-                    logger.warning("Invalid rule: missing or empty 'attributes'");
-                    continue;
-                }
-
-                // Get or create the attribute map for this SpanKind
-                Map<AttributeKey<String>, Set<String>> spanKindAttributes = dropRulesBySpanKind.computeIfAbsent(spanKind, k -> new HashMap<>());
-
-                // Use the getAttributesAsMap method to get a flattened map of attributes
-                Map<String, Set<String>> attributes = rule.getAttributesAsMap();
-
-                // Convert String keys to AttributeKey<String> and merge the attribute patterns
-                for (Map.Entry<String, Set<String>> entry : attributes.entrySet()) {
-                    AttributeKey<String> attributeKey = AttributeKey.stringKey(entry.getKey());
-                    spanKindAttributes.computeIfAbsent(attributeKey, k -> new HashSet<>()).addAll(entry.getValue());
-                }
-            }
+            return readDropRules(yamlFile);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to load YAML config file: " + e.getMessage(), e);
+        }
+
+        return new HashMap<>();
+    }
+
+    /**
+     * Same as {@link #readDropRulesFromYaml(Path)}, but reports an unreadable or malformed file to
+     * the caller instead of returning an empty rule set, so that a reload can keep the rules it has.
+     *
+     * @throws IOException if the file cannot be read or parsed
+     */
+    Map<SpanKind, Map<AttributeKey<String>, Set<String>>> readDropRules(final Path yamlFile) throws IOException {
+        return readRules(yamlFile).getDropRules();
+    }
+
+    /**
+     * Reads the drop rules and the rate limits, returning no rules at all if the file cannot be read
+     * or parsed. A drop rule may list conditions that must all hold instead of attributes:
+     * rules:
+     *   drop:
+     *     - spanKind: CLIENT
+     *       allOf:
+     *         - db.system:
+     *             - ^redis$
+     *         - db.statement:
+     *             - ^PING
+     * Rate limits look like:
+     * rules:
+     *   rateLimit:
+     *     - spanKind: SERVER
+     *       tracesPerSecond: 5
+     *       maxBuckets: 1000
+     *       attributes:
+     *         - http.route:
+     *             - ^/hello$
+     */
+    SamplerRules readRulesFromYaml(final Path yamlFile) {
+        try {
+            return readRules(yamlFile);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to load YAML config file: " + e.getMessage(), e);
+        }
+
+        return SamplerRules.empty();
+    }
 
-            // Log the parsed rules
-            for (Map.Entry<SpanKind, Map<AttributeKey<String>, Set<String>>> entry : dropRulesBySpanKind.entrySet()) {
-                logger.info("Drop rules for SpanKind " + entry.getKey() + ":");
-                logger.info("  Attributes: " + entry.getValue());
+    /**
+     * Same as {@link #readRulesFromYaml(Path)}, but reports an unreadable or malformed file to the
+     * caller.
+     *
+     * @throws IOException if the file cannot be read or parsed
+     */
+    SamplerRules readRules(final Path yamlFile) throws IOException {
+        // Use the DropRuleConfig.parseYaml method to create a DropRuleConfig instance
+        DropRuleConfig dropRuleConfig = DropRuleConfig.parseYaml(yamlFile);
+        if (dropRuleConfig.getDrop() == null && dropRuleConfig.getRateLimit() == null) {
+            logger.warning("YAML file does not contain 'drop' or 'rateLimit' rules");
+        }
+        return new SamplerRules(toDropRules(dropRuleConfig), toAllOfDropRules(dropRuleConfig), toRateLimits(dropRuleConfig));
+    }
+
+    /**
+     * Reads the rules {@link DroppingSpanProcessor} evaluates when spans end, returning none if the
+     * file cannot be read or parsed. Conditions have a type, {@code long}, {@code double}, {@code
+     * boolean} or {@code string}, and either a {@code value} or {@code min} and {@code max} bounds;
+     * durations are in milliseconds, the maximum being exclusive:
+     * rules:
+     *   endOfSpan:
+     *     - spanKind: SERVER
+     *       maxDurationMs: 5
+     *       conditions:
+     *         - key: http.response.status_code
+     *           type: long
+     *           min: 200
+     *           max: 299
+     */
+    List<SpanEndRule> readEndOfSpanRulesFromYaml(final Path yamlFile) {
+        try {
+            return readEndOfSpanRules(yamlFile);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to load YAML config file: " + e.getMessage(), e);
+        }
+
+        return List.of();
+    }
+
+    /**
+     * Same as {@link #readEndOfSpanRulesFromYaml(Path)}, but reports an unreadable or malformed file
+     * to the caller. Invalid rules are skipped with a warning.
+     *
+     * @throws IOException if the file cannot be read or parsed
+     */
+    List<SpanEndRule> readEndOfSpanRules(final Path yamlFile) throws IOException {
+        DropRuleConfig dropRuleConfig = DropRuleConfig.parseYaml(yamlFile);
+        List<SpanEndRule> rules = new ArrayList<>();
+        if (dropRuleConfig.getEndOfSpan() == null) {
+            return rules;
+        }
+
+        for (DropRuleConfig.EndOfSpanRule rule : dropRuleConfig.getEndOfSpan()) {
+            try {
+                rules.add(SpanEndRule.compile(rule));
+            } catch (IllegalArgumentException e) {
+                logger.warning("Invalid end of span rule: " + e.getMessage());
             }
+        }
 
-            return dropRulesBySpanKind;
+        logger.info("End of span drop rules: " + rules);
+        return rules;
+    }
+
+    /**
+     * Reads the limits {@link AttributeBudgetSpanProcessor} applies to attributes, returning none if
+     * the file cannot be read or parsed, or the limits are invalid. The budget is in bytes for all
+     * the attributes of a span; a key is truncated to {@code maxLength} characters, hashed or
+     * redacted:
+     * rules:
+     *   attributeLimits:
+     *     maxSpanBytes: 4096
+     *     keys:
+     *       - key: db.statement
+     *         maxLength: 256
+     *       - key: enduser.id
+     *         action: hash
+     */
+    AttributeLimits readAttributeLimitsFromYaml(final Path yamlFile) {
+        try {
+            DropRuleConfig dropRuleConfig = DropRuleConfig.parseYaml(yamlFile);
+            if (dropRuleConfig.getAttributeLimits() == null) {
+                return AttributeLimits.none();
+            }
+            AttributeLimits limits = AttributeLimits.compile(dropRuleConfig.getAttributeLimits());
+            logger.info("Attribute limits: " + limits);
+            return limits;
+        } catch (IllegalArgumentException e) {
+            logger.warning("Invalid attribute limits: " + e.getMessage());
         } catch (Exception e) {
             logger.log(Level.WARNING, "Failed to load YAML config file: " + e.getMessage(), e);
         }
 
+        return AttributeLimits.none();
+    }
+
+    private static Map<SpanKind, Map<AttributeKey<String>, Set<String>>> toDropRules(DropRuleConfig dropRuleConfig) {
+        Map<SpanKind, Map<AttributeKey<String>, Set<String>>> dropRulesBySpanKind = new HashMap<>();
+        if (dropRuleConfig.getDrop() == null) {
+            return dropRulesBySpanKind;
+        }
+
+        // Convert the DropRuleConfig to the required format
+        for (DropRuleConfig.DropRule rule : dropRuleConfig.getDrop()) {
+            if (rule.getAllOf() != null || !isValid(rule)) {
+                continue;
+            }
+
+            // Get or create the attribute map for this SpanKind
+            Map<AttributeKey<String>, Set<String>> spanKindAttributes = dropRulesBySpanKind.computeIfAbsent(rule.getSpanKind(), k -> new HashMap<>());
+
+            // Use the getAttributesAsMap method to get a flattened map of attributes
+            Map<String, Set<String>> attributes = rule.getAttributesAsMap();
+
+            // Convert String keys to AttributeKey<String> and merge the attribute patterns
+            for (Map.Entry<String, Set<String>> entry : attributes.entrySet()) {
+                AttributeKey<String> attributeKey = AttributeKey.stringKey(entry.getKey());
+                spanKindAttributes.computeIfAbsent(attributeKey, k -> new HashSet<>()).addAll(entry.getValue());
+            }
+        }
+
+        // Log the parsed rules
+        for (Map.Entry<SpanKind, Map<AttributeKey<String>, Set<String>>> entry : dropRulesBySpanKind.entrySet()) {
+            logger.info("Drop rules for SpanKind " + entry.getKey() + ":");
+            logger.info("  Attributes: " + entry.getValue());
+        }
+
         return dropRulesBySpanKind;
     }
+
+    private static Map<SpanKind, List<Map<AttributeKey<String>, Set<String>>>> toAllOfDropRules(DropRuleConfig dropRuleConfig) {
+        Map<SpanKind, List<Map<AttributeKey<String>, Set<String>>>> allOfDropRulesBySpanKind = new HashMap<>();
+        if (dropRuleConfig.getDrop() == null) {
+            return allOfDropRulesBySpanKind;
+        }
+
+        for (DropRuleConfig.DropRule rule : dropRuleConfig.getDrop()) {
+            if (rule.getAllOf() == null) {
+                continue;
+            }
+            if (rule.getSpanKind() == null) {
+                logger.warning("Invalid rule: missing 'spanKind'");
+                continue;
+            }
+            if (rule.getAllOf().isEmpty()) {
+                logger.warning("Invalid rule: empty 'allOf'");
+                continue;
+            }
+            if (rule.getAttributes() != null) {
+                logger.warning("Invalid rule: 'attributes' and 'allOf' cannot be combined");
+                continue;
+            }
+
+            Map<AttributeKey<String>, Set<String>> conditions = new LinkedHashMap<>();
+            rule.getAllOfAsMap().forEach((key, patterns) -> conditions.put(AttributeKey.stringKey(key), patterns));
+            allOfDropRulesBySpanKind.computeIfAbsent(rule.getSpanKind(), k -> new ArrayList<>()).add(conditions);
+        }
+
+        for (Map.Entry<SpanKind, List<Map<AttributeKey<String>, Set<String>>>> entry : allOfDropRulesBySpanKind.entrySet()) {
+            logger.info("Drop rules with all conditions for SpanKind " + entry.getKey() + ": " + entry.getValue());
+        }
+
+        return allOfDropRulesBySpanKind;
+    }
+
+    private static Map<SpanKind, List<SamplerRules.RateLimit>> toRateLimits(DropRuleConfig dropRuleConfig) {
+        Map<SpanKind, List<SamplerRules.RateLimit>> rateLimitsBySpanKind = new HashMap<>();
+        if (dropRuleConfig.getRateLimit() == null) {
+            return rateLimitsBySpanKind;
+        }
+
+        for (DropRuleConfig.RateLimitRule rule : dropRuleConfig.getRateLimit()) {
+            if (rule.getAllOf() != null) {
+                logger.warning("Invalid rate limit: 'allOf' is only supported by drop rules");
+                continue;
+            }
+            if (!isValid(rule)) {
+                continue;
+            }
+            Double tracesPerSecond = rule.getTracesPerSecond();
+            if (tracesPerSecond == null || !(tracesPerSecond > 0)) {
+                logger.warning("Invalid rate limit: 'tracesPerSecond' must be positive");
+                continue;
+            }
+            int maxBuckets = rule.getMaxBuckets() != null ? rule.getMaxBuckets() : RateLimitingSampler.DEFAULT_MAX_BUCKETS;
+            if (maxBuckets <= 0) {
+                logger.warning("Invalid rate limit: 'maxBuckets' must be positive");
+                continue;
+            }
+
+            // one limit per attribute key, shared by all of its patterns
+            List<SamplerRules.RateLimit> spanKindRateLimits = rateLimitsBySpanKind.computeIfAbsent(rule.getSpanKind(), k -> new ArrayList<>());
+            for (Map.Entry<String, Set<String>> entry : rule.getAttributesAsMap().entrySet()) {
+                spanKindRateLimits.add(new SamplerRules.RateLimit(
+                        AttributeKey.stringKey(entry.getKey()), new HashSet<>(entry.getValue()), tracesPerSecond, maxBuckets));
+            }
+        }
+
+        for (Map.Entry<SpanKind, List<SamplerRules.RateLimit>> entry : rateLimitsBySpanKind.entrySet()) {
+            logger.info("Rate limits for SpanKind " + entry.getKey() + ": " + entry.getValue());
+        }
+
+        return rateLimitsBySpanKind;
+    }
+
+    private static boolean isValid(DropRuleConfig.DropRule rule) {
+        if (rule.getSpanKind() == null) {
+            logger.warning("Invalid rule: missing 'spanKind'");
+            return false;
+        }
+
+        List<Map<String, Set<String>>> attributesList = rule.getAttributes();
+        if (attributesList == null || attributesList.isEmpty()) {
+            logger.warning("Invalid rule: missing or empty 'attributes'");
+            return false;
+        }
+        return true;
+    }
 }
@@ -0,0 +1,166 @@
+package org.example;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the drop rule YAML file and hands a freshly parsed rule set to a listener whenever the
+ * file changes, on a daemon thread of its own.
+ *
+ * <p>Changes are picked up from {@link WatchService} events on the parent directory, which also
+ * covers editors that replace the file, and by comparing the file's size and modification time on
+ * every poll interval, which covers file systems without native notifications and symlink swaps
+ * such as mounted Kubernetes config maps.
+ *
+ * <p>If the file cannot be parsed, or the listener fails to compile the rules, the failure is
+ * logged and counted and the listener is not called again until the file changes, so the last good
+ * rule set stays active.
+ */
+final class DropRuleConfigWatcher implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(DropRuleConfigWatcher.class.getName());
+
+    private final Path file;
+    private final long pollIntervalMillis;
+    private final Consumer<SamplerRules> listener;
+    private final DropRuleConfigReader reader = new DropRuleConfigReader();
+    private final Thread thread;
+    private final AtomicLong reloadSuccessCount = new AtomicLong();
+    private final AtomicLong reloadFailureCount = new AtomicLong();
+    private volatile String lastReloadError;
+    private volatile boolean running = true;
+    private volatile WatchService watchService;
+
+    // size and modification time of the last file seen
+    private long lastSize = -1;
+    private long lastModified = -1;
+
+    DropRuleConfigWatcher(Path file, long pollIntervalMillis, Consumer<SamplerRules> listener) {
+        this.file = requireNonNull(file).toAbsolutePath();
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.listener = requireNonNull(listener);
+        this.thread = new Thread(this::run, "drop-rule-config-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /** Starts watching. The current content of the file is assumed to be loaded already. */
+    void start() {
+        fingerprintChanged();
+        thread.start();
+        logger.info("Watching " + file + " for drop rule changes");
+    }
+
+    private void run() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.log(Level.INFO, "File notifications unavailable for " + file + ", polling only", e);
+            watchService = null;
+        }
+
+        while (running) {
+            try {
+                awaitChange();
+                if (running && fingerprintChanged()) {
+                    reload();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                break;
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Unexpected error while watching " + file, e);
+            }
+        }
+    }
+
+    private void awaitChange() throws InterruptedException {
+        WatchService service = watchService;
+        if (service == null) {
+            TimeUnit.MILLISECONDS.sleep(pollIntervalMillis);
+            return;
+        }
+        WatchKey key = service.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+        if (key != null) {
+            // the fingerprint tells whether our file changed, the events themselves are not needed
+            key.pollEvents();
+            key.reset();
+            // let the writer finish before parsing
+            TimeUnit.MILLISECONDS.sleep(Math.min(100, pollIntervalMillis));
+        }
+    }
+
+    private boolean fingerprintChanged() {
+        long size;
+        long modified;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            size = attributes.size();
+            modified = attributes.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            // missing while being replaced; treat as unchanged and look again on the next poll
+            return false;
+        }
+        boolean changed = size != lastSize || modified != lastModified;
+        lastSize = size;
+        lastModified = modified;
+        return changed;
+    }
+
+    /** Parses the file and hands the rules to the listener, keeping the current ones on failure. */
+    void reload() {
+        try {
+            SamplerRules rules = reader.readRules(file);
+            listener.accept(rules);
+            reloadSuccessCount.incrementAndGet();
+            lastReloadError = null;
+            logger.info("Reloaded drop rules from " + file + " for span kinds " + rules.getDropRules().keySet()
+                    + ", rate limits for " + rules.getRateLimits().keySet());
+        } catch (IOException | RuntimeException e) {
+            reloadFailureCount.incrementAndGet();
+            lastReloadError = e.toString();
+            logger.log(Level.WARNING, "Failed to reload drop rules from " + file + ", keeping the previous rules", e);
+        }
+    }
+
+    long getReloadSuccessCount() {
+        return reloadSuccessCount.get();
+    }
+
+    long getReloadFailureCount() {
+        return reloadFailureCount.get();
+    }
+
+    /** Returns the error of the last reload, or {@code null} if it succeeded. */
+    String getLastReloadError() {
+        return lastReloadError;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                logger.log(Level.FINE, "Failed to close watch service", e);
+            }
+        }
+    }
+}
@@ -3,28 +3,31 @@ package org.example;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
 import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
 
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class DroppingSpanAutoConfigCustomizerProvider implements AutoConfigurationCustomizerProvider {
     private static final Logger logger = java.util.logging.Logger.getLogger(DroppingSpanAutoConfigCustomizerProvider.class.getName());
     private static final String CONFIG_DROP_ATTR_PREFIX = "my.otel.drop.attribute.prefix";
+    private static final List<String> DEFAULT_DROP_ATTR_PREFIXES = List.of("HiTest");
+    // the YAML file of the rule based sampler, whose endOfSpan rules apply here
+    private static final String CONFIG_DROP_RULES_FILE = "rule.sampler.drop.conf.file";
     @Override
     public void customize(AutoConfigurationCustomizer autoConfigurationCustomizer) {
         autoConfigurationCustomizer.addSpanProcessorCustomizer((spanProcessor, config) -> {
-            // Read the prefix configuration property
-            String attributeKeyPrefix = config.getString(CONFIG_DROP_ATTR_PREFIX);
-            return new DroppingSpanProcessor(spanProcessor, "HiTest");
-//            if (attributeKeyPrefix != null && !attributeKeyPrefix.isEmpty()) {
-//                logger.log(Level.INFO, "Adding ConditionalDroppingSpanProcessor (prefix mode) via extension.");
-//                // Wrap the original spanProcessor (likely BatchSpanProcessor)
-//                // with our custom one, passing the prefix.
-//                return new DroppingSpanProcessor(spanProcessor, attributeKeyPrefix);
-//            } else {
-//                logger.log(Level.WARNING, String.format("Configuration property '%s' not set or is empty. ConditionalDroppingSpanProcessor disabled.", CONFIG_DROP_ATTR_PREFIX));
-//                // Return the original processor if config is missing
-//                return spanProcessor;
-//            }
+            // Read the prefix configuration property, a comma separated list
+            List<String> attributeKeyPrefixes = config.getList(CONFIG_DROP_ATTR_PREFIX, DEFAULT_DROP_ATTR_PREFIXES);
+            // Wrap the original spanProcessor (likely BatchSpanProcessor) with our custom one
+            String dropRulesFile = config.getString(CONFIG_DROP_RULES_FILE);
+            List<SpanEndRule> spanEndRules = dropRulesFile == null || dropRulesFile.trim().isEmpty()
+                    ? List.of()
+                    : new DropRuleConfigReader().readEndOfSpanRulesFromYaml(Paths.get(dropRulesFile.trim()));
+            DroppingSpanProcessor droppingSpanProcessor = new DroppingSpanProcessor(
+                    spanProcessor, attributeKeyPrefixes, spanEndRules, DecisionAuditLog.fromConfig(config));
+            SpanFilterMetrics.fromConfig(config).register(droppingSpanProcessor);
+            return droppingSpanProcessor;
         });
         logger.log(Level.INFO, "Registered SpanProcessor customizer for ConditionalDroppingSpanProcessor (prefix mode).");
     }
@@ -1,28 +1,89 @@
 package org.example;
 
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.ReadWriteSpan;
 import io.opentelemetry.sdk.trace.ReadableSpan;
 import io.opentelemetry.sdk.trace.SpanProcessor;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Drops individual spans that carry an attribute whose key starts with one of the configured
+ * prefixes, and passes every other span on to the next processor.
+ *
+ * <p>The prefixes are kept in a {@link LiteralTrie}, so checking a key costs one walk over its
+ * characters whatever the number of prefixes. Attributes are visited once with a per-thread
+ * visitor, which allocates nothing and ignores the remaining attributes after the first hit. They
+ * are read through {@link ReadableSpan#toSpanData()}, as {@link AttributeBudgetSpanProcessor} does,
+ * because {@link ReadableSpan#getAttributes()} copies them.
+ *
+ * <p>It can also drop spans matching a {@link SpanEndRule}, on their duration and on typed
+ * attributes such as a numeric status code. These rules are checked first, as they read single
+ * attributes and need no scan.
+ */
 public class DroppingSpanProcessor implements SpanProcessor {
     private static final Logger logger = Logger.getLogger(DroppingSpanProcessor.class.getName());
     private final SpanProcessor nextProcessor;
-    private final String attributeKeyPrefixToMatch;
+    private final List<String> attributeKeyPrefixes;
+    private final LiteralTrie prefixTrie = new LiteralTrie(false);
+    // parallel to attributeKeyPrefixes
+    private final LongAdder[] dropCounts;
+    private final SpanEndRule[] spanEndRules;
+    // parallel to spanEndRules
+    private final LongAdder[] ruleDropCounts;
+    private final ThreadLocal<PrefixScan> scans = ThreadLocal.withInitial(PrefixScan::new);
+    private final DecisionAuditLog auditLog;
 
     public DroppingSpanProcessor(SpanProcessor nextProcessor, String attributeKeyPrefix) {
+        this(nextProcessor, List.of(Objects.requireNonNull(attributeKeyPrefix, "attributeKeyPrefix must not be null")));
+    }
+
+    public DroppingSpanProcessor(SpanProcessor nextProcessor, List<String> attributeKeyPrefixes) {
+        this(nextProcessor, attributeKeyPrefixes, DecisionAuditLog.disabled());
+    }
+
+    DroppingSpanProcessor(SpanProcessor nextProcessor, List<String> attributeKeyPrefixes, DecisionAuditLog auditLog) {
+        this(nextProcessor, attributeKeyPrefixes, List.of(), auditLog);
+    }
+
+    DroppingSpanProcessor(SpanProcessor nextProcessor, List<String> attributeKeyPrefixes, List<SpanEndRule> spanEndRules,
+                          DecisionAuditLog auditLog) {
+        this.auditLog = Objects.requireNonNull(auditLog, "auditLog must not be null");
         this.nextProcessor = Objects.requireNonNull(nextProcessor, "nextProcessor must not be null");
-        this.attributeKeyPrefixToMatch = Objects.requireNonNull(attributeKeyPrefix, "attributeKeyPrefix must not be null");
-        if (attributeKeyPrefix.isEmpty()) {
-            throw new IllegalArgumentException("attributeKeyPrefix must not be empty");
+        Objects.requireNonNull(attributeKeyPrefixes, "attributeKeyPrefixes must not be null");
+        Objects.requireNonNull(spanEndRules, "spanEndRules must not be null");
+        if (attributeKeyPrefixes.isEmpty() && spanEndRules.isEmpty()) {
+            throw new IllegalArgumentException("attributeKeyPrefixes must not be empty without end of span rules");
+        }
+        this.attributeKeyPrefixes = Collections.unmodifiableList(new ArrayList<>(new LinkedHashSet<>(attributeKeyPrefixes)));
+        this.dropCounts = new LongAdder[this.attributeKeyPrefixes.size()];
+        for (int i = 0; i < dropCounts.length; i++) {
+            String prefix = Objects.requireNonNull(this.attributeKeyPrefixes.get(i), "attributeKeyPrefix must not be null");
+            if (prefix.isEmpty()) {
+                throw new IllegalArgumentException("attributeKeyPrefix must not be empty");
+            }
+            prefixTrie.add(prefix, i);
+            dropCounts[i] = new LongAdder();
         }
-        // Updated log message slightly
-        logger.log(Level.INFO, "Initialized DroppingSpanProcessor to drop individual spans with attribute keys starting with: " + attributeKeyPrefix);
+        this.spanEndRules = spanEndRules.toArray(new SpanEndRule[0]);
+        this.ruleDropCounts = new LongAdder[this.spanEndRules.length];
+        for (int i = 0; i < ruleDropCounts.length; i++) {
+            ruleDropCounts[i] = new LongAdder();
+        }
+        logger.log(Level.INFO, "Initialized DroppingSpanProcessor to drop individual spans with attribute keys starting with: " + this.attributeKeyPrefixes
+                + (spanEndRules.isEmpty() ? "" : " or matching: " + spanEndRules));
     }
 
     @Override
@@ -37,49 +98,45 @@ public class DroppingSpanProcessor implements SpanProcessor {
 
     @Override
     public void onEnd(ReadableSpan span) {
-        // Flag to check if we found a matching attribute in *this* span
-        boolean keyPrefixMatchFound = false;
-        String matchingKey = null; // Store the key that caused the match for logging
-        var spanContext = span.getSpanContext();
-
-        // --- Check attributes of the current span for the prefix ---
-        var attributes = span.getAttributes().asMap();
-        for (var attr : attributes.entrySet()) {
-            logger.log(Level.INFO, String.format("Key: %s, Value: %s", attr.getKey(), attr.getValue()));
-            System.out.printf("\nKey: %s, Value: %s", attr.getKey(), attr.getValue());
-        }
-        if (attributes != null && !attributes.isEmpty()) {
-            // Use a temporary variable to store the matching key found within the lambda
-            final String[] foundKeyHolder = {null};
-            try {
-                attributes.forEach((key, value) -> {
-                    String keyString = key.getKey();
-                    if (keyString != null && keyString.startsWith(attributeKeyPrefixToMatch)) {
-                        foundKeyHolder[0] = keyString; // Store the key
-                        // Throwing an exception is a way to break out of forEach early
-                        throw new BreakIterationException();
-                    }
-                });
-            } catch (BreakIterationException e) {
-                // We found a match and broke out
-                keyPrefixMatchFound = true;
-                matchingKey = foundKeyHolder[0];
+        for (int i = 0; i < spanEndRules.length; i++) {
+            if (spanEndRules[i].test(span)) {
+                ruleDropCounts[i].increment();
+                if (auditLog.shouldRecord()) {
+                    auditLog.record(span.getSpanContext().getTraceId(), span.getName(), "DROP", spanEndRules[i].toString());
+                }
+                return;
             }
         }
-        // --- End attribute check ---
+        if (dropCounts.length == 0) {
+            export(span);
+            return;
+        }
 
+        PrefixScan scan = scans.get();
+        scan.reset();
+        // ended, so the span data holds the attributes without a copy
+        span.toSpanData().getAttributes().forEach(scan);
+        int match = scan.match;
+        String matchingKey = scan.matchingKey;
+        scan.reset();
 
         // If a match was found in *this* span, drop *this span only* by returning early.
-        if (keyPrefixMatchFound) {
-            ;
-            logger.log(Level.INFO, String.format("Dropping spanId %s from traceId: %s due to attribute key: %s starting with prefix: %s", spanContext.getSpanId(), spanContext.getTraceId(), matchingKey, attributeKeyPrefixToMatch));
+        if (match != AttributeRuleMatcher.NO_MATCH) {
+            dropCounts[match].increment();
+            if (auditLog.shouldRecord()) {
+                auditLog.record(span.getSpanContext().getTraceId(), span.getName(), "DROP", matchingKey);
+            }
             // Do not delegate this span to the next processor
             return;
         }
 
-        // If no match was found in this span's attributes, process it normally.
-        // Removed: Check for traceIdsToDrop as we no longer track trace state.
-        logger.log(Level.INFO, String.format("Processing span: %s from traceId: %s", spanContext.getSpanId(), spanContext.getTraceId()));
+        export(span);
+    }
+
+    private void export(ReadableSpan span) {
+        if (auditLog.shouldRecord()) {
+            auditLog.record(span.getSpanContext().getTraceId(), span.getName(), "EXPORT", null);
+        }
         nextProcessor.onEnd(span);
     }
 
@@ -91,6 +148,7 @@ public class DroppingSpanProcessor implements SpanProcessor {
     @Override
     public CompletableResultCode shutdown() {
         // No trace state to clear
+        auditLog.close();
         return nextProcessor.shutdown();
     }
 
@@ -99,9 +157,56 @@ public class DroppingSpanProcessor implements SpanProcessor {
         return nextProcessor.forceFlush();
     }
 
-    // Helper exception class to break out of forEach
-    private static class BreakIterationException extends RuntimeException {
-        private static final long serialVersionUID = 1L; // Optional
+    /** Returns the configured prefixes, without duplicates, in the order they were given. */
+    public List<String> getAttributeKeyPrefixes() {
+        return attributeKeyPrefixes;
+    }
+
+    /**
+     * Returns how many spans each prefix dropped. A key matching several prefixes is counted
+     * against the first one configured.
+     */
+    public Map<String, Long> getDropCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < dropCounts.length; i++) {
+            counts.put(attributeKeyPrefixes.get(i), dropCounts[i].sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Returns how many spans each end of span rule dropped, keyed by a description of the rule. A
+     * span matching several rules is counted against the first one configured.
+     */
+    public Map<String, Long> getRuleDropCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < ruleDropCounts.length; i++) {
+            counts.merge(spanEndRules[i].toString(), ruleDropCounts[i].sum(), Long::sum);
+        }
+        return counts;
     }
 
+    // reused for every span ended on a thread, so scanning allocates nothing
+    private final class PrefixScan implements BiConsumer<AttributeKey<?>, Object> {
+        int match;
+        String matchingKey;
+
+        void reset() {
+            match = AttributeRuleMatcher.NO_MATCH;
+            matchingKey = null;
+        }
+
+        @Override
+        public void accept(AttributeKey<?> key, Object value) {
+            if (match != AttributeRuleMatcher.NO_MATCH) {
+                return;
+            }
+            String name = key.getKey();
+            int prefix = prefixTrie.firstMatch(name, name.length(), Integer.MAX_VALUE);
+            if (prefix != AttributeRuleMatcher.NO_MATCH) {
+                match = prefix;
+                matchingKey = name;
+            }
+        }
+    }
 }
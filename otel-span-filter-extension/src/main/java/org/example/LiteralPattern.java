@@ -0,0 +1,117 @@
+package org.example;
+
+/**
+ * Recognizes regular expressions that are plain literals, optionally anchored with {@code ^} and/or
+ * {@code $}, so that they can be answered without running {@link java.util.regex.Pattern}.
+ *
+ * <ul>
+ *   <li>{@code ^/health$} is an {@link Kind#EXACT} literal
+ *   <li>{@code ^/actuator} is a {@link Kind#PREFIX} literal
+ *   <li>{@code \.js$} is a {@link Kind#SUFFIX} literal
+ *   <li>{@code /internal/} is a {@link Kind#CONTAINS} literal
+ * </ul>
+ *
+ * <p>Escaped punctuation such as {@code \.} or {@code \/} is accepted as the literal character;
+ * anything else with a special meaning makes the pattern non-literal.
+ */
+final class LiteralPattern {
+    enum Kind {
+        EXACT,
+        PREFIX,
+        SUFFIX,
+        CONTAINS
+    }
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    final Kind kind;
+    final String literal;
+
+    private LiteralPattern(Kind kind, String literal) {
+        this.kind = kind;
+        this.literal = literal;
+    }
+
+    /**
+     * Parses the given regular expression.
+     *
+     * @return the literal form of the pattern, or {@code null} if it needs the regex engine
+     */
+    static LiteralPattern parse(String regex) {
+        int start = 0;
+        int end = regex.length();
+        boolean anchoredStart = end > 0 && regex.charAt(0) == '^';
+        if (anchoredStart) {
+            start = 1;
+        }
+        boolean anchoredEnd = end > start && regex.charAt(end - 1) == '$' && !isEscaped(regex, end - 1);
+        if (anchoredEnd) {
+            end--;
+        }
+
+        StringBuilder literal = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= end) {
+                    return null;
+                }
+                char escaped = regex.charAt(++i);
+                if (Character.isLetterOrDigit(escaped) || escaped > 0x7f) {
+                    // character classes (\d), anchors (\b), quoting (\Q) and back references
+                    return null;
+                }
+                literal.append(escaped);
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+
+        Kind kind;
+        if (anchoredStart && anchoredEnd) {
+            kind = Kind.EXACT;
+        } else if (anchoredStart) {
+            kind = Kind.PREFIX;
+        } else if (anchoredEnd) {
+            kind = Kind.SUFFIX;
+        } else {
+            kind = Kind.CONTAINS;
+        }
+        return new LiteralPattern(kind, literal.toString());
+    }
+
+    /**
+     * Without {@code MULTILINE}, {@code $} also matches right before a line terminator that ends the
+     * input. Returns the index of that position, or -1 if the value does not end with a line
+     * terminator.
+     */
+    static int endBeforeLineTerminator(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return -1;
+        }
+        char last = value.charAt(length - 1);
+        if (last == '\n') {
+            return length >= 2 && value.charAt(length - 2) == '\r' ? length - 2 : length - 1;
+        }
+        if (last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+            return length - 1;
+        }
+        return -1;
+    }
+
+    private static boolean isEscaped(String regex, int index) {
+        int backslashes = 0;
+        for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+            backslashes++;
+        }
+        return backslashes % 2 == 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LiteralPattern{" + "kind=" + kind + ", literal=" + literal + '}';
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * A character trie over the literals of {@link LiteralPattern.Kind#PREFIX} (or, when built
+ * reversed, {@link LiteralPattern.Kind#SUFFIX}) rules, and over the attribute key prefixes of
+ * {@link DroppingSpanProcessor}. Walking a value through the trie finds every
+ * literal that is a prefix (suffix) of it in one pass and without allocating.
+ */
+final class LiteralTrie {
+    private final boolean reversed;
+    private final Node root = new Node();
+
+    LiteralTrie(boolean reversed) {
+        this.reversed = reversed;
+    }
+
+    void add(String literal, int ruleIndex) {
+        Node node = root;
+        int length = literal.length();
+        for (int i = 0; i < length; i++) {
+            node = node.childOrCreate(literal.charAt(reversed ? length - 1 - i : i));
+        }
+        if (node.rule == AttributeRuleMatcher.NO_MATCH || ruleIndex < node.rule) {
+            node.rule = ruleIndex;
+        }
+    }
+
+    /**
+     * Returns the lowest rule index below {@code limit} whose literal is a prefix of {@code
+     * value}, or for a reversed trie a suffix of {@code value.substring(0, end)}.
+     *
+     * @return the rule index, or {@link AttributeRuleMatcher#NO_MATCH}
+     */
+    int firstMatch(String value, int end, int limit) {
+        int match = AttributeRuleMatcher.NO_MATCH;
+        Node node = root;
+        for (int i = 0; ; i++) {
+            if (node.rule != AttributeRuleMatcher.NO_MATCH && node.rule < limit) {
+                match = node.rule;
+                limit = match;
+            }
+            if (i == end) {
+                return match;
+            }
+            node = node.child(value.charAt(reversed ? end - 1 - i : i));
+            if (node == null) {
+                return match;
+            }
+        }
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // sorted, parallel to children
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private int rule = AttributeRuleMatcher.NO_MATCH;
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int insertAt = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(children, 0, newChildren, 0, insertAt);
+            System.arraycopy(keys, insertAt, newKeys, insertAt + 1, keys.length - insertAt);
+            System.arraycopy(children, insertAt, newChildren, insertAt + 1, children.length - insertAt);
+            Node child = new Node();
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = child;
+            keys = newKeys;
+            children = newChildren;
+            return child;
+        }
+    }
+}
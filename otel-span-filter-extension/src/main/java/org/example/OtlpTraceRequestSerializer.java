@@ -0,0 +1,51 @@
+package org.example;
+
+import io.opentelemetry.exporter.internal.otlp.traces.TraceRequestMarshaler;
+import io.opentelemetry.sdk.trace.data.SpanData;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serializes spans into an OTLP {@code ExportTraceServiceRequest}, the body OTLP over HTTP posts.
+ *
+ * <p>No stable OpenTelemetry API does this, so it uses {@code TraceRequestMarshaler} from the
+ * internal package of {@code opentelemetry-exporter-otlp-common}, as bundled with the agent. That
+ * class can change or move in any release; this is the only class touching it. {@link
+ * #isAvailable()} serializes an empty batch once to check that the bundled version still links,
+ * and the spool is not installed when it does not.
+ */
+final class OtlpTraceRequestSerializer {
+    private static final Logger logger = Logger.getLogger(OtlpTraceRequestSerializer.class.getName());
+    private static volatile Boolean available;
+
+    private OtlpTraceRequestSerializer() {
+    }
+
+    /** Tells whether the marshaler of the OTLP exporter is present and works as expected. */
+    static boolean isAvailable() {
+        Boolean result = available;
+        if (result == null) {
+            try {
+                serialize(List.of());
+                result = true;
+            } catch (IOException | RuntimeException | LinkageError e) {
+                logger.log(Level.WARNING, "Cannot serialize OTLP trace requests with this version of the agent", e);
+                result = false;
+            }
+            available = result;
+        }
+        return result;
+    }
+
+    static byte[] serialize(Collection<SpanData> spans) throws IOException {
+        TraceRequestMarshaler marshaler = TraceRequestMarshaler.create(spans);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(marshaler.getBinarySerializedSize());
+        marshaler.writeBinaryTo(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,142 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps at most {@code tracesPerSecond} spans per second for each value of an attribute, with
+ * bursts of up to one second's worth, and drops the rest.
+ *
+ * <p>Every value gets a token bucket kept as a single theoretical arrival time (the generic cell
+ * rate algorithm): a span is admitted by moving that time one emission interval forward with a
+ * CAS. Threads only contend on the values they share, and once a bucket is empty rejecting a span
+ * is a plain volatile read, so a flood on one route costs no writes.
+ *
+ * <p>At most {@code maxBuckets} values get a bucket of their own, the others share an overflow
+ * bucket. Buckets that have refilled completely hold no state worth keeping, so they are purged,
+ * at most once per second, when the limit is reached.
+ */
+final class RateLimitingSampler implements Sampler {
+    static final int DEFAULT_MAX_BUCKETS = 1000;
+    private static final long PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final SamplingResult SAMPLE = SamplingResult.recordAndSample();
+    private static final SamplingResult DROP = SamplingResult.drop();
+
+    private final AttributeKey<String> attributeKey;
+    private final double tracesPerSecond;
+    private final int maxBuckets;
+    private final LongSupplier nanoTime;
+    private final long emissionIntervalNanos;
+    // how far ahead of now the theoretical arrival time may be, that is the burst size
+    private final long burstToleranceNanos;
+    private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final TokenBucket overflow;
+    private final AtomicLong lastPurge;
+
+    RateLimitingSampler(AttributeKey<String> attributeKey, double tracesPerSecond, int maxBuckets) {
+        this(attributeKey, tracesPerSecond, maxBuckets, System::nanoTime);
+    }
+
+    RateLimitingSampler(AttributeKey<String> attributeKey, double tracesPerSecond, int maxBuckets, LongSupplier nanoTime) {
+        if (!(tracesPerSecond > 0)) {
+            throw new IllegalArgumentException("tracesPerSecond must be positive");
+        }
+        if (maxBuckets <= 0) {
+            throw new IllegalArgumentException("maxBuckets must be positive");
+        }
+        this.attributeKey = attributeKey;
+        this.tracesPerSecond = tracesPerSecond;
+        this.maxBuckets = maxBuckets;
+        this.nanoTime = nanoTime;
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / tracesPerSecond));
+        long burst = Math.max(1, (long) Math.ceil(tracesPerSecond));
+        this.burstToleranceNanos = (burst - 1) * emissionIntervalNanos;
+        long now = nanoTime.getAsLong();
+        this.overflow = new TokenBucket(now);
+        this.lastPurge = new AtomicLong(now);
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind, Attributes attributes, List<LinkData> parentLinks) {
+        long now = nanoTime.getAsLong();
+        return bucketFor(attributes.get(attributeKey), now).tryAcquire(now) ? SAMPLE : DROP;
+    }
+
+    private TokenBucket bucketFor(String value, long now) {
+        if (value == null) {
+            return overflow;
+        }
+        TokenBucket bucket = buckets.get(value);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets && !purgeRefilled(now)) {
+            return overflow;
+        }
+        // a few concurrent misses may take the map slightly over maxBuckets, which is harmless
+        return buckets.computeIfAbsent(value, v -> new TokenBucket(now));
+    }
+
+    // removes full buckets, at most once per purge interval; returns whether there is room again
+    private boolean purgeRefilled(long now) {
+        long last = lastPurge.get();
+        if (now - last < PURGE_INTERVAL_NANOS || !lastPurge.compareAndSet(last, now)) {
+            return false;
+        }
+        buckets.values().removeIf(bucket -> bucket.isFull(now));
+        return buckets.size() < maxBuckets;
+    }
+
+    int getBucketCount() {
+        return buckets.size();
+    }
+
+    @Override
+    public String getDescription() {
+        return "RateLimitingSampler{attributeKey=" + attributeKey
+                + ", tracesPerSecond=" + tracesPerSecond
+                + ", maxBuckets=" + maxBuckets + '}';
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+
+    private final class TokenBucket {
+        private final AtomicLong theoreticalArrival;
+
+        TokenBucket(long now) {
+            // starts full
+            this.theoreticalArrival = new AtomicLong(now - emissionIntervalNanos);
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long arrival = theoreticalArrival.get();
+                long start = arrival - now > 0 ? arrival : now;
+                if (start - now > burstToleranceNanos) {
+                    return false;
+                }
+                if (theoreticalArrival.compareAndSet(arrival, start + emissionIntervalNanos)) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isFull(long now) {
+            return theoreticalArrival.get() - now <= 0;
+        }
+    }
+}
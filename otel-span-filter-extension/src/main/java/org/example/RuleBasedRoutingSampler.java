@@ -9,7 +9,11 @@ import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.trace.data.LinkData;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This sampler accepts a list of {@link SamplingRule}s and tries to match every proposed span
@@ -17,7 +21,10 @@ import java.util.List;
  * attribute's value, and a sampler that will make a decision about given span if match was
  * successful.
  *
- * <p>Matching is performed by {@link java.util.regex.Pattern}.
+ * <p>Matching is performed by {@link java.util.regex.Pattern}. Rules sharing an attribute key are
+ * merged by {@link RuleBasedRoutingSamplerBuilder#build()} into a single {@link
+ * AttributeRuleMatcher}, so each attribute value is scanned once; the first rule in declaration
+ * order that matches still decides.
  *
  * <p>Provided span kind is checked first and if differs from the one given to {@link
  * #builder(SpanKind, Sampler)}, the default fallback sampler will make a decision.
@@ -26,20 +33,111 @@ import java.util.List;
  * be taken into account, attributes set after the span has been started are not used
  *
  * <p>If none of the rules matched, the default fallback sampler will make a decision.
+ *
+ * <p>When enabled through {@link RuleBasedRoutingSamplerBuilder#cacheDecisions(int)}, the outcome
+ * of the rules for each attribute value is memoized in a bounded {@link RuleMatchCache}, which pays
+ * off for low-cardinality attributes such as {@code http.route}.
+ *
+ * <p>Consecutive rules with the same delegate form a segment: since any of them leads to the same
+ * decision, evaluation stops at the first match unless an earlier segment could still match. With
+ * {@link RuleBasedRoutingSamplerBuilder#adaptiveOrdering()} the attribute keys are additionally
+ * evaluated in order of observed hits, hottest first. The order is recomputed by {@link
+ * #reorderRules()} off the request path and published with a volatile write; decisions are the
+ * same as in declaration order.
+ *
+ * <p>Drop rules added with {@link RuleBasedRoutingSamplerBuilder#dropAll(Map)}, whose conditions
+ * on several attributes must all hold, are compiled into a {@link ConditionTree} and checked
+ * before the other rules.
+ *
+ * <p>With {@link RuleBasedRoutingSamplerBuilder#metrics(SpanFilterMetrics)} every decision made by
+ * a rule is counted against that rule in {@link SpanFilterMetrics}. The segment shortcut is then
+ * off, so that the first matching rule in declaration order is the one found and credited; with
+ * the decision cache it is found once per attribute value.
  */
 public final class RuleBasedRoutingSampler implements Sampler {
 
     // inlined incubating attribute to prevent direct dependency on incubating semconv
     private static final AttributeKey<String> THREAD_NAME = AttributeKey.stringKey("thread.name");
+    private static final SamplingResult DROP = SamplingResult.drop();
 
     private final List<SamplingRule> rules;
+    private final AttributeRuleMatcher[] matchers;
+    // parallel to matchers, null when caching is disabled
+    private final RuleMatchCache[] caches;
+    // for every rule, the index of the first rule of its segment
+    private final int[] segmentStart;
+    // indexes into matchers in evaluation order, replaced by reorderRules()
+    private volatile int[] evaluationOrder;
+    // parallel to matchers, null unless adaptive ordering is enabled
+    private final LongAdder[] matcherHits;
+    private final long[] matcherScores;
+    // drop rules whose conditions must all hold, null if there are none
+    private final ConditionTree allOfDrops;
+    // parallel to rules, null unless metrics are enabled
+    private final LongAdder[] ruleMatches;
+    // parallel to the rules of allOfDrops, null unless metrics are enabled
+    private final LongAdder[] allOfDropMatches;
     private final SpanKind kind;
     private final Sampler fallback;
 
     RuleBasedRoutingSampler(List<SamplingRule> rules, SpanKind kind, Sampler fallback) {
+        this(rules, kind, fallback, 0, false, null, SpanFilterMetrics.disabled());
+    }
+
+    RuleBasedRoutingSampler(List<SamplingRule> rules, SpanKind kind, Sampler fallback, int cacheSizePerKey, boolean adaptiveOrdering,
+                            ConditionTree allOfDrops, SpanFilterMetrics metrics) {
         this.kind = requireNonNull(kind);
         this.fallback = requireNonNull(fallback);
-        this.rules = requireNonNull(rules);
+        this.rules = List.copyOf(requireNonNull(rules));
+        this.segmentStart = new int[this.rules.size()];
+        for (int i = 0; i < segmentStart.length; i++) {
+            // with metrics, every rule is a segment of its own, so that the matchers return the
+            // first matching rule in declaration order and the right rule is credited
+            boolean sameDelegate = i > 0 && !metrics.isEnabled()
+                    && this.rules.get(i).delegate.equals(this.rules.get(i - 1).delegate);
+            segmentStart[i] = sameDelegate ? segmentStart[i - 1] : i;
+        }
+        this.matchers = AttributeRuleMatcher.compile(this.rules, segmentStart);
+        this.evaluationOrder = new int[matchers.length];
+        for (int i = 0; i < matchers.length; i++) {
+            evaluationOrder[i] = i;
+        }
+        if (adaptiveOrdering) {
+            this.matcherHits = new LongAdder[matchers.length];
+            for (int i = 0; i < matchers.length; i++) {
+                matcherHits[i] = new LongAdder();
+            }
+            this.matcherScores = new long[matchers.length];
+        } else {
+            this.matcherHits = null;
+            this.matcherScores = null;
+        }
+        if (cacheSizePerKey > 0) {
+            this.caches = new RuleMatchCache[matchers.length];
+            for (int i = 0; i < caches.length; i++) {
+                caches[i] = new RuleMatchCache(cacheSizePerKey);
+            }
+        } else {
+            this.caches = null;
+        }
+        this.allOfDrops = allOfDrops;
+        if (metrics.isEnabled()) {
+            this.ruleMatches = new LongAdder[this.rules.size()];
+            for (int i = 0; i < ruleMatches.length; i++) {
+                ruleMatches[i] = metrics.ruleCounter(kind, this.rules.get(i));
+            }
+        } else {
+            this.ruleMatches = null;
+        }
+        if (metrics.isEnabled() && allOfDrops != null) {
+            List<Map<AttributeKey<String>, Set<String>>> allOfRules = allOfDrops.getRules();
+            this.allOfDropMatches = new LongAdder[allOfRules.size()];
+            for (int i = 0; i < allOfDropMatches.length; i++) {
+                allOfDropMatches[i] = metrics.allOfRuleCounter(kind, allOfRules.get(i));
+            }
+        } else {
+            this.allOfDropMatches = null;
+        }
     }
 
     public static RuleBasedRoutingSamplerBuilder builder(SpanKind kind, Sampler fallback) {
@@ -59,29 +157,143 @@ public final class RuleBasedRoutingSampler implements Sampler {
         if (kind != spanKind) {
             return fallback.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
         }
-        for (SamplingRule samplingRule : rules) {
-            String attributeValue;
-            if (samplingRule.attributeKey.getKey().equals(THREAD_NAME.getKey())) {
-                attributeValue = Thread.currentThread().getName();
-            } else {
-                attributeValue = attributes.get(samplingRule.attributeKey);
+        if (allOfDrops != null) {
+            int allOfMatch = allOfDrops.firstMatch(attributes);
+            if (allOfMatch != AttributeRuleMatcher.NO_MATCH) {
+                if (allOfDropMatches != null) {
+                    allOfDropMatches[allOfMatch].increment();
+                }
+                return DROP;
+            }
+        }
+        int matched = AttributeRuleMatcher.NO_MATCH;
+        int matchedBy = -1;
+        // a match only changes the outcome if it comes from an earlier segment
+        int limit = rules.size();
+        int[] order = evaluationOrder;
+        for (int j = 0; j < order.length && limit > 0; j++) {
+            int i = order[j];
+            AttributeRuleMatcher matcher = matchers[i];
+            if (matcher.firstRuleIndex >= limit) {
+                continue;
             }
+            String attributeValue = attributeValue(matcher.attributeKey, attributes);
             if (attributeValue == null) {
                 continue;
             }
-            if (samplingRule.pattern.matcher(attributeValue).find()) {
-                return samplingRule.delegate.shouldSample(
-                        parentContext, traceId, name, spanKind, attributes, parentLinks);
+            int index = caches == null ? matcher.firstMatch(attributeValue, limit) : cachedFirstMatch(i, attributeValue);
+            if (index != AttributeRuleMatcher.NO_MATCH && index < limit) {
+                matched = index;
+                matchedBy = i;
+                limit = segmentStart[index];
             }
         }
+        if (matched != AttributeRuleMatcher.NO_MATCH) {
+            if (matcherHits != null) {
+                matcherHits[matchedBy].increment();
+            }
+            if (ruleMatches != null) {
+                ruleMatches[matched].increment();
+            }
+            return rules.get(matched).delegate.shouldSample(
+                    parentContext, traceId, name, spanKind, attributes, parentLinks);
+        }
         return fallback.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
     }
 
+    private static String attributeValue(AttributeKey<String> key, Attributes attributes) {
+        if (key.getKey().equals(THREAD_NAME.getKey())) {
+            return Thread.currentThread().getName();
+        }
+        return attributes.get(key);
+    }
+
+    /**
+     * Recomputes the order in which attribute keys are evaluated from the hits counted since the
+     * last call, with older hits decaying by half each time. Does nothing unless adaptive ordering
+     * is enabled. Meant to be called periodically from a background thread.
+     */
+    synchronized void reorderRules() {
+        if (matcherHits == null) {
+            return;
+        }
+        Integer[] order = new Integer[matchers.length];
+        for (int i = 0; i < matchers.length; i++) {
+            matcherScores[i] = matcherScores[i] / 2 + matcherHits[i].sumThenReset();
+            order[i] = i;
+        }
+        // hottest first, declaration order among equally hot keys
+        Arrays.sort(order, (a, b) -> matcherScores[a] != matcherScores[b]
+                ? Long.compare(matcherScores[b], matcherScores[a])
+                : Integer.compare(matchers[a].firstRuleIndex, matchers[b].firstRuleIndex));
+        int[] newOrder = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            newOrder[i] = order[i];
+        }
+        evaluationOrder = newOrder;
+    }
+
+    private int cachedFirstMatch(int matcherIndex, String attributeValue) {
+        RuleMatchCache cache = caches[matcherIndex];
+        int index = cache.get(attributeValue);
+        if (index == RuleMatchCache.MISS) {
+            // cache the unbounded result so that it is valid whatever the other keys matched
+            index = matchers[matcherIndex].firstMatch(attributeValue, rules.size());
+            cache.put(attributeValue, index);
+        }
+        return index;
+    }
+
+    /** Returns the number of rule evaluations answered by the decision cache. */
+    public long getCacheHitCount() {
+        long hits = 0;
+        if (caches != null) {
+            for (RuleMatchCache cache : caches) {
+                hits += cache.hitCount();
+            }
+        }
+        return hits;
+    }
+
+    /** Returns the number of rule evaluations that missed the decision cache. */
+    public long getCacheMissCount() {
+        long misses = 0;
+        if (caches != null) {
+            for (RuleMatchCache cache : caches) {
+                misses += cache.missCount();
+            }
+        }
+        return misses;
+    }
+
+    /** Returns the number of entries evicted from the decision cache. */
+    public long getCacheEvictionCount() {
+        long evictions = 0;
+        if (caches != null) {
+            for (RuleMatchCache cache : caches) {
+                evictions += cache.evictionCount();
+            }
+        }
+        return evictions;
+    }
+
+    /** Returns the number of attribute values currently held by the decision cache. */
+    public long getCacheSize() {
+        long size = 0;
+        if (caches != null) {
+            for (RuleMatchCache cache : caches) {
+                size += cache.size();
+            }
+        }
+        return size;
+    }
+
     @Override
     public String getDescription() {
         return "RuleBasedRoutingSampler{"
                 + "rules="
                 + rules
+                + (allOfDrops != null ? ", allOfDropRules=" + allOfDrops.getRules() : "")
                 + ", kind="
                 + kind
                 + ", fallback="
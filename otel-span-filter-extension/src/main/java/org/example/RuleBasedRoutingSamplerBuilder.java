@@ -12,12 +12,19 @@ import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public final class RuleBasedRoutingSamplerBuilder {
     private final List<SamplingRule> rules = new ArrayList<>();
+    private final List<Map<AttributeKey<String>, Set<String>>> allOfDropRules = new ArrayList<>();
     private final SpanKind kind;
     private final Sampler defaultDelegate;
+    private int cacheSizePerKey;
+    private boolean adaptiveOrdering;
+    private SpanFilterMetrics metrics = SpanFilterMetrics.disabled();
 
     RuleBasedRoutingSamplerBuilder(SpanKind kind, Sampler defaultDelegate) {
         this.kind = kind;
@@ -32,6 +39,23 @@ public final class RuleBasedRoutingSamplerBuilder {
         return customize(attributeKey, pattern, Sampler.alwaysOff());
     }
 
+    /**
+     * Drop all spans for which every provided {@link AttributeKey} has a value matching one of its
+     * patterns. These rules are checked before the others.
+     */
+    public RuleBasedRoutingSamplerBuilder dropAll(Map<AttributeKey<String>, Set<String>> patternsByAttributeKey) {
+        requireNonNull(patternsByAttributeKey, "patternsByAttributeKey must not be null");
+        if (patternsByAttributeKey.isEmpty()) {
+            throw new IllegalArgumentException("patternsByAttributeKey must not be empty");
+        }
+        Map<AttributeKey<String>, Set<String>> conditions = new LinkedHashMap<>();
+        patternsByAttributeKey.forEach((attributeKey, patterns) -> conditions.put(
+                requireNonNull(attributeKey, "attributeKey must not be null"),
+                Set.copyOf(requireNonNull(patterns, "patterns must not be null"))));
+        allOfDropRules.add(conditions);
+        return this;
+    }
+
     /**
      * Use the provided sampler when the value of the provided {@link AttributeKey} matches the
      * provided pattern.
@@ -55,8 +79,40 @@ public final class RuleBasedRoutingSamplerBuilder {
         return customize(attributeKey, pattern, Sampler.alwaysOn());
     }
 
-    /** Build the sampler based on the rules provided. */
+    /**
+     * Memoize which rule matched each attribute value, keeping at most {@code maxEntriesPerKey}
+     * values per attribute key. Only worth enabling for low-cardinality attributes.
+     */
+    public RuleBasedRoutingSamplerBuilder cacheDecisions(int maxEntriesPerKey) {
+        if (maxEntriesPerKey <= 0) {
+            throw new IllegalArgumentException("maxEntriesPerKey must be positive");
+        }
+        this.cacheSizePerKey = maxEntriesPerKey;
+        return this;
+    }
+
+    /**
+     * Count which attribute keys decide spans so that {@link RuleBasedRoutingSampler#reorderRules()}
+     * can evaluate the hottest ones first. Decisions stay the same as in declaration order.
+     */
+    public RuleBasedRoutingSamplerBuilder adaptiveOrdering() {
+        this.adaptiveOrdering = true;
+        return this;
+    }
+
+    /** Count the spans decided by each rule in the given metrics. */
+    RuleBasedRoutingSamplerBuilder metrics(SpanFilterMetrics metrics) {
+        this.metrics = requireNonNull(metrics, "metrics must not be null");
+        return this;
+    }
+
+    /**
+     * Build the sampler based on the rules provided. Rules on the same attribute key are compiled
+     * into one combined matcher, rules added with {@link #dropAll(Map)} into a {@link
+     * ConditionTree}.
+     */
     public RuleBasedRoutingSampler build() {
-        return new RuleBasedRoutingSampler(rules, kind, defaultDelegate);
+        ConditionTree allOfDrops = allOfDropRules.isEmpty() ? null : ConditionTree.compile(allOfDropRules);
+        return new RuleBasedRoutingSampler(rules, kind, defaultDelegate, cacheSizePerKey, adaptiveOrdering, allOfDrops, metrics);
     }
 }
@@ -1,52 +1,77 @@
 package org.example;
 
 import io.opentelemetry.api.common.AttributeKey;
-import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.SpanKind;
-import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import io.opentelemetry.sdk.autoconfigure.spi.traces.ConfigurableSamplerProvider;
-import io.opentelemetry.sdk.trace.data.LinkData;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
-import io.opentelemetry.sdk.trace.samplers.SamplingResult;
 import lombok.val;
 
 import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class RuleBasedSamplerProvider implements ConfigurableSamplerProvider {
     private static final String ENV_RULE_SAMPLER_DROP_YAML_FILE = "rule.sampler.drop.conf.file";
+    private static final String CONFIG_CACHE_ENABLED = "rule.sampler.cache.enabled";
+    private static final String CONFIG_CACHE_MAX_SIZE = "rule.sampler.cache.max.size";
+    private static final String CONFIG_RELOAD_ENABLED = "rule.sampler.reload.enabled";
+    private static final String CONFIG_RELOAD_INTERVAL_MS = "rule.sampler.reload.interval.ms";
+    private static final String CONFIG_ADAPTIVE_ENABLED = "rule.sampler.adaptive.enabled";
+    private static final String CONFIG_ADAPTIVE_INTERVAL_MS = "rule.sampler.adaptive.interval.ms";
+    private static final int DEFAULT_CACHE_MAX_SIZE = 1024;
+    private static final long DEFAULT_RELOAD_INTERVAL_MS = 5000;
+    private static final long DEFAULT_ADAPTIVE_INTERVAL_MS = 10000;
     private static final Logger logger = Logger.getLogger(RuleBasedSamplerProvider.class.getName());
     private static final String name = "RuleBasedSamplerProvider";
     @Override
     public Sampler createSampler(ConfigProperties configProperties) {
         logger.info("Creating Sampler for " + name);
         val defaultSampler = Sampler.parentBased(Sampler.alwaysOn());
-        val dropRules = readDropRulesFromYaml();
-        val samplersBySpanKind = new HashMap<SpanKind, Sampler>();
+        val cacheEnabled = configProperties.getBoolean(CONFIG_CACHE_ENABLED, false);
+        val cacheMaxSize = cacheEnabled ? configProperties.getInt(CONFIG_CACHE_MAX_SIZE, DEFAULT_CACHE_MAX_SIZE) : 0;
+        if (cacheEnabled) {
+            logger.info("Caching rule decisions, at most " + cacheMaxSize + " values per attribute key");
+        }
 
-        dropRules.forEach((spanKind, attributes) -> {
-            val builder = RuleBasedRoutingSampler.builder(spanKind, defaultSampler);
-            attributes.forEach((attributeKey, patterns) -> patterns.forEach(pattern -> builder.drop(attributeKey, pattern)));
-            samplersBySpanKind.put(spanKind, builder.build());
-        });
+        val adaptive = configProperties.getBoolean(CONFIG_ADAPTIVE_ENABLED, false);
+        val metrics = SpanFilterMetrics.fromConfig(configProperties);
 
-        return new Sampler() {
-            @Override
-            public SamplingResult shouldSample(Context context, String s, String s1, SpanKind spanKind, Attributes attributes, List<LinkData> list) {
-                Sampler sampler = samplersBySpanKind.getOrDefault(spanKind, defaultSampler);
-                return sampler.shouldSample(context, s, s1, spanKind, attributes, list);
-            }
+        val sampler = new SpanKindRoutingSampler(
+                buildSamplers(readRulesFromYaml(), defaultSampler, cacheMaxSize, adaptive, metrics), defaultSampler, metrics);
 
-            @Override
-            public String getDescription() {
-                return "CustomCompositeSampler";
-            }
-        };
+        if (adaptive) {
+            val interval = configProperties.getLong(CONFIG_ADAPTIVE_INTERVAL_MS, DEFAULT_ADAPTIVE_INTERVAL_MS);
+            logger.info("Reordering rules by hit frequency every " + interval + " ms");
+            val scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                val thread = new Thread(runnable, "rule-sampler-reorder");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // always reorders the samplers currently installed, including reloaded ones
+            scheduler.scheduleWithFixedDelay(() -> sampler.getSamplersBySpanKind().values().forEach(kindSampler -> {
+                if (kindSampler instanceof RuleBasedRoutingSampler) {
+                    ((RuleBasedRoutingSampler) kindSampler).reorderRules();
+                }
+            }), interval, interval, TimeUnit.MILLISECONDS);
+        }
+
+        val yamlFile = dropRulesYamlFile();
+        if (yamlFile != null && configProperties.getBoolean(CONFIG_RELOAD_ENABLED, false)) {
+            // compiled on the watcher thread, the request threads only see the swapped map
+            val watcher = new DropRuleConfigWatcher(
+                    Paths.get(yamlFile),
+                    configProperties.getLong(CONFIG_RELOAD_INTERVAL_MS, DEFAULT_RELOAD_INTERVAL_MS),
+                    rules -> sampler.update(buildSamplers(rules, defaultSampler, cacheMaxSize, adaptive, metrics)));
+            watcher.start();
+        }
+        return sampler;
     }
 
     @Override
@@ -54,8 +79,52 @@ public class RuleBasedSamplerProvider implements ConfigurableSamplerProvider {
         return name;
     }
 
+    private static Map<SpanKind, Sampler> buildSamplers(
+            SamplerRules rules, Sampler defaultSampler, int cacheMaxSize, boolean adaptive, SpanFilterMetrics metrics) {
+        val spanKinds = new HashSet<SpanKind>(rules.getDropRules().keySet());
+        spanKinds.addAll(rules.getAllOfDropRules().keySet());
+        spanKinds.addAll(rules.getRateLimits().keySet());
+        val samplersBySpanKind = new HashMap<SpanKind, Sampler>();
+        spanKinds.forEach(spanKind -> {
+            val builder = RuleBasedRoutingSampler.builder(spanKind, defaultSampler).metrics(metrics);
+            rules.getDropRules().getOrDefault(spanKind, Map.of())
+                    .forEach((attributeKey, patterns) -> patterns.forEach(pattern -> builder.drop(attributeKey, pattern)));
+            rules.getAllOfDropRules().getOrDefault(spanKind, List.of()).forEach(builder::dropAll);
+            // after the drop rules, so a dropped span never takes a token
+            rules.getRateLimits().getOrDefault(spanKind, List.of()).forEach(rateLimit -> {
+                val rateLimiter = new RateLimitingSampler(rateLimit.attributeKey, rateLimit.tracesPerSecond, rateLimit.maxBuckets);
+                rateLimit.patterns.forEach(pattern -> builder.customize(rateLimit.attributeKey, pattern, rateLimiter));
+            });
+            if (cacheMaxSize > 0) {
+                builder.cacheDecisions(cacheMaxSize);
+            }
+            if (adaptive) {
+                builder.adaptiveOrdering();
+            }
+            samplersBySpanKind.put(spanKind, builder.build());
+        });
+        return samplersBySpanKind;
+    }
 
     public Map<SpanKind, Map<AttributeKey<String>, Set<String>>> readDropRulesFromYaml() {
+        val yamlFile = dropRulesYamlFile();
+        if (yamlFile == null) {
+            logger.warning("Neither system property nor environment variable " + ENV_RULE_SAMPLER_DROP_YAML_FILE + " is set.");
+            return Map.of();
+        }
+        return new DropRuleConfigReader().readDropRulesFromYaml(Paths.get(yamlFile));
+    }
+
+    private static SamplerRules readRulesFromYaml() {
+        val yamlFile = dropRulesYamlFile();
+        if (yamlFile == null) {
+            logger.warning("Neither system property nor environment variable " + ENV_RULE_SAMPLER_DROP_YAML_FILE + " is set.");
+            return SamplerRules.empty();
+        }
+        return new DropRuleConfigReader().readRulesFromYaml(Paths.get(yamlFile));
+    }
+
+    private static String dropRulesYamlFile() {
         var yamlFile = System.getProperty(ENV_RULE_SAMPLER_DROP_YAML_FILE);
 
         if (yamlFile == null || yamlFile.trim().isEmpty()) {
@@ -63,9 +132,8 @@ public class RuleBasedSamplerProvider implements ConfigurableSamplerProvider {
         }
 
         if (yamlFile == null || yamlFile.trim().isEmpty()) {
-            logger.warning("Neither system property nor environment variable " + ENV_RULE_SAMPLER_DROP_YAML_FILE + " is set.");
-            return Map.of();
+            return null;
         }
-        return new DropRuleConfigReader().readDropRulesFromYaml(Paths.get(yamlFile));
+        return yamlFile;
     }
 }
@@ -0,0 +1,113 @@
+package org.example;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, concurrent memo of {@link AttributeRuleMatcher#firstMatch} results for one attribute key
+ * of one {@link RuleBasedRoutingSampler}, i.e. keyed by (span kind, attribute key, value). It stores
+ * the index of the rule that matched, or {@link AttributeRuleMatcher#NO_MATCH}.
+ *
+ * <p>Eviction follows the CLOCK approximation of LRU: a hit marks the entry as referenced, and once
+ * the cache is full each new entry replaces the first one the clock hand finds unmarked, the hand
+ * clearing marks as it passes and resuming where it stopped on the next insert. Inserts take a
+ * lock, lookups never block.
+ */
+final class RuleMatchCache {
+    static final int MISS = Integer.MIN_VALUE;
+
+    private final ConcurrentHashMap<String, Entry> entries;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    // the clock, guarded by evictionLock: every cached entry in a slot, and the hand
+    private final Entry[] slots;
+    private int used;
+    private int hand;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    RuleMatchCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.slots = new Entry[maxSize];
+        this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 1024));
+    }
+
+    /**
+     * @return the cached rule index, {@link AttributeRuleMatcher#NO_MATCH} if it is known that no
+     *     rule matches, or {@link #MISS}
+     */
+    int get(String value) {
+        Entry entry = entries.get(value);
+        if (entry == null) {
+            misses.increment();
+            return MISS;
+        }
+        hits.increment();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        return entry.ruleIndex;
+    }
+
+    void put(String value, int ruleIndex) {
+        Entry entry = new Entry(value, ruleIndex);
+        if (entries.putIfAbsent(value, entry) != null) {
+            return;
+        }
+        evictionLock.lock();
+        try {
+            if (used < slots.length) {
+                slots[used++] = entry;
+                return;
+            }
+            // the hand goes round the slots, clearing marks until it finds an entry not hit since
+            // its last pass; it stops after one turn at most, once every mark is cleared
+            while (true) {
+                Entry candidate = slots[hand];
+                if (candidate.referenced) {
+                    candidate.referenced = false;
+                    hand = (hand + 1) % slots.length;
+                } else {
+                    entries.remove(candidate.value, candidate);
+                    evictions.increment();
+                    break;
+                }
+            }
+            // the new entry takes the slot, and the hand moves past it so that it gets a full turn
+            slots[hand] = entry;
+            hand = (hand + 1) % slots.length;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    long hitCount() {
+        return hits.sum();
+    }
+
+    long missCount() {
+        return misses.sum();
+    }
+
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        final String value;
+        final int ruleIndex;
+        volatile boolean referenced;
+
+        Entry(String value, int ruleIndex) {
+            this.value = value;
+            this.ruleIndex = ruleIndex;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rules read from the sampler YAML file: the patterns to drop, the drop rules whose conditions
+ * must all hold and the rate limits, all indexed by span kind.
+ */
+final class SamplerRules {
+    private final Map<SpanKind, Map<AttributeKey<String>, Set<String>>> dropRules;
+    private final Map<SpanKind, List<Map<AttributeKey<String>, Set<String>>>> allOfDropRules;
+    private final Map<SpanKind, List<RateLimit>> rateLimits;
+
+    SamplerRules(Map<SpanKind, Map<AttributeKey<String>, Set<String>>> dropRules,
+                 Map<SpanKind, List<Map<AttributeKey<String>, Set<String>>>> allOfDropRules,
+                 Map<SpanKind, List<RateLimit>> rateLimits) {
+        this.dropRules = dropRules;
+        this.allOfDropRules = allOfDropRules;
+        this.rateLimits = rateLimits;
+    }
+
+    static SamplerRules empty() {
+        return new SamplerRules(Map.of(), Map.of(), Map.of());
+    }
+
+    Map<SpanKind, Map<AttributeKey<String>, Set<String>>> getDropRules() {
+        return dropRules;
+    }
+
+    Map<SpanKind, List<Map<AttributeKey<String>, Set<String>>>> getAllOfDropRules() {
+        return allOfDropRules;
+    }
+
+    Map<SpanKind, List<RateLimit>> getRateLimits() {
+        return rateLimits;
+    }
+
+    /** One attribute key of a {@code rateLimit} rule, with its patterns and limit. */
+    static final class RateLimit {
+        final AttributeKey<String> attributeKey;
+        final Set<String> patterns;
+        final double tracesPerSecond;
+        final int maxBuckets;
+
+        RateLimit(AttributeKey<String> attributeKey, Set<String> patterns, double tracesPerSecond, int maxBuckets) {
+            this.attributeKey = attributeKey;
+            this.patterns = patterns;
+            this.tracesPerSecond = tracesPerSecond;
+            this.maxBuckets = maxBuckets;
+        }
+
+        @Override
+        public String toString() {
+            return "RateLimit{"
+                    + "attributeKey="
+                    + attributeKey
+                    + ", patterns="
+                    + patterns
+                    + ", tracesPerSecond="
+                    + tracesPerSecond
+                    + ", maxBuckets="
+                    + maxBuckets
+                    + '}';
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A drop rule evaluated when a span ends, on what is only known then: its duration and attributes
+ * that are not strings, such as {@code http.response.status_code}.
+ *
+ * <p>Every condition reads its attribute with a key of the configured type, so a long is compared
+ * as a long and never formatted to a string. The SDK stores attribute values boxed, reading them
+ * only unboxes the stored value and allocates nothing. The span kind and the duration are checked
+ * before any attribute, and the conditions in the order they were configured.
+ */
+final class SpanEndRule {
+    private final SpanKind spanKind;
+    private final long minLatencyNanos;
+    // exclusive
+    private final long maxLatencyNanos;
+    private final TypedPredicate[] predicates;
+    private final String description;
+
+    SpanEndRule(SpanKind spanKind, long minLatencyNanos, long maxLatencyNanos, List<TypedPredicate> predicates) {
+        if (minLatencyNanos < 0 || maxLatencyNanos <= minLatencyNanos) {
+            throw new IllegalArgumentException("Empty duration range");
+        }
+        this.spanKind = spanKind;
+        this.minLatencyNanos = minLatencyNanos;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.predicates = predicates.toArray(new TypedPredicate[0]);
+        this.description = describe();
+    }
+
+    /**
+     * Compiles a rule read from YAML.
+     *
+     * @throws IllegalArgumentException if a type, bound or value is invalid, or the rule has no
+     *     condition at all
+     */
+    static SpanEndRule compile(DropRuleConfig.EndOfSpanRule rule) {
+        long minLatencyNanos = rule.getMinDurationMs() != null ? toNanos(rule.getMinDurationMs()) : 0;
+        long maxLatencyNanos = rule.getMaxDurationMs() != null ? toNanos(rule.getMaxDurationMs()) : Long.MAX_VALUE;
+        List<TypedPredicate> predicates = new ArrayList<>();
+        if (rule.getConditions() != null) {
+            for (DropRuleConfig.TypedCondition condition : rule.getConditions()) {
+                predicates.add(TypedPredicate.compile(condition));
+            }
+        }
+        if (predicates.isEmpty() && rule.getMinDurationMs() == null && rule.getMaxDurationMs() == null) {
+            throw new IllegalArgumentException("Rule without duration bounds or conditions");
+        }
+        return new SpanEndRule(rule.getSpanKind(), minLatencyNanos, maxLatencyNanos, predicates);
+    }
+
+    private static long toNanos(double millis) {
+        if (!(millis >= 0)) {
+            throw new IllegalArgumentException("Durations must not be negative: " + millis);
+        }
+        return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    boolean test(ReadableSpan span) {
+        if (spanKind != null && span.getKind() != spanKind) {
+            return false;
+        }
+        long latency = span.getLatencyNanos();
+        if (latency < minLatencyNanos || latency >= maxLatencyNanos) {
+            return false;
+        }
+        for (TypedPredicate predicate : predicates) {
+            if (!predicate.test(span)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    private String describe() {
+        StringBuilder builder = new StringBuilder(spanKind != null ? spanKind.name() : "ANY");
+        if (minLatencyNanos > 0) {
+            builder.append(" duration>=").append(minLatencyNanos).append("ns");
+        }
+        if (maxLatencyNanos != Long.MAX_VALUE) {
+            builder.append(" duration<").append(maxLatencyNanos).append("ns");
+        }
+        for (TypedPredicate predicate : predicates) {
+            builder.append(' ').append(predicate);
+        }
+        return builder.toString();
+    }
+
+    /** A condition on one typed attribute, false when the span does not have it. */
+    abstract static class TypedPredicate {
+        final String key;
+
+        TypedPredicate(String key) {
+            this.key = key;
+        }
+
+        abstract boolean test(ReadableSpan span);
+
+        static TypedPredicate compile(DropRuleConfig.TypedCondition condition) {
+            String key = condition.getKey();
+            if (key == null || key.isEmpty()) {
+                throw new IllegalArgumentException("Condition without 'key'");
+            }
+            String type = condition.getType() != null ? condition.getType().toLowerCase(Locale.ROOT) : "string";
+            String value = condition.getValue();
+            boolean range = condition.getMin() != null || condition.getMax() != null;
+            if (value != null && range) {
+                throw new IllegalArgumentException("Condition on " + key + " cannot have both 'value' and 'min' or 'max'");
+            }
+            if (value == null && !range) {
+                throw new IllegalArgumentException("Condition on " + key + " needs 'value', 'min' or 'max'");
+            }
+            switch (type) {
+                case "long":
+                    return value != null
+                            ? longRange(key, Long.parseLong(value.trim()), Long.parseLong(value.trim()))
+                            : longRange(key,
+                                    condition.getMin() != null ? Long.parseLong(condition.getMin().trim()) : Long.MIN_VALUE,
+                                    condition.getMax() != null ? Long.parseLong(condition.getMax().trim()) : Long.MAX_VALUE);
+                case "double":
+                    return value != null
+                            ? doubleRange(key, Double.parseDouble(value), Double.parseDouble(value))
+                            : doubleRange(key,
+                                    condition.getMin() != null ? Double.parseDouble(condition.getMin()) : Double.NEGATIVE_INFINITY,
+                                    condition.getMax() != null ? Double.parseDouble(condition.getMax()) : Double.POSITIVE_INFINITY);
+                case "boolean":
+                    if (range || !("true".equalsIgnoreCase(value.trim()) || "false".equalsIgnoreCase(value.trim()))) {
+                        throw new IllegalArgumentException("Condition on boolean " + key + " needs 'value' true or false");
+                    }
+                    return booleanEquals(key, Boolean.parseBoolean(value.trim()));
+                case "string":
+                    if (range) {
+                        throw new IllegalArgumentException("Condition on string " + key + " needs 'value'");
+                    }
+                    return stringEquals(key, value);
+                default:
+                    throw new IllegalArgumentException("Unknown type '" + condition.getType() + "' of " + key);
+            }
+        }
+
+        /** Holds when the long attribute is within {@code [min, max]}. */
+        static TypedPredicate longRange(String key, long min, long max) {
+            if (max < min) {
+                throw new IllegalArgumentException("Empty range of " + key);
+            }
+            AttributeKey<Long> attributeKey = AttributeKey.longKey(key);
+            return new TypedPredicate(key) {
+                @Override
+                boolean test(ReadableSpan span) {
+                    Long value = span.getAttribute(attributeKey);
+                    if (value == null) {
+                        return false;
+                    }
+                    long v = value;
+                    return v >= min && v <= max;
+                }
+
+                @Override
+                public String toString() {
+                    return min == max ? key + "==" + min : key + " in [" + min + ", " + max + "]";
+                }
+            };
+        }
+
+        /** Holds when the double attribute is within {@code [min, max]}; never for NaN. */
+        static TypedPredicate doubleRange(String key, double min, double max) {
+            if (!(max >= min)) {
+                throw new IllegalArgumentException("Empty range of " + key);
+            }
+            AttributeKey<Double> attributeKey = AttributeKey.doubleKey(key);
+            return new TypedPredicate(key) {
+                @Override
+                boolean test(ReadableSpan span) {
+                    Double value = span.getAttribute(attributeKey);
+                    if (value == null) {
+                        return false;
+                    }
+                    double v = value;
+                    return v >= min && v <= max;
+                }
+
+                @Override
+                public String toString() {
+                    return min == max ? key + "==" + min : key + " in [" + min + ", " + max + "]";
+                }
+            };
+        }
+
+        static TypedPredicate booleanEquals(String key, boolean expected) {
+            AttributeKey<Boolean> attributeKey = AttributeKey.booleanKey(key);
+            return new TypedPredicate(key) {
+                @Override
+                boolean test(ReadableSpan span) {
+                    Boolean value = span.getAttribute(attributeKey);
+                    return value != null && value == expected;
+                }
+
+                @Override
+                public String toString() {
+                    return key + "==" + expected;
+                }
+            };
+        }
+
+        static TypedPredicate stringEquals(String key, String expected) {
+            AttributeKey<String> attributeKey = AttributeKey.stringKey(key);
+            return new TypedPredicate(key) {
+                @Override
+                boolean test(ReadableSpan span) {
+                    return expected.equals(span.getAttribute(attributeKey));
+                }
+
+                @Override
+                public String toString() {
+                    return key + "==\"" + expected + '"';
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counts which drop rules fire, what the samplers decide per span kind, how long the rules take to
+ * evaluate and what {@link DroppingSpanProcessor} drops.
+ *
+ * <p>Every count is a {@link LongAdder}, whose cells are striped across threads, so the request
+ * path never contends on a shared counter. Evaluation times are only measured for about one in
+ * {@code span.filter.metrics.timing.sample.ratio} spans; they are kept in fixed buckets for JMX
+ * and, once bound, recorded into an OpenTelemetry histogram with the same bucket boundaries.
+ *
+ * <p>The counts are read, off the request path, by the JMX bean {@code
+ * org.example:type=SpanFilterMetrics} and by asynchronous OpenTelemetry instruments bound in
+ * {@link SpanFilterMetricsAgentListener}.
+ */
+final class SpanFilterMetrics implements SpanFilterMetricsMXBean {
+    private static final Logger logger = Logger.getLogger(SpanFilterMetrics.class.getName());
+    private static final String CONFIG_ENABLED = "span.filter.metrics.enabled";
+    private static final String CONFIG_TIMING_SAMPLE_RATIO = "span.filter.metrics.timing.sample.ratio";
+    private static final int DEFAULT_TIMING_SAMPLE_RATIO = 64;
+    static final String OBJECT_NAME = "org.example:type=SpanFilterMetrics";
+    static final String INSTRUMENTATION_SCOPE = "org.example.span-filter";
+
+    // upper bounds of the evaluation time buckets in nanoseconds, the last bucket is unbounded
+    static final long[] EVALUATION_BOUNDS = {250, 500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 1_000_000};
+
+    private static final AttributeKey<String> SPAN_KIND = AttributeKey.stringKey("span.kind");
+    private static final AttributeKey<String> DECISION = AttributeKey.stringKey("decision");
+    private static final AttributeKey<String> RULE_ATTRIBUTE = AttributeKey.stringKey("rule.attribute");
+    private static final AttributeKey<String> RULE_PATTERN = AttributeKey.stringKey("rule.pattern");
+    private static final AttributeKey<String> RULE_ACTION = AttributeKey.stringKey("rule.action");
+    private static final AttributeKey<String> ATTRIBUTE_PREFIX = AttributeKey.stringKey("attribute.prefix");
+    private static final AttributeKey<String> RULE = AttributeKey.stringKey("rule");
+    private static final AttributeKey<String> ATTRIBUTE_KEY = AttributeKey.stringKey("attribute.key");
+
+    private static final SpanKind[] KINDS = SpanKind.values();
+    private static final SamplingDecision[] DECISIONS = SamplingDecision.values();
+    private static final int BUCKETS = EVALUATION_BOUNDS.length + 1;
+    private static final Attributes[] KIND_ATTRIBUTES = new Attributes[KINDS.length];
+
+    static {
+        for (SpanKind kind : KINDS) {
+            KIND_ATTRIBUTES[kind.ordinal()] = Attributes.of(SPAN_KIND, kind.name());
+        }
+    }
+
+    private static final SpanFilterMetrics DISABLED = new SpanFilterMetrics(false, 1);
+    private static SpanFilterMetrics shared;
+
+    private final boolean enabled;
+    private final int timingSampleRatio;
+    // by label, shared by the samplers rebuilt on reload so that counts survive it
+    private final Map<String, RuleCounter> ruleCounters = new ConcurrentHashMap<>();
+    // [kind][decision] and [kind][bucket], flattened
+    private final LongAdder[] decisions = newAdders(KINDS.length * DECISIONS.length);
+    private final LongAdder[] evaluationBuckets = newAdders(KINDS.length * BUCKETS);
+    // set by bind(), the samplers are created before the meter provider
+    private volatile LongHistogram evaluationHistogram;
+    private final List<DroppingSpanProcessor> processors = new CopyOnWriteArrayList<>();
+    private final List<AttributeBudgetSpanProcessor> budgetProcessors = new CopyOnWriteArrayList<>();
+    private final List<AsyncSpanProcessor> asyncProcessors = new CopyOnWriteArrayList<>();
+
+    SpanFilterMetrics(boolean enabled, int timingSampleRatio) {
+        this.enabled = enabled;
+        this.timingSampleRatio = Math.max(1, timingSampleRatio);
+    }
+
+    private static LongAdder[] newAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /** Returns metrics that count nothing. */
+    static SpanFilterMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Returns the metrics shared by the samplers and processors of this extension, creating them
+     * from the given configuration, and registering the JMX bean, on first use.
+     */
+    static synchronized SpanFilterMetrics fromConfig(ConfigProperties config) {
+        if (shared != null) {
+            return shared;
+        }
+        if (!config.getBoolean(CONFIG_ENABLED, false)) {
+            shared = DISABLED;
+            return shared;
+        }
+        shared = new SpanFilterMetrics(true, config.getInt(CONFIG_TIMING_SAMPLE_RATIO, DEFAULT_TIMING_SAMPLE_RATIO));
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(shared, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Failed to register " + OBJECT_NAME, e);
+        }
+        logger.info("Collecting span filter metrics, timing one in " + shared.timingSampleRatio + " evaluations");
+        return shared;
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Returns the counter of spans decided by the given rule, or {@code null} when disabled. */
+    LongAdder ruleCounter(SpanKind kind, SamplingRule rule) {
+        if (!enabled) {
+            return null;
+        }
+        String action = action(rule.delegate);
+        String label = kind + " " + rule.attributeKey.getKey() + "=" + rule.pattern.pattern() + " " + action;
+        return ruleCounters.computeIfAbsent(label, l -> new RuleCounter(Attributes.of(
+                SPAN_KIND, kind.name(),
+                RULE_ATTRIBUTE, rule.attributeKey.getKey(),
+                RULE_PATTERN, rule.pattern.pattern(),
+                RULE_ACTION, action))).count;
+    }
+
+    /**
+     * Returns the counter of spans dropped by the given rule whose conditions must all hold, or
+     * {@code null} when disabled.
+     */
+    LongAdder allOfRuleCounter(SpanKind kind, Map<AttributeKey<String>, Set<String>> conditions) {
+        if (!enabled) {
+            return null;
+        }
+        StringJoiner keys = new StringJoiner(",");
+        StringJoiner patterns = new StringJoiner(" AND ");
+        conditions.forEach((attributeKey, attributePatterns) -> {
+            keys.add(attributeKey.getKey());
+            patterns.add(attributeKey.getKey() + "=" + new TreeSet<>(attributePatterns));
+        });
+        String label = kind + " " + patterns + " drop";
+        return ruleCounters.computeIfAbsent(label, l -> new RuleCounter(Attributes.of(
+                SPAN_KIND, kind.name(),
+                RULE_ATTRIBUTE, keys.toString(),
+                RULE_PATTERN, patterns.toString(),
+                RULE_ACTION, "drop"))).count;
+    }
+
+    private static String action(Sampler delegate) {
+        if (delegate == Sampler.alwaysOff()) {
+            return "drop";
+        }
+        if (delegate == Sampler.alwaysOn()) {
+            return "sample";
+        }
+        return delegate instanceof RateLimitingSampler ? "rateLimit" : delegate.getClass().getSimpleName();
+    }
+
+    void recordDecision(SpanKind kind, SamplingDecision decision) {
+        decisions[kind.ordinal() * DECISIONS.length + decision.ordinal()].increment();
+    }
+
+    /** Tells whether the current evaluation should be timed. */
+    boolean shouldTime() {
+        return timingSampleRatio == 1 || ThreadLocalRandom.current().nextInt(timingSampleRatio) == 0;
+    }
+
+    void recordEvaluation(SpanKind kind, long nanos) {
+        int bucket = 0;
+        while (bucket < EVALUATION_BOUNDS.length && nanos > EVALUATION_BOUNDS[bucket]) {
+            bucket++;
+        }
+        evaluationBuckets[kind.ordinal() * BUCKETS + bucket].increment();
+        LongHistogram histogram = evaluationHistogram;
+        if (histogram != null) {
+            histogram.record(nanos, KIND_ATTRIBUTES[kind.ordinal()]);
+        }
+    }
+
+    void register(DroppingSpanProcessor processor) {
+        if (enabled) {
+            processors.add(processor);
+        }
+    }
+
+    void register(AttributeBudgetSpanProcessor processor) {
+        if (enabled) {
+            budgetProcessors.add(processor);
+        }
+    }
+
+    void register(AsyncSpanProcessor processor) {
+        if (enabled) {
+            asyncProcessors.add(processor);
+        }
+    }
+
+    /** Registers asynchronous instruments reading these counts whenever metrics are collected. */
+    void bind(Meter meter) {
+        meter.counterBuilder("span_filter.rule.matches")
+                .setDescription("Spans decided by each sampling rule")
+                .setUnit("{span}")
+                .buildWithCallback(measurement -> ruleCounters.values()
+                        .forEach(counter -> measurement.record(counter.count.sum(), counter.attributes)));
+
+        Attributes[] decisionAttributes = new Attributes[decisions.length];
+        for (SpanKind kind : KINDS) {
+            for (SamplingDecision decision : DECISIONS) {
+                decisionAttributes[kind.ordinal() * DECISIONS.length + decision.ordinal()] =
+                        Attributes.of(SPAN_KIND, kind.name(), DECISION, decision.name());
+            }
+        }
+        meter.counterBuilder("span_filter.sampler.decisions")
+                .setDescription("Sampling decisions per span kind")
+                .setUnit("{span}")
+                .buildWithCallback(measurement -> {
+                    for (int i = 0; i < decisions.length; i++) {
+                        measurement.record(decisions[i].sum(), decisionAttributes[i]);
+                    }
+                });
+        List<Long> boundaries = new ArrayList<>(EVALUATION_BOUNDS.length);
+        for (long bound : EVALUATION_BOUNDS) {
+            boundaries.add(bound);
+        }
+        evaluationHistogram = meter.histogramBuilder("span_filter.sampler.evaluation.duration")
+                .setDescription("Duration of the timed sampler evaluations")
+                .setUnit("ns")
+                .ofLongs()
+                .setExplicitBucketBoundariesAdvice(boundaries)
+                .build();
+        meter.counterBuilder("span_filter.processor.drops")
+                .setDescription("Spans dropped by DroppingSpanProcessor per attribute key prefix")
+                .setUnit("{span}")
+                .buildWithCallback(measurement -> getPrefixDrops()
+                        .forEach((prefix, count) -> measurement.record(count, Attributes.of(ATTRIBUTE_PREFIX, prefix))));
+        meter.counterBuilder("span_filter.processor.rule.drops")
+                .setDescription("Spans dropped by DroppingSpanProcessor per end of span rule")
+                .setUnit("{span}")
+                .buildWithCallback(measurement -> getEndOfSpanRuleDrops()
+                        .forEach((rule, count) -> measurement.record(count, Attributes.of(RULE, rule))));
+        meter.counterBuilder("span_filter.processor.attribute.bytes.saved")
+                .setDescription("Bytes of attribute values removed by AttributeBudgetSpanProcessor per attribute key")
+                .setUnit("By")
+                .buildWithCallback(measurement -> getAttributeBytesSaved()
+                        .forEach((key, bytes) -> measurement.record(bytes, Attributes.of(ATTRIBUTE_KEY, key))));
+        meter.gaugeBuilder("span_filter.processor.queue.depth")
+                .setDescription("Ended spans waiting for the AsyncSpanProcessor worker")
+                .setUnit("{span}")
+                .ofLongs()
+                .buildWithCallback(measurement -> measurement.record(getAsyncQueueDepth()));
+        meter.counterBuilder("span_filter.processor.queue.overflows")
+                .setDescription("Ended spans that found the AsyncSpanProcessor buffer full")
+                .setUnit("{span}")
+                .buildWithCallback(measurement -> measurement.record(getAsyncQueueOverflows()));
+    }
+
+    private static String bound(int bucket) {
+        return bucket < EVALUATION_BOUNDS.length ? Long.toString(EVALUATION_BOUNDS[bucket]) : "+Inf";
+    }
+
+    @Override
+    public Map<String, Long> getRuleMatches() {
+        Map<String, Long> matches = new TreeMap<>();
+        ruleCounters.forEach((label, counter) -> matches.put(label, counter.count.sum()));
+        return matches;
+    }
+
+    @Override
+    public Map<String, Long> getDecisions() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (SpanKind kind : KINDS) {
+            for (SamplingDecision decision : DECISIONS) {
+                counts.put(kind + " " + decision, decisions[kind.ordinal() * DECISIONS.length + decision.ordinal()].sum());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getEvaluationTimeHistogram() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (SpanKind kind : KINDS) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                long count = evaluationBuckets[kind.ordinal() * BUCKETS + bucket].sum();
+                if (count > 0) {
+                    counts.put(kind + " le=" + bound(bucket), count);
+                }
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> getPrefixDrops() {
+        Map<String, Long> drops = new TreeMap<>();
+        for (DroppingSpanProcessor processor : processors) {
+            processor.getDropCounts().forEach((prefix, count) -> drops.merge(prefix, count, Long::sum));
+        }
+        return drops;
+    }
+
+    @Override
+    public Map<String, Long> getEndOfSpanRuleDrops() {
+        Map<String, Long> drops = new TreeMap<>();
+        for (DroppingSpanProcessor processor : processors) {
+            processor.getRuleDropCounts().forEach((rule, count) -> drops.merge(rule, count, Long::sum));
+        }
+        return drops;
+    }
+
+    @Override
+    public Map<String, Long> getAttributeBytesSaved() {
+        Map<String, Long> saved = new TreeMap<>();
+        for (AttributeBudgetSpanProcessor processor : budgetProcessors) {
+            processor.getBytesSaved().forEach((key, bytes) -> saved.merge(key, bytes, Long::sum));
+        }
+        return saved;
+    }
+
+    @Override
+    public long getAsyncQueueDepth() {
+        long depth = 0;
+        for (AsyncSpanProcessor processor : asyncProcessors) {
+            depth += processor.getQueueDepth();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getAsyncQueueOverflows() {
+        long overflows = 0;
+        for (AsyncSpanProcessor processor : asyncProcessors) {
+            overflows += processor.getOverflowCount();
+        }
+        return overflows;
+    }
+
+    private static final class RuleCounter {
+        final Attributes attributes;
+        final LongAdder count = new LongAdder();
+
+        RuleCounter(Attributes attributes) {
+            this.attributes = attributes;
+        }
+    }
+}
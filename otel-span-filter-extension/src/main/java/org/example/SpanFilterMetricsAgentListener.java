@@ -0,0 +1,19 @@
+package org.example;
+
+import io.opentelemetry.javaagent.extension.AgentListener;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+
+/**
+ * Binds {@link SpanFilterMetrics} to the meter provider of the agent once it is built, which is
+ * after the samplers and processors have been created.
+ */
+public class SpanFilterMetricsAgentListener implements AgentListener {
+
+    @Override
+    public void afterAgent(AutoConfiguredOpenTelemetrySdk autoConfiguredOpenTelemetrySdk) {
+        SpanFilterMetrics metrics = SpanFilterMetrics.fromConfig(AgentListener.resolveConfigProperties(autoConfiguredOpenTelemetrySdk));
+        if (metrics.isEnabled()) {
+            metrics.bind(autoConfiguredOpenTelemetrySdk.getOpenTelemetrySdk().getMeter(SpanFilterMetrics.INSTRUMENTATION_SCOPE));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link SpanFilterMetrics}, registered as {@code org.example:type=SpanFilterMetrics}.
+ * Keys are human readable labels, values are counts since the agent started.
+ */
+public interface SpanFilterMetricsMXBean {
+
+    /** Spans decided by each drop rule, keyed by {@code "<span kind> <attribute key>=<pattern>"}. */
+    Map<String, Long> getRuleMatches();
+
+    /** Sampling decisions, keyed by {@code "<span kind> <decision>"}. */
+    Map<String, Long> getDecisions();
+
+    /**
+     * Sampled evaluation times of the rule based sampler, keyed by {@code "<span kind> le=<upper
+     * bound in nanoseconds>"}; each count is of its own bucket only, not cumulative.
+     */
+    Map<String, Long> getEvaluationTimeHistogram();
+
+    /** Spans dropped by {@link DroppingSpanProcessor}, keyed by attribute key prefix. */
+    Map<String, Long> getPrefixDrops();
+
+    /** Spans dropped by the end of span rules of {@link DroppingSpanProcessor}, keyed by rule. */
+    Map<String, Long> getEndOfSpanRuleDrops();
+
+    /** Bytes of attribute values removed by {@link AttributeBudgetSpanProcessor}, keyed by attribute key. */
+    Map<String, Long> getAttributeBytesSaved();
+
+    /** Ended spans currently waiting for the {@link AsyncSpanProcessor} worker. */
+    long getAsyncQueueDepth();
+
+    /** Ended spans that found the {@link AsyncSpanProcessor} buffer full. */
+    long getAsyncQueueOverflows();
+}
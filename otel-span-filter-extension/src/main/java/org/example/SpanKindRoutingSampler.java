@@ -0,0 +1,82 @@
+package org.example;
+
+import static java.util.Objects.requireNonNull;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The composite sampler built by {@link RuleBasedSamplerProvider}: it hands every span to the
+ * sampler registered for its {@link SpanKind}, or to the default sampler.
+ *
+ * <p>The per-kind samplers can be replaced at runtime with {@link #update(Map)}. The new map is
+ * built completely by the caller and published with a single volatile write, so {@link
+ * #shouldSample} never locks and never sees a partially built rule set.
+ *
+ * <p>When {@link SpanFilterMetrics} are enabled, every decision is counted per span kind and a
+ * sample of the evaluations is timed.
+ */
+final class SpanKindRoutingSampler implements Sampler {
+    private final Sampler defaultSampler;
+    private final SpanFilterMetrics metrics;
+    private volatile Map<SpanKind, Sampler> samplersBySpanKind;
+
+    SpanKindRoutingSampler(Map<SpanKind, Sampler> samplersBySpanKind, Sampler defaultSampler) {
+        this(samplersBySpanKind, defaultSampler, SpanFilterMetrics.disabled());
+    }
+
+    SpanKindRoutingSampler(Map<SpanKind, Sampler> samplersBySpanKind, Sampler defaultSampler, SpanFilterMetrics metrics) {
+        this.defaultSampler = requireNonNull(defaultSampler);
+        this.metrics = requireNonNull(metrics);
+        this.samplersBySpanKind = copyOf(samplersBySpanKind);
+    }
+
+    /** Atomically replaces the samplers used for each span kind. */
+    void update(Map<SpanKind, Sampler> samplersBySpanKind) {
+        this.samplersBySpanKind = copyOf(samplersBySpanKind);
+    }
+
+    Map<SpanKind, Sampler> getSamplersBySpanKind() {
+        return samplersBySpanKind;
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context context, String traceId, String name, SpanKind spanKind, Attributes attributes, List<LinkData> parentLinks) {
+        Sampler sampler = samplersBySpanKind.getOrDefault(spanKind, defaultSampler);
+        if (!metrics.isEnabled()) {
+            return sampler.shouldSample(context, traceId, name, spanKind, attributes, parentLinks);
+        }
+        boolean timed = metrics.shouldTime();
+        long start = timed ? System.nanoTime() : 0;
+        SamplingResult result = sampler.shouldSample(context, traceId, name, spanKind, attributes, parentLinks);
+        if (timed) {
+            metrics.recordEvaluation(spanKind, System.nanoTime() - start);
+        }
+        metrics.recordDecision(spanKind, result.getDecision());
+        return result;
+    }
+
+    @Override
+    public String getDescription() {
+        return "CustomCompositeSampler";
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+
+    private static Map<SpanKind, Sampler> copyOf(Map<SpanKind, Sampler> samplersBySpanKind) {
+        Map<SpanKind, Sampler> copy = new EnumMap<>(SpanKind.class);
+        copy.putAll(requireNonNull(samplersBySpanKind));
+        return copy;
+    }
+}
@@ -0,0 +1,81 @@
+package org.example;
+
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class SpoolAutoConfigCustomizerProvider implements AutoConfigurationCustomizerProvider {
+    private static final Logger logger = Logger.getLogger(SpoolAutoConfigCustomizerProvider.class.getName());
+    private static final String CONFIG_ENABLED = "span.spool.enabled";
+    private static final String CONFIG_DIRECTORY = "span.spool.dir";
+    private static final String CONFIG_MAX_BYTES = "span.spool.max.bytes";
+    private static final String CONFIG_SEGMENT_BYTES = "span.spool.segment.bytes";
+    private static final String CONFIG_REPLAY_INTERVAL_MS = "span.spool.replay.interval.ms";
+    private static final String CONFIG_REPLAY_ENDPOINT = "span.spool.replay.endpoint";
+    private static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    private static final int DEFAULT_SEGMENT_BYTES = 8 * 1024 * 1024;
+    private static final long DEFAULT_REPLAY_INTERVAL_MS = 1000;
+    private static final String DEFAULT_ENDPOINT = "http://localhost:4318";
+    private static final String TRACES_PATH = "/v1/traces";
+    private static final Duration REPLAY_TIMEOUT = Duration.ofSeconds(10);
+
+    @Override
+    public void customize(AutoConfigurationCustomizer autoConfigurationCustomizer) {
+        autoConfigurationCustomizer.addSpanExporterCustomizer((spanExporter, config) -> {
+            if (!config.getBoolean(CONFIG_ENABLED, false)) {
+                return spanExporter;
+            }
+            if (!OtlpTraceRequestSerializer.isAvailable()) {
+                logger.warning("Exporting without a spool, this agent cannot serialize spooled batches");
+                return spanExporter;
+            }
+            String directory = config.getString(CONFIG_DIRECTORY, Paths.get(System.getProperty("java.io.tmpdir"), "otel-span-spool").toString());
+            try {
+                DiskSpool spool = new DiskSpool(Paths.get(directory),
+                        config.getInt(CONFIG_SEGMENT_BYTES, DEFAULT_SEGMENT_BYTES),
+                        config.getLong(CONFIG_MAX_BYTES, DEFAULT_MAX_BYTES), true);
+                SpoolingSpanExporter.OtlpHttpSender sender = new SpoolingSpanExporter.OtlpHttpSender(
+                        URI.create(replayEndpoint(config)), headers(config), REPLAY_TIMEOUT);
+                return new SpoolingSpanExporter(spanExporter, spool, sender,
+                        config.getLong(CONFIG_REPLAY_INTERVAL_MS, DEFAULT_REPLAY_INTERVAL_MS));
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Cannot spool spans to " + directory + ", exporting without a spool", e);
+                return spanExporter;
+            }
+        });
+        logger.log(Level.INFO, "Registered SpanExporter customizer for SpoolingSpanExporter.");
+    }
+
+    // the OTLP over HTTP traces endpoint the agent exports to, or the collector's default one
+    private static String replayEndpoint(ConfigProperties config) {
+        String endpoint = config.getString(CONFIG_REPLAY_ENDPOINT);
+        if (endpoint != null) {
+            return endpoint;
+        }
+        String protocol = config.getString("otel.exporter.otlp.traces.protocol", config.getString("otel.exporter.otlp.protocol", "http/protobuf"));
+        if (!"http/protobuf".equals(protocol)) {
+            return DEFAULT_ENDPOINT + TRACES_PATH;
+        }
+        endpoint = config.getString("otel.exporter.otlp.traces.endpoint");
+        if (endpoint != null) {
+            return endpoint;
+        }
+        endpoint = config.getString("otel.exporter.otlp.endpoint", DEFAULT_ENDPOINT);
+        return (endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint) + TRACES_PATH;
+    }
+
+    private static Map<String, String> headers(ConfigProperties config) {
+        Map<String, String> headers = new HashMap<>(config.getMap("otel.exporter.otlp.headers"));
+        headers.putAll(config.getMap("otel.exporter.otlp.traces.headers"));
+        return headers;
+    }
+}
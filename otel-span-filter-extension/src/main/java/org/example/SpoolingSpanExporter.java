@@ -0,0 +1,167 @@
+package org.example;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the batches its exporter fails to send in a {@link DiskSpool}, and sends them again, in
+ * order, once the collector is back.
+ *
+ * <p>Batches are spooled as serialized OTLP requests, exactly what OTLP over HTTP posts, so that
+ * replaying them is a plain POST of the stored bytes. While the spool holds batches, new ones are
+ * appended to it straight away rather than given to the exporter: they keep their order, and the
+ * export thread no longer waits on the timeouts of an unreachable collector. A background thread
+ * replays the oldest batch at a fixed interval until the spool is empty.
+ *
+ * <p>Serializing relies on an internal class of the agent, see {@link OtlpTraceRequestSerializer}.
+ */
+public class SpoolingSpanExporter implements SpanExporter {
+    private static final Logger logger = Logger.getLogger(SpoolingSpanExporter.class.getName());
+
+    /** Sends one serialized OTLP trace request; returns false to retry it later. */
+    interface BatchSender {
+        boolean send(byte[] request);
+    }
+
+    private final SpanExporter delegate;
+    private final DiskSpool spool;
+    private final BatchSender sender;
+    private final ScheduledExecutorService replayer;
+
+    SpoolingSpanExporter(SpanExporter delegate, DiskSpool spool, BatchSender sender, long replayIntervalMillis) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate must not be null");
+        this.spool = Objects.requireNonNull(spool, "spool must not be null");
+        this.sender = Objects.requireNonNull(sender, "sender must not be null");
+        if (replayIntervalMillis <= 0) {
+            throw new IllegalArgumentException("replayIntervalMillis must be positive");
+        }
+        this.replayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "span-spool-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replayer.scheduleWithFixedDelay(this::replay, replayIntervalMillis, replayIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.log(Level.INFO, "Initialized SpoolingSpanExporter: " + spool);
+    }
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+        if (!spool.isEmpty()) {
+            return spool(spans) ? CompletableResultCode.ofSuccess() : CompletableResultCode.ofFailure();
+        }
+        CompletableResultCode exported = delegate.export(spans);
+        CompletableResultCode result = new CompletableResultCode();
+        exported.whenComplete(() -> {
+            if (exported.isSuccess() || spool(spans)) {
+                result.succeed();
+            } else {
+                result.fail();
+            }
+        });
+        return result;
+    }
+
+    private boolean spool(Collection<SpanData> spans) {
+        try {
+            if (spool.append(serialize(spans))) {
+                return true;
+            }
+            logger.warning("Dropping a batch of " + spans.size() + " spans larger than a spool segment");
+        } catch (IOException | RuntimeException | LinkageError e) {
+            logger.log(Level.WARNING, "Failed to spool a batch of " + spans.size() + " spans", e);
+        }
+        return false;
+    }
+
+    static byte[] serialize(Collection<SpanData> spans) throws IOException {
+        return OtlpTraceRequestSerializer.serialize(spans);
+    }
+
+    /** Sends spooled batches, oldest first, until the spool is empty or a send fails. */
+    void replay() {
+        try {
+            byte[] request;
+            while ((request = spool.peek()) != null) {
+                if (!sender.send(request)) {
+                    return;
+                }
+                spool.commit();
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to replay spooled spans", e);
+        }
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return delegate.flush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        replayer.shutdownNow();
+        spool.close();
+        return delegate.shutdown();
+    }
+
+    DiskSpool getSpool() {
+        return spool;
+    }
+
+    /** Posts serialized requests to an OTLP over HTTP traces endpoint. */
+    static final class OtlpHttpSender implements BatchSender {
+        private final HttpClient client;
+        private final URI endpoint;
+        private final Map<String, String> headers;
+        private final Duration timeout;
+
+        OtlpHttpSender(URI endpoint, Map<String, String> headers, Duration timeout) {
+            this.client = HttpClient.newBuilder().connectTimeout(timeout).build();
+            this.endpoint = endpoint;
+            this.headers = Map.copyOf(headers);
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean send(byte[] request) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(endpoint)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/x-protobuf")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(request));
+            headers.forEach(builder::header);
+            try {
+                int status = client.send(builder.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+                if (status >= 200 && status < 300) {
+                    return true;
+                }
+                if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                    // the collector will never accept it, do not hold up the batches behind it
+                    logger.warning("Collector rejected a spooled batch with status " + status + ", dropping it");
+                    return true;
+                }
+                return false;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.example;
+
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizer;
+import io.opentelemetry.sdk.autoconfigure.spi.AutoConfigurationCustomizerProvider;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class TailSamplingAutoConfigCustomizerProvider implements AutoConfigurationCustomizerProvider {
+    private static final Logger logger = Logger.getLogger(TailSamplingAutoConfigCustomizerProvider.class.getName());
+    private static final String CONFIG_ENABLED = "tail.sampling.enabled";
+    private static final String CONFIG_DECISION_WAIT_MS = "tail.sampling.decision.wait.ms";
+    private static final String CONFIG_LATENCY_THRESHOLD_MS = "tail.sampling.latency.threshold.ms";
+    private static final String CONFIG_SAMPLE_RATIO = "tail.sampling.ratio";
+    private static final String CONFIG_MAX_BUFFERED_SPANS = "tail.sampling.max.buffered.spans";
+
+    @Override
+    public void customize(AutoConfigurationCustomizer autoConfigurationCustomizer) {
+        autoConfigurationCustomizer.addSpanProcessorCustomizer((spanProcessor, config) -> {
+            if (!config.getBoolean(CONFIG_ENABLED, false)) {
+                return spanProcessor;
+            }
+            // Wrap the original spanProcessor, which then only sees the spans of kept traces
+            return TailSamplingSpanProcessor.builder(spanProcessor)
+                    .decisionWaitMillis(config.getLong(CONFIG_DECISION_WAIT_MS, TailSamplingSpanProcessorBuilder.DEFAULT_DECISION_WAIT_MILLIS))
+                    .latencyThresholdMillis(config.getLong(CONFIG_LATENCY_THRESHOLD_MS, TailSamplingSpanProcessorBuilder.DEFAULT_LATENCY_THRESHOLD_MILLIS))
+                    .sampleRatio(config.getDouble(CONFIG_SAMPLE_RATIO, TailSamplingSpanProcessorBuilder.DEFAULT_SAMPLE_RATIO))
+                    .maxBufferedSpans(config.getInt(CONFIG_MAX_BUFFERED_SPANS, TailSamplingSpanProcessorBuilder.DEFAULT_MAX_BUFFERED_SPANS))
+                    .build();
+        });
+        logger.log(Level.INFO, "Registered SpanProcessor customizer for TailSamplingSpanProcessor.");
+    }
+
+    @Override
+    public int order() {
+        // After DroppingSpanAutoConfigCustomizerProvider, so that tail sampling wraps it and sees
+        // every span of a trace
+        return 0;
+    }
+}
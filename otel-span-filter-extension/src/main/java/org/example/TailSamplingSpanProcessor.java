@@ -0,0 +1,315 @@
+package org.example;
+
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides which traces to export once they are complete, rather than when they start.
+ *
+ * <p>Ended spans are buffered per trace until the local root span ends, or until the trace has been
+ * buffered for the decision wait. A trace is then kept if one of its spans failed or took at least
+ * the latency threshold, and otherwise kept with the sample ratio, chosen from the trace id like
+ * {@code Sampler.traceIdRatioBased} does. Kept spans go on to the next processor, the others are
+ * dropped. Spans ending after their trace was decided follow the decision.
+ *
+ * <p>At most {@code maxBufferedSpans} spans are buffered. Above that, the oldest traces are decided
+ * early with what they have so far, so a failed or slow span already seen is still kept. Traces
+ * are keyed by their id as two longs and queued in arrival order, which makes both the timeout
+ * sweep and the eviction a walk from the head of the queue.
+ */
+public class TailSamplingSpanProcessor implements SpanProcessor {
+    private static final Logger logger = Logger.getLogger(TailSamplingSpanProcessor.class.getName());
+
+    private final SpanProcessor nextProcessor;
+    private final long decisionWaitNanos;
+    private final long latencyThresholdNanos;
+    private final double sampleRatio;
+    private final long idUpperBound;
+    private final int maxBufferedSpans;
+    private final LongSupplier nanoTime;
+
+    private final ConcurrentHashMap<TraceKey, TraceBuffer> traces = new ConcurrentHashMap<>();
+    // arrival order of the buffered traces, decided ones are skipped when reached
+    private final Queue<TraceBuffer> arrivals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger bufferedSpans = new AtomicInteger();
+    // recent decisions, for spans ending after their trace was decided
+    private final ConcurrentHashMap<TraceKey, Boolean> decisions = new ConcurrentHashMap<>();
+    private final Queue<TraceKey> decisionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger decisionCount = new AtomicInteger();
+
+    private final LongAdder keptTraces = new LongAdder();
+    private final LongAdder droppedTraces = new LongAdder();
+    private final LongAdder evictedTraces = new LongAdder();
+    private final ScheduledExecutorService decider;
+
+    TailSamplingSpanProcessor(SpanProcessor nextProcessor, long decisionWaitMillis, long latencyThresholdMillis,
+                              double sampleRatio, int maxBufferedSpans, LongSupplier nanoTime) {
+        this.nextProcessor = Objects.requireNonNull(nextProcessor, "nextProcessor must not be null");
+        if (decisionWaitMillis <= 0) {
+            throw new IllegalArgumentException("decisionWaitMillis must be positive");
+        }
+        if (sampleRatio < 0 || sampleRatio > 1) {
+            throw new IllegalArgumentException("sampleRatio must be in [0, 1]");
+        }
+        if (maxBufferedSpans <= 0) {
+            throw new IllegalArgumentException("maxBufferedSpans must be positive");
+        }
+        this.decisionWaitNanos = TimeUnit.MILLISECONDS.toNanos(decisionWaitMillis);
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.sampleRatio = sampleRatio;
+        this.idUpperBound = sampleRatio >= 1.0 ? Long.MAX_VALUE : (long) (sampleRatio * Long.MAX_VALUE);
+        this.maxBufferedSpans = maxBufferedSpans;
+        this.nanoTime = Objects.requireNonNull(nanoTime, "nanoTime must not be null");
+
+        this.decider = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tail-sampling-decider");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long sweepMillis = Math.max(1, Math.min(1000, decisionWaitMillis / 2));
+        decider.scheduleWithFixedDelay(this::decideExpired, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+        logger.log(Level.INFO, "Initialized TailSamplingSpanProcessor: " + this);
+    }
+
+    public static TailSamplingSpanProcessorBuilder builder(SpanProcessor nextProcessor) {
+        return new TailSamplingSpanProcessorBuilder(nextProcessor);
+    }
+
+    @Override
+    public void onStart(Context context, ReadWriteSpan readWriteSpan) {
+        nextProcessor.onStart(context, readWriteSpan);
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return nextProcessor.isStartRequired();
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        SpanContext spanContext = span.getSpanContext();
+        if (!spanContext.isSampled()) {
+            // not exported anyway, nothing to decide
+            nextProcessor.onEnd(span);
+            return;
+        }
+        TraceKey key = TraceKey.fromHex(spanContext.getTraceId());
+        TraceBuffer buffer;
+        while (true) {
+            Boolean decision = decisions.get(key);
+            if (decision != null) {
+                if (decision) {
+                    nextProcessor.onEnd(span);
+                }
+                return;
+            }
+            buffer = traces.computeIfAbsent(key, this::newBuffer);
+            if (buffer.add(span, isFailed(buffer, span), span.getLatencyNanos() >= latencyThresholdNanos)) {
+                break;
+            }
+            // decided between the lookup and the add, its decision is about to be remembered
+            Thread.onSpinWait();
+        }
+        bufferedSpans.incrementAndGet();
+
+        SpanContext parent = span.getParentSpanContext();
+        if (!parent.isValid() || parent.isRemote()) {
+            decide(buffer);
+        }
+        while (bufferedSpans.get() > maxBufferedSpans && evictOldest()) {
+            evictedTraces.increment();
+        }
+    }
+
+    private TraceBuffer newBuffer(TraceKey key) {
+        TraceBuffer buffer = new TraceBuffer(key, nanoTime.getAsLong());
+        arrivals.add(buffer);
+        return buffer;
+    }
+
+    private static boolean isFailed(TraceBuffer buffer, ReadableSpan span) {
+        // the status is only reachable through span data, skip building it once the trace failed
+        return !buffer.failed && span.toSpanData().getStatus().getStatusCode() == StatusCode.ERROR;
+    }
+
+    /** Decides the traces that have been buffered for the decision wait. */
+    void decideExpired() {
+        try {
+            long now = nanoTime.getAsLong();
+            synchronized (arrivals) {
+                TraceBuffer oldest;
+                while ((oldest = arrivals.peek()) != null && (oldest.decided || now - oldest.arrivalNanos >= decisionWaitNanos)) {
+                    arrivals.poll();
+                    decide(oldest);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to decide expired traces", e);
+        }
+    }
+
+    // takes the same lock as the sweep, so the head it peeked is the head it polls
+    private boolean evictOldest() {
+        synchronized (arrivals) {
+            TraceBuffer oldest;
+            while ((oldest = arrivals.poll()) != null) {
+                if (decide(oldest)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // returns false if the trace was already decided
+    private boolean decide(TraceBuffer buffer) {
+        List<ReadableSpan> spans = buffer.close();
+        if (spans == null) {
+            return false;
+        }
+        boolean keep = buffer.failed || buffer.slow || (buffer.key.low & Long.MAX_VALUE) < idUpperBound;
+        // remembered before the buffer goes away, so a late span finds one or the other
+        remember(buffer.key, keep);
+        traces.remove(buffer.key, buffer);
+        bufferedSpans.addAndGet(-spans.size());
+
+        if (keep) {
+            keptTraces.increment();
+            for (ReadableSpan span : spans) {
+                nextProcessor.onEnd(span);
+            }
+        } else {
+            droppedTraces.increment();
+        }
+        return true;
+    }
+
+    private void remember(TraceKey key, boolean keep) {
+        if (decisions.put(key, keep) == null) {
+            decisionOrder.add(key);
+            if (decisionCount.incrementAndGet() > maxBufferedSpans) {
+                TraceKey forgotten = decisionOrder.poll();
+                if (forgotten != null) {
+                    decisions.remove(forgotten);
+                    decisionCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private void decideAll() {
+        synchronized (arrivals) {
+            TraceBuffer buffer;
+            while ((buffer = arrivals.poll()) != null) {
+                decide(buffer);
+            }
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        decider.shutdownNow();
+        decideAll();
+        return nextProcessor.shutdown();
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        decideAll();
+        return nextProcessor.forceFlush();
+    }
+
+    int getBufferedSpanCount() {
+        return bufferedSpans.get();
+    }
+
+    int getBufferedTraceCount() {
+        return traces.size();
+    }
+
+    long getKeptTraceCount() {
+        return keptTraces.sum();
+    }
+
+    long getDroppedTraceCount() {
+        return droppedTraces.sum();
+    }
+
+    long getEvictedTraceCount() {
+        return evictedTraces.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "TailSamplingSpanProcessor{"
+                + "decisionWaitMillis="
+                + TimeUnit.NANOSECONDS.toMillis(decisionWaitNanos)
+                + ", latencyThresholdMillis="
+                + TimeUnit.NANOSECONDS.toMillis(latencyThresholdNanos)
+                + ", sampleRatio="
+                + sampleRatio
+                + ", maxBufferedSpans="
+                + maxBufferedSpans
+                + '}';
+    }
+
+    private static final class TraceBuffer {
+        final TraceKey key;
+        final long arrivalNanos;
+        private List<ReadableSpan> spans = new ArrayList<>(4);
+        volatile boolean decided;
+        boolean failed;
+        boolean slow;
+
+        TraceBuffer(TraceKey key, long arrivalNanos) {
+            this.key = key;
+            this.arrivalNanos = arrivalNanos;
+        }
+
+        synchronized boolean add(ReadableSpan span, boolean failed, boolean slow) {
+            if (decided) {
+                return false;
+            }
+            spans.add(span);
+            this.failed |= failed;
+            this.slow |= slow;
+            return true;
+        }
+
+        // hands the spans to exactly one decider, null for the others
+        synchronized List<ReadableSpan> close() {
+            if (decided) {
+                return null;
+            }
+            decided = true;
+            List<ReadableSpan> closed = spans;
+            spans = null;
+            return closed;
+        }
+    }
+}
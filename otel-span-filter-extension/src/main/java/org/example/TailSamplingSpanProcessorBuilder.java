@@ -0,0 +1,54 @@
+package org.example;
+
+import static java.util.Objects.requireNonNull;
+
+import io.opentelemetry.sdk.trace.SpanProcessor;
+
+public final class TailSamplingSpanProcessorBuilder {
+    static final long DEFAULT_DECISION_WAIT_MILLIS = 10_000;
+    static final long DEFAULT_LATENCY_THRESHOLD_MILLIS = 1_000;
+    static final double DEFAULT_SAMPLE_RATIO = 0.1;
+    static final int DEFAULT_MAX_BUFFERED_SPANS = 10_000;
+
+    private final SpanProcessor nextProcessor;
+    private long decisionWaitMillis = DEFAULT_DECISION_WAIT_MILLIS;
+    private long latencyThresholdMillis = DEFAULT_LATENCY_THRESHOLD_MILLIS;
+    private double sampleRatio = DEFAULT_SAMPLE_RATIO;
+    private int maxBufferedSpans = DEFAULT_MAX_BUFFERED_SPANS;
+
+    TailSamplingSpanProcessorBuilder(SpanProcessor nextProcessor) {
+        this.nextProcessor = requireNonNull(nextProcessor, "nextProcessor must not be null");
+    }
+
+    /**
+     * How long a trace may wait for its local root span before it is decided with the spans it
+     * has.
+     */
+    public TailSamplingSpanProcessorBuilder decisionWaitMillis(long decisionWaitMillis) {
+        this.decisionWaitMillis = decisionWaitMillis;
+        return this;
+    }
+
+    /** Keep every trace with a span at least this long. */
+    public TailSamplingSpanProcessorBuilder latencyThresholdMillis(long latencyThresholdMillis) {
+        this.latencyThresholdMillis = latencyThresholdMillis;
+        return this;
+    }
+
+    /** Ratio of the traces without errors or slow spans to keep. */
+    public TailSamplingSpanProcessorBuilder sampleRatio(double sampleRatio) {
+        this.sampleRatio = sampleRatio;
+        return this;
+    }
+
+    /** Maximum number of spans buffered across all undecided traces. */
+    public TailSamplingSpanProcessorBuilder maxBufferedSpans(int maxBufferedSpans) {
+        this.maxBufferedSpans = maxBufferedSpans;
+        return this;
+    }
+
+    public TailSamplingSpanProcessor build() {
+        return new TailSamplingSpanProcessor(
+                nextProcessor, decisionWaitMillis, latencyThresholdMillis, sampleRatio, maxBufferedSpans, System::nanoTime);
+    }
+}
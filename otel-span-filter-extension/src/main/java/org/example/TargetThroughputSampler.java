@@ -0,0 +1,117 @@
+package org.example;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples about {@code targetPerSecond} spans per second, whatever the traffic.
+ *
+ * <p>Arrivals are counted in a {@link LongAdder} per one second bucket. When a bucket is over, the
+ * first thread to notice rolls it into a sliding window of the last {@code windowSeconds} buckets
+ * and derives a new trace id ratio, {@code target / observed rate}, capped at 1. The ratio sampler
+ * is published with a volatile write, so the hot path is an increment, a clock read and a volatile
+ * read.
+ *
+ * <p>Meant to be wrapped in {@link Sampler#parentBased(Sampler)} so that it only sees, and counts,
+ * root spans, and child spans follow the decision of their root.
+ */
+final class TargetThroughputSampler implements Sampler {
+    private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double targetPerSecond;
+    private final LongSupplier nanoTime;
+    private final LongAdder arrivals = new LongAdder();
+    // completed buckets, oldest overwritten first; only written by the thread that rolls
+    private final long[] window;
+    private final AtomicLong bucketEnd;
+    private int windowIndex;
+    private int windowFilled;
+    private volatile Sampler ratioSampler = Sampler.alwaysOn();
+    private volatile double ratio = 1.0;
+
+    TargetThroughputSampler(double targetPerSecond, int windowSeconds) {
+        this(targetPerSecond, windowSeconds, System::nanoTime);
+    }
+
+    TargetThroughputSampler(double targetPerSecond, int windowSeconds, LongSupplier nanoTime) {
+        if (targetPerSecond <= 0) {
+            throw new IllegalArgumentException("targetPerSecond must be positive");
+        }
+        if (windowSeconds <= 0) {
+            throw new IllegalArgumentException("windowSeconds must be positive");
+        }
+        this.targetPerSecond = targetPerSecond;
+        this.nanoTime = nanoTime;
+        this.window = new long[windowSeconds];
+        this.bucketEnd = new AtomicLong(nanoTime.getAsLong() + BUCKET_NANOS);
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind, Attributes attributes, List<LinkData> parentLinks) {
+        arrivals.increment();
+        long now = nanoTime.getAsLong();
+        long end = bucketEnd.get();
+        if (now - end >= 0 && bucketEnd.compareAndSet(end, nextBucketEnd(end, now))) {
+            roll(end, now);
+        }
+        return ratioSampler.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+    }
+
+    private static long nextBucketEnd(long end, long now) {
+        return end + ((now - end) / BUCKET_NANOS + 1) * BUCKET_NANOS;
+    }
+
+    // run by whichever thread advanced bucketEnd; synchronized so the window is visible to the next one
+    private synchronized void roll(long end, long now) {
+        push(arrivals.sumThenReset());
+        // buckets that passed without any span
+        long idleBuckets = Math.min((now - end) / BUCKET_NANOS, window.length);
+        for (long i = 0; i < idleBuckets; i++) {
+            push(0);
+        }
+
+        long total = 0;
+        for (int i = 0; i < windowFilled; i++) {
+            total += window[i];
+        }
+        double observedPerSecond = (double) total / windowFilled;
+        double newRatio = observedPerSecond <= targetPerSecond ? 1.0 : targetPerSecond / observedPerSecond;
+        if (newRatio != ratio) {
+            ratio = newRatio;
+            ratioSampler = newRatio >= 1.0 ? Sampler.alwaysOn() : Sampler.traceIdRatioBased(newRatio);
+        }
+    }
+
+    private void push(long count) {
+        window[windowIndex] = count;
+        windowIndex = (windowIndex + 1) % window.length;
+        windowFilled = Math.min(windowFilled + 1, window.length);
+    }
+
+    /** Returns the trace id ratio currently applied. */
+    double getRatio() {
+        return ratio;
+    }
+
+    @Override
+    public String getDescription() {
+        return "TargetThroughputSampler{targetPerSecond=" + targetPerSecond
+                + ", windowSeconds=" + window.length
+                + ", ratio=" + ratio + '}';
+    }
+
+    @Override
+    public String toString() {
+        return getDescription();
+    }
+}
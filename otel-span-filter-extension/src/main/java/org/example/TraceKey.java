@@ -0,0 +1,54 @@
+package org.example;
+
+/**
+ * A 128-bit trace id held as two longs, a lighter map key than its 32 character hex string.
+ */
+final class TraceKey {
+    final long high;
+    final long low;
+
+    TraceKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /** Parses a valid, lowercase or uppercase, 32 character hex trace id without allocating strings. */
+    static TraceKey fromHex(String traceId) {
+        return new TraceKey(parseHex(traceId, 0), parseHex(traceId, 16));
+    }
+
+    private static long parseHex(String hex, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid trace id: " + hex);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TraceKey)) {
+            return false;
+        }
+        TraceKey that = (TraceKey) o;
+        return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+        // the low half is random enough on its own
+        return Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", high, low);
+    }
+}
@@ -0,0 +1,191 @@
+package org.example;
+
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncSpanProcessorTest {
+    private final SdkTracerProvider tracerProvider = SdkTracerProvider.builder().build();
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+    private final List<String> threads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AsyncSpanProcessor processor;
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        if (processor != null) {
+            processor.shutdown();
+        }
+        tracerProvider.close();
+    }
+
+    private SpanProcessor next(boolean blockFirst) {
+        return new SpanProcessor() {
+            @Override
+            public void onStart(Context parentContext, ReadWriteSpan span) {
+            }
+
+            @Override
+            public boolean isStartRequired() {
+                return false;
+            }
+
+            @Override
+            public void onEnd(ReadableSpan span) {
+                if (blockFirst && span.getName().equals("first")) {
+                    entered.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                processed.add(span.getName());
+                threads.add(Thread.currentThread().getName());
+            }
+
+            @Override
+            public boolean isEndRequired() {
+                return true;
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+    }
+
+    private SpanProcessor failingOn(String name) {
+        SpanProcessor next = next(false);
+        return new SpanProcessor() {
+            @Override
+            public void onStart(Context parentContext, ReadWriteSpan span) {
+            }
+
+            @Override
+            public boolean isStartRequired() {
+                return false;
+            }
+
+            @Override
+            public void onEnd(ReadableSpan span) {
+                if (span.getName().equals(name)) {
+                    throw new StackOverflowError("failing on " + name);
+                }
+                next.onEnd(span);
+            }
+
+            @Override
+            public boolean isEndRequired() {
+                return true;
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+    }
+
+    private ReadableSpan endedSpan(String name) {
+        ReadWriteSpan span = (ReadWriteSpan) tracerProvider.get("test").spanBuilder(name).startSpan();
+        span.end();
+        return span;
+    }
+
+    @Test
+    public void testProcessesSpansOnWorkerThreadBlockingWhenFull() {
+        // Arrange
+        processor = new AsyncSpanProcessor(next(false), 16, AsyncSpanProcessor.FullPolicy.BLOCK);
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            processor.onEnd(endedSpan("span-" + i));
+        }
+        processor.forceFlush();
+
+        // Assert
+        assertEquals(100, processed.size());
+        assertEquals("span-0", processed.get(0));
+        assertEquals("span-99", processed.get(99));
+        assertTrue(threads.stream().allMatch("span-filter-async"::equals));
+        assertEquals(0, processor.getQueueDepth());
+    }
+
+    @Test
+    public void testDropsWhenFull() throws InterruptedException {
+        // Arrange
+        processor = new AsyncSpanProcessor(next(true), 2, AsyncSpanProcessor.FullPolicy.DROP);
+        processor.onEnd(endedSpan("first"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // Act
+        processor.onEnd(endedSpan("queued-1"));
+        processor.onEnd(endedSpan("queued-2"));
+        long depth = processor.getQueueDepth();
+        processor.onEnd(endedSpan("overflow"));
+        release.countDown();
+        processor.forceFlush();
+
+        // Assert
+        assertEquals(2, depth);
+        assertEquals(List.of("first", "queued-1", "queued-2"), processed);
+        assertEquals(1, processor.getOverflowCount());
+        assertEquals(1, processor.getDroppedCount());
+    }
+
+    @Test
+    public void testRunsInlineWhenFull() throws InterruptedException {
+        // Arrange
+        processor = new AsyncSpanProcessor(next(true), 2, AsyncSpanProcessor.FullPolicy.INLINE);
+        processor.onEnd(endedSpan("first"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // Act
+        processor.onEnd(endedSpan("queued-1"));
+        processor.onEnd(endedSpan("queued-2"));
+        processor.onEnd(endedSpan("overflow"));
+        release.countDown();
+        processor.forceFlush();
+
+        // Assert
+        assertEquals(List.of("overflow", "first", "queued-1", "queued-2"), processed);
+        assertEquals(Thread.currentThread().getName(), threads.get(0));
+        assertEquals(1, processor.getOverflowCount());
+        assertEquals(0, processor.getDroppedCount());
+    }
+
+    @Test
+    public void testWorkerSurvivesErrorsFromWrappedProcessor() {
+        // Arrange
+        processor = new AsyncSpanProcessor(failingOn("bad"), 2, AsyncSpanProcessor.FullPolicy.BLOCK);
+
+        // Act
+        processor.onEnd(endedSpan("bad"));
+        for (int i = 0; i < 20; i++) {
+            processor.onEnd(endedSpan("span-" + i));
+        }
+        processor.forceFlush();
+
+        // Assert
+        assertEquals(20, processed.size());
+        assertEquals("span-19", processed.get(19));
+        assertTrue(threads.stream().allMatch("span-filter-async"::equals));
+        assertEquals(0, processor.getQueueDepth());
+    }
+}
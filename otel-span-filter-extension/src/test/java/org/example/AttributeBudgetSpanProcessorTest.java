@@ -0,0 +1,148 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttributeBudgetSpanProcessorTest {
+    private static final AttributeKey<String> DB_STATEMENT = AttributeKey.stringKey("db.statement");
+    private static final AttributeKey<String> USER_ID = AttributeKey.stringKey("enduser.id");
+    private static final AttributeKey<String> TOKEN = AttributeKey.stringKey("auth.token");
+
+    private final List<ReadableSpan> ended = new ArrayList<>();
+    private AttributeBudgetSpanProcessor processor;
+    private SdkTracerProvider tracerProvider;
+
+    private Tracer tracer(AttributeLimits limits) {
+        SpanProcessor next = new SpanProcessor() {
+            @Override
+            public void onStart(Context parentContext, ReadWriteSpan span) {
+            }
+
+            @Override
+            public boolean isStartRequired() {
+                return false;
+            }
+
+            @Override
+            public void onEnd(ReadableSpan span) {
+                ended.add(span);
+            }
+
+            @Override
+            public boolean isEndRequired() {
+                return true;
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+        processor = new AttributeBudgetSpanProcessor(next, limits);
+        tracerProvider = SdkTracerProvider.builder().addSpanProcessor(processor).build();
+        return tracerProvider.get("test");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (tracerProvider != null) {
+            tracerProvider.close();
+        }
+    }
+
+    @Test
+    public void testPassesSpansWithinLimitsUnchanged() {
+        // Arrange
+        Tracer tracer = tracer(new AttributeLimits(1024, Map.of(
+                DB_STATEMENT.getKey(), new AttributeLimits.KeyRule(AttributeLimits.Action.TRUNCATE, 16))));
+
+        // Act
+        tracer.spanBuilder("ping").setAttribute(DB_STATEMENT, "PING").startSpan().end();
+
+        // Assert
+        assertEquals(1, ended.size());
+        assertEquals("SdkSpan", ended.get(0).getClass().getSimpleName(), "The span should not be wrapped");
+        assertEquals(0, processor.getLimitedSpanCount());
+        assertTrue(processor.getBytesSaved().isEmpty());
+    }
+
+    @Test
+    public void testAppliesKeyRules() {
+        // Arrange
+        Tracer tracer = tracer(new AttributeLimits(AttributeLimits.UNLIMITED, Map.of(
+                DB_STATEMENT.getKey(), new AttributeLimits.KeyRule(AttributeLimits.Action.TRUNCATE, 10),
+                USER_ID.getKey(), new AttributeLimits.KeyRule(AttributeLimits.Action.HASH, AttributeLimits.UNLIMITED),
+                TOKEN.getKey(), new AttributeLimits.KeyRule(AttributeLimits.Action.REDACT, AttributeLimits.UNLIMITED))));
+
+        // Act
+        tracer.spanBuilder("query")
+                .setAttribute(DB_STATEMENT, "SELECT * FROM users WHERE id = ?")
+                .setAttribute(USER_ID, "alice@example.com")
+                .setAttribute(TOKEN, "secret-token-value")
+                .setAttribute("http.response.status_code", 200L)
+                .startSpan().end();
+
+        // Assert
+        SpanData data = ended.get(0).toSpanData();
+        assertEquals("SELECT * F", data.getAttributes().get(DB_STATEMENT));
+        String hashed = data.getAttributes().get(USER_ID);
+        assertTrue(hashed.startsWith(AttributeBudgetSpanProcessor.HASH_PREFIX));
+        assertEquals(AttributeBudgetSpanProcessor.HASH_PREFIX.length() + 16, hashed.length());
+        assertEquals(AttributeBudgetSpanProcessor.REDACTED, data.getAttributes().get(TOKEN));
+        assertEquals(200L, data.getAttributes().get(AttributeKey.longKey("http.response.status_code")));
+        assertEquals("SELECT * F", ended.get(0).getAttribute(DB_STATEMENT));
+        assertEquals(1, processor.getLimitedSpanCount());
+        assertEquals(22L, processor.getBytesSaved().get(DB_STATEMENT.getKey()));
+        assertEquals(8L, processor.getBytesSaved().get(TOKEN.getKey()));
+    }
+
+    @Test
+    public void testTruncatesLargestValuesToFitBudget() {
+        // Arrange
+        Tracer tracer = tracer(new AttributeLimits(200, Map.of()));
+        String statement = "x".repeat(500);
+
+        // Act
+        tracer.spanBuilder("query")
+                .setAttribute(DB_STATEMENT, statement)
+                .setAttribute("db.system", "redis")
+                .startSpan().end();
+
+        // Assert
+        Map<AttributeKey<?>, Object> attributes = ended.get(0).toSpanData().getAttributes().asMap();
+        long size = 0;
+        for (Map.Entry<AttributeKey<?>, Object> entry : attributes.entrySet()) {
+            size += AttributeBudgetSpanProcessor.utf8Length(entry.getKey().getKey()) + AttributeBudgetSpanProcessor.valueSize(entry.getValue());
+        }
+        assertEquals(200, size);
+        assertEquals("redis", attributes.get(AttributeKey.stringKey("db.system")));
+        assertEquals(500L - 200 + "db.statement".length() + "db.system".length() + "redis".length(),
+                processor.getBytesSaved().get(DB_STATEMENT.getKey()));
+    }
+
+    @Test
+    public void testTruncatesWithoutSplittingCharacters() {
+        // Arrange
+        String value = "aé😀";
+
+        // Act & Assert
+        assertEquals("aé", AttributeBudgetSpanProcessor.truncateUtf8(value, 6));
+        assertEquals(value, AttributeBudgetSpanProcessor.truncateUtf8(value, 7));
+        assertEquals(7, AttributeBudgetSpanProcessor.utf8Length(value));
+    }
+}
@@ -0,0 +1,98 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConditionTreeTest {
+    private static final AttributeKey<String> DB_SYSTEM = AttributeKey.stringKey("db.system");
+    private static final AttributeKey<String> DB_STATEMENT = AttributeKey.stringKey("db.statement");
+    private static final AttributeKey<String> SERVER_ADDRESS = AttributeKey.stringKey("server.address");
+
+    private static Map<AttributeKey<String>, Set<String>> conditions(AttributeKey<String> key1, String pattern1,
+                                                                     AttributeKey<String> key2, String pattern2) {
+        Map<AttributeKey<String>, Set<String>> conditions = new LinkedHashMap<>();
+        conditions.put(key1, Set.of(pattern1));
+        conditions.put(key2, Set.of(pattern2));
+        return conditions;
+    }
+
+    @Test
+    public void testAllConditionsMustHold() {
+        // Arrange
+        ConditionTree tree = ConditionTree.compile(List.of(conditions(DB_SYSTEM, "^redis$", DB_STATEMENT, "^PING")));
+
+        // Act
+        int ping = tree.firstMatch(Attributes.of(DB_SYSTEM, "redis", DB_STATEMENT, "PING"));
+        int get = tree.firstMatch(Attributes.of(DB_SYSTEM, "redis", DB_STATEMENT, "GET key"));
+        int otherSystem = tree.firstMatch(Attributes.of(DB_SYSTEM, "mysql", DB_STATEMENT, "PING"));
+        int missingAttribute = tree.firstMatch(Attributes.of(DB_STATEMENT, "PING"));
+
+        // Assert
+        assertEquals(0, ping);
+        assertEquals(AttributeRuleMatcher.NO_MATCH, get);
+        assertEquals(AttributeRuleMatcher.NO_MATCH, otherSystem);
+        assertEquals(AttributeRuleMatcher.NO_MATCH, missingAttribute);
+    }
+
+    @Test
+    public void testSharedConditionsAreCompiledOnce() {
+        // Arrange
+        List<Map<AttributeKey<String>, Set<String>>> rules = List.of(
+                conditions(DB_SYSTEM, "^redis$", DB_STATEMENT, "^PING"),
+                conditions(DB_SYSTEM, "^redis$", DB_STATEMENT, "^(INFO|CLIENT) .*"),
+                conditions(DB_SYSTEM, "^redis$", SERVER_ADDRESS, ".*"));
+
+        // Act
+        ConditionTree tree = ConditionTree.compile(rules);
+
+        // Assert
+        assertEquals(4, tree.getConditionCount());
+        assertEquals(1, tree.firstMatch(Attributes.of(DB_SYSTEM, "redis", DB_STATEMENT, "INFO server")));
+        assertEquals(2, tree.firstMatch(Attributes.of(DB_SYSTEM, "redis", DB_STATEMENT, "GET key", SERVER_ADDRESS, "cache")));
+        assertEquals(AttributeRuleMatcher.NO_MATCH, tree.firstMatch(Attributes.of(DB_SYSTEM, "redis", DB_STATEMENT, "GET key")));
+    }
+
+    @Test
+    public void testInvalidPatternIsRejected() {
+        // Arrange
+        List<Map<AttributeKey<String>, Set<String>>> rules = List.of(conditions(DB_SYSTEM, "^redis$", DB_STATEMENT, "^(PING"));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> ConditionTree.compile(rules));
+    }
+
+    @Test
+    public void testSamplerDropsAllOfRulesAlongsideAnyOfRules() {
+        // Arrange
+        Sampler sampler = RuleBasedRoutingSampler.builder(SpanKind.CLIENT, Sampler.alwaysOn())
+                .drop(SERVER_ADDRESS, "^internal$")
+                .dropAll(conditions(DB_SYSTEM, "^redis$", DB_STATEMENT, "^PING"))
+                .build();
+
+        // Act
+        SamplingDecision ping = sampler.shouldSample(Context.root(), "0af7651916cd43dd8448eb211c80319c", "PING", SpanKind.CLIENT,
+                Attributes.of(DB_SYSTEM, "redis", DB_STATEMENT, "PING"), Collections.emptyList()).getDecision();
+        SamplingDecision get = sampler.shouldSample(Context.root(), "0af7651916cd43dd8448eb211c80319c", "GET", SpanKind.CLIENT,
+                Attributes.of(DB_SYSTEM, "redis", DB_STATEMENT, "GET key"), Collections.emptyList()).getDecision();
+        SamplingDecision internal = sampler.shouldSample(Context.root(), "0af7651916cd43dd8448eb211c80319c", "GET", SpanKind.CLIENT,
+                Attributes.of(DB_SYSTEM, "redis", SERVER_ADDRESS, "internal"), Collections.emptyList()).getDecision();
+
+        // Assert
+        assertEquals(SamplingDecision.DROP, ping);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, get);
+        assertEquals(SamplingDecision.DROP, internal);
+    }
+}
@@ -0,0 +1,113 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DecisionAuditLogTest {
+    private final StringWriter out = new StringWriter();
+
+    private DecisionAuditLog log(int bufferSize) {
+        return new DecisionAuditLog(bufferSize, 1, new BufferedWriter(out), false);
+    }
+
+    private List<String> spanNames() {
+        return Arrays.stream(out.toString().split(System.lineSeparator()))
+                .filter(line -> !line.isEmpty())
+                .map(line -> line.substring(line.indexOf("span=\"") + 6, line.indexOf("\" decision=")))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void testDrainWritesRecordsInOrder() {
+        // Arrange
+        DecisionAuditLog log = log(8);
+        log.record("trace-1", "GET /", "DROP", "rule-a");
+        log.record("trace-2", "GET /users", "EXPORT", null);
+
+        // Act
+        int drained = log.drain();
+
+        // Assert
+        assertEquals(2, drained);
+        assertEquals(List.of("GET /", "GET /users"), spanNames());
+        assertTrue(out.toString().contains("traceId=trace-1 span=\"GET /\" decision=DROP rule=rule-a"));
+        assertEquals(0, log.drain());
+    }
+
+    @Test
+    public void testCountsRecordsDroppedWhenFull() {
+        // Arrange
+        DecisionAuditLog log = log(4);
+
+        // Act
+        for (int i = 0; i < 6; i++) {
+            log.record("trace", "span-" + i, "DROP", null);
+        }
+        int drained = log.drain();
+
+        // Assert
+        assertEquals(4, drained);
+        assertEquals(2, log.getDroppedCount());
+        assertEquals(List.of("span-0", "span-1", "span-2", "span-3"), spanNames());
+    }
+
+    @Test
+    public void testReusesSlotsAfterWrappingAround() {
+        // Arrange
+        DecisionAuditLog log = log(4);
+        for (int i = 0; i < 3; i++) {
+            log.record("trace", "span-" + i, "DROP", null);
+        }
+        log.drain();
+
+        // Act
+        for (int i = 3; i < 7; i++) {
+            log.record("trace", "span-" + i, "DROP", null);
+        }
+        int drained = log.drain();
+
+        // Assert
+        assertEquals(4, drained);
+        assertEquals(0, log.getDroppedCount());
+        assertEquals(List.of("span-0", "span-1", "span-2", "span-3", "span-4", "span-5", "span-6"), spanNames());
+    }
+
+    @Test
+    public void testCloseDrainsAndStopsRecording() {
+        // Arrange
+        DecisionAuditLog log = log(4);
+        log.record("trace", "before", "DROP", null);
+
+        // Act
+        log.close();
+        log.record("trace", "after", "DROP", null);
+        log.close();
+
+        // Assert
+        assertEquals(List.of("before"), spanNames());
+        assertEquals(0, log.drain());
+    }
+
+    @Test
+    public void testBackgroundThreadDrainsOnClose() {
+        // Arrange
+        DecisionAuditLog log = new DecisionAuditLog(16, 1, new BufferedWriter(out));
+        for (int i = 0; i < 10; i++) {
+            log.record("trace", "span-" + i, "EXPORT", null);
+        }
+
+        // Act
+        log.close();
+
+        // Assert
+        assertEquals(10, spanNames().size());
+        assertEquals(0, log.getDroppedCount());
+    }
+}
@@ -0,0 +1,152 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskSpoolTest {
+    // room for three 24 byte records per segment
+    private static final int SEGMENT_BYTES = DiskSpool.HEADER_BYTES + 3 * (DiskSpool.RECORD_OVERHEAD + 24);
+
+    @TempDir
+    Path directory;
+
+    private static byte[] record(int i) {
+        return String.format("record-%017d", i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String read(DiskSpool spool) {
+        byte[] record = spool.peek();
+        if (record == null) {
+            return null;
+        }
+        spool.commit();
+        return new String(record, StandardCharsets.UTF_8);
+    }
+
+    private static void awaitDiskBytes(DiskSpool spool, long bytes) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (spool.getDiskBytes() != bytes && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(bytes, spool.getDiskBytes());
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    public void testReadsRecordsInOrderAcrossSegments() throws IOException {
+        // Arrange
+        DiskSpool spool = new DiskSpool(directory, SEGMENT_BYTES, 10L * SEGMENT_BYTES);
+
+        // Act
+        for (int i = 0; i < 7; i++) {
+            assertTrue(spool.append(record(i)));
+        }
+        long segmentsWritten = segmentFiles();
+
+        // Assert
+        assertEquals(3, segmentsWritten);
+        assertEquals(7, spool.getPendingCount());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(new String(record(i), StandardCharsets.UTF_8), read(spool));
+        }
+        assertNull(spool.peek());
+        assertTrue(spool.isEmpty());
+        assertEquals(1, segmentFiles(), "Read segments should be deleted, except the one appended to");
+    }
+
+    @Test
+    public void testResumesAfterReopen() throws IOException {
+        // Arrange
+        DiskSpool spool = new DiskSpool(directory, SEGMENT_BYTES, 10L * SEGMENT_BYTES);
+        for (int i = 0; i < 5; i++) {
+            spool.append(record(i));
+        }
+        read(spool);
+        read(spool);
+        spool.close();
+
+        // Act
+        DiskSpool reopened = new DiskSpool(directory, SEGMENT_BYTES, 10L * SEGMENT_BYTES);
+        reopened.append(record(5));
+
+        // Assert
+        assertEquals(4, reopened.getPendingCount());
+        for (int i = 2; i < 6; i++) {
+            assertEquals(new String(record(i), StandardCharsets.UTF_8), read(reopened));
+        }
+        assertNull(reopened.peek());
+    }
+
+    @Test
+    public void testEvictsOldestSegmentAboveQuota() throws IOException {
+        // Arrange
+        DiskSpool spool = new DiskSpool(directory, SEGMENT_BYTES, 2L * SEGMENT_BYTES);
+
+        // Act
+        for (int i = 0; i < 7; i++) {
+            spool.append(record(i));
+        }
+
+        // Assert
+        assertEquals(2L * SEGMENT_BYTES, spool.getDiskBytes());
+        assertEquals(1, spool.getEvictedSegmentCount());
+        assertEquals(3, spool.getEvictedRecordCount());
+        assertEquals(new String(record(3), StandardCharsets.UTF_8), read(spool));
+        assertFalse(spool.append(new byte[SEGMENT_BYTES]), "A record larger than a segment should be rejected");
+        assertEquals(1, spool.getRejectedCount());
+    }
+
+    @Test
+    public void testAppendsIntoPreallocatedSegments() throws IOException, InterruptedException {
+        // Arrange
+        DiskSpool spool = new DiskSpool(directory, SEGMENT_BYTES, 10L * SEGMENT_BYTES, true);
+        awaitDiskBytes(spool, SEGMENT_BYTES);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            assertTrue(spool.append(record(i)));
+        }
+        awaitDiskBytes(spool, 2L * SEGMENT_BYTES);
+        assertTrue(spool.append(record(3)));
+        awaitDiskBytes(spool, 3L * SEGMENT_BYTES);
+
+        // Assert
+        assertEquals(3, segmentFiles(), "Two segments in use and the next one ready");
+        for (int i = 0; i < 4; i++) {
+            assertEquals(new String(record(i), StandardCharsets.UTF_8), read(spool));
+        }
+        assertEquals(2, segmentFiles(), "The read segment should be deleted");
+        spool.close();
+        assertEquals(1, segmentFiles(), "The unused spare should be deleted on close");
+    }
+
+    @Test
+    public void testClosedSpoolRejectsRecords() throws IOException {
+        // Arrange
+        DiskSpool spool = new DiskSpool(directory, SEGMENT_BYTES, 10L * SEGMENT_BYTES);
+        spool.append(record(0));
+
+        // Act
+        spool.close();
+
+        // Assert
+        assertThrows(IOException.class, () -> spool.append(record(1)));
+        assertNull(spool.peek());
+        DiskSpool reopened = new DiskSpool(directory, SEGMENT_BYTES, 10L * SEGMENT_BYTES);
+        assertEquals(new String(record(0), StandardCharsets.UTF_8), read(reopened));
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -68,4 +69,59 @@ public class DropRuleConfigReaderTest {
         assertTrue(lmRdPatterns.contains("^/rod$"), "lm.rd should contain ^/rod$ pattern");
         assertTrue(lmRdPatterns.contains("^/cad$"), "lm.rd should contain ^/cad$ pattern");
     }
+
+    @Test
+    public void testReadRateLimitsFromYaml() {
+        // Arrange
+        DropRuleConfigReader reader = new DropRuleConfigReader();
+        Path yamlPath = Paths.get("src/test/resources/sampler-drop-config.yaml");
+
+        // Act
+        SamplerRules rules = reader.readRulesFromYaml(yamlPath);
+
+        // Assert
+        assertEquals(2, rules.getDropRules().size(), "Drop rules should be read alongside rate limits");
+        List<SamplerRules.RateLimit> serverLimits = rules.getRateLimits().get(SpanKind.SERVER);
+        assertNotNull(serverLimits, "Should have rate limits for SERVER span kind");
+        assertEquals(1, serverLimits.size(), "SERVER should have 1 rate limit");
+        SamplerRules.RateLimit rateLimit = serverLimits.get(0);
+        assertEquals(AttributeKey.stringKey("http.route"), rateLimit.attributeKey);
+        assertEquals(Set.of("^/hello$"), rateLimit.patterns);
+        assertEquals(5.0, rateLimit.tracesPerSecond);
+        assertEquals(100, rateLimit.maxBuckets);
+    }
+
+    @Test
+    public void testReadAllOfDropRulesFromYaml() {
+        // Arrange
+        DropRuleConfigReader reader = new DropRuleConfigReader();
+        Path yamlPath = Paths.get("src/test/resources/sampler-drop-config.yaml");
+
+        // Act
+        SamplerRules rules = reader.readRulesFromYaml(yamlPath);
+
+        // Assert
+        List<Map<AttributeKey<String>, Set<String>>> clientRules = rules.getAllOfDropRules().get(SpanKind.CLIENT);
+        assertNotNull(clientRules, "Should have allOf rules for CLIENT span kind");
+        assertEquals(1, clientRules.size(), "CLIENT should have 1 allOf rule");
+        assertEquals(Set.of("^redis$"), clientRules.get(0).get(AttributeKey.stringKey("db.system")));
+        assertEquals(Set.of("^PING"), clientRules.get(0).get(AttributeKey.stringKey("db.statement")));
+        assertFalse(rules.getDropRules().get(SpanKind.CLIENT).containsKey(AttributeKey.stringKey("db.system")),
+                "allOf conditions should not be merged into the OR rules");
+    }
+
+    @Test
+    public void testReadEndOfSpanRulesFromYaml() {
+        // Arrange
+        DropRuleConfigReader reader = new DropRuleConfigReader();
+        Path yamlPath = Paths.get("src/test/resources/sampler-drop-config.yaml");
+
+        // Act
+        List<SpanEndRule> rules = reader.readEndOfSpanRulesFromYaml(yamlPath);
+
+        // Assert
+        assertEquals(2, rules.size(), "The rule with an unknown type should be skipped");
+        assertEquals("SERVER duration<5000000ns http.response.status_code in [200, 299]", rules.get(0).toString());
+        assertEquals("ANY cache.hit==true", rules.get(1).toString());
+    }
 }
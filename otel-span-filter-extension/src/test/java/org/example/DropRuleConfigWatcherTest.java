@@ -0,0 +1,111 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DropRuleConfigWatcherTest {
+    private static final AttributeKey<String> URL_PATH = AttributeKey.stringKey("url.path");
+
+    @TempDir
+    Path tempDir;
+
+    private static SamplingDecision decide(Sampler sampler, String urlPath) {
+        return sampler.shouldSample(Context.root(), "0af7651916cd43dd8448eb211c80319c", "span", SpanKind.SERVER,
+                Attributes.of(URL_PATH, urlPath), Collections.emptyList()).getDecision();
+    }
+
+    private static void writeRules(Path file, String pattern) throws IOException {
+        Files.writeString(file, "rules:\n"
+                + "  drop:\n"
+                + "    - spanKind: SERVER\n"
+                + "      attributes:\n"
+                + "        - url.path:\n"
+                + "            - \"" + pattern + "\"\n");
+    }
+
+    private static SpanKindRoutingSampler samplerFor(String pattern) {
+        Map<SpanKind, Sampler> samplers = new HashMap<>();
+        samplers.put(SpanKind.SERVER, RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, pattern)
+                .build());
+        return new SpanKindRoutingSampler(samplers, Sampler.alwaysOn());
+    }
+
+    private static DropRuleConfigWatcher watcherFor(Path file, SpanKindRoutingSampler sampler) {
+        return new DropRuleConfigWatcher(file, 1000, rules -> {
+            Map<SpanKind, Sampler> samplers = new HashMap<>();
+            rules.getDropRules().forEach((spanKind, attributes) -> {
+                RuleBasedRoutingSamplerBuilder builder = RuleBasedRoutingSampler.builder(spanKind, Sampler.alwaysOn());
+                attributes.forEach((key, patterns) -> patterns.forEach(pattern -> builder.drop(key, pattern)));
+                samplers.put(spanKind, builder.build());
+            });
+            sampler.update(samplers);
+        });
+    }
+
+    @Test
+    public void testReloadSwapsInNewRules() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("sampler-drop-config.yaml");
+        SpanKindRoutingSampler sampler = samplerFor("^/health$");
+        DropRuleConfigWatcher watcher = watcherFor(file, sampler);
+        writeRules(file, "^/metrics$");
+
+        // Act
+        watcher.reload();
+
+        // Assert
+        assertEquals(1, watcher.getReloadSuccessCount());
+        assertNull(watcher.getLastReloadError());
+        assertEquals(SamplingDecision.DROP, decide(sampler, "/metrics"));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, "/health"));
+    }
+
+    @Test
+    public void testMalformedFileKeepsLastGoodRules() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("sampler-drop-config.yaml");
+        SpanKindRoutingSampler sampler = samplerFor("^/health$");
+        DropRuleConfigWatcher watcher = watcherFor(file, sampler);
+        Files.writeString(file, "rules:\n  drop: [ {spanKind: SERVER\n");
+
+        // Act
+        watcher.reload();
+
+        // Assert
+        assertEquals(1, watcher.getReloadFailureCount());
+        assertNotNull(watcher.getLastReloadError());
+        assertEquals(SamplingDecision.DROP, decide(sampler, "/health"));
+    }
+
+    @Test
+    public void testInvalidPatternKeepsLastGoodRules() throws IOException {
+        // Arrange
+        Path file = tempDir.resolve("sampler-drop-config.yaml");
+        SpanKindRoutingSampler sampler = samplerFor("^/health$");
+        DropRuleConfigWatcher watcher = watcherFor(file, sampler);
+        writeRules(file, "^/(unclosed$");
+
+        // Act
+        watcher.reload();
+
+        // Assert
+        assertEquals(1, watcher.getReloadFailureCount());
+        assertEquals(SamplingDecision.DROP, decide(sampler, "/health"));
+    }
+}
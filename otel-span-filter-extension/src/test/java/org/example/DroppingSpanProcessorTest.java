@@ -0,0 +1,139 @@
+package org.example;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DroppingSpanProcessorTest {
+    private final List<String> exported = new ArrayList<>();
+    private SpanProcessor next;
+    private DroppingSpanProcessor processor;
+    private SdkTracerProvider tracerProvider;
+    private Tracer tracer;
+
+    @BeforeEach
+    public void setUp() {
+        next = new SpanProcessor() {
+            @Override
+            public void onStart(Context parentContext, ReadWriteSpan span) {
+            }
+
+            @Override
+            public boolean isStartRequired() {
+                return false;
+            }
+
+            @Override
+            public void onEnd(ReadableSpan span) {
+                exported.add(span.getName());
+            }
+
+            @Override
+            public boolean isEndRequired() {
+                return true;
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+        processor = new DroppingSpanProcessor(next, List.of("HiTest", "debug.", "HiTest"));
+        tracerProvider = SdkTracerProvider.builder().addSpanProcessor(processor).build();
+        tracer = tracerProvider.get("test");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        tracerProvider.close();
+    }
+
+    @Test
+    public void testDropsSpansWithAnyConfiguredPrefix() {
+        // Arrange
+        tracer.spanBuilder("plain").setAttribute("http.route", "/hello").startSpan().end();
+        tracer.spanBuilder("hi").setAttribute("HiTestUser", "x").startSpan().end();
+        tracer.spanBuilder("debug").setAttribute("a", "1").setAttribute("debug.payload", "y").startSpan().end();
+        tracer.spanBuilder("almost").setAttribute("debug", "z").startSpan().end();
+
+        // Act
+        Map<String, Long> dropCounts = processor.getDropCounts();
+
+        // Assert
+        assertEquals(List.of("plain", "almost"), exported);
+        assertEquals(List.of("HiTest", "debug."), processor.getAttributeKeyPrefixes());
+        assertEquals(1L, dropCounts.get("HiTest"));
+        assertEquals(1L, dropCounts.get("debug."));
+    }
+
+    @Test
+    public void testRejectsEmptyPrefix() {
+        // Arrange
+        List<String> prefixes = List.of("HiTest", "");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new DroppingSpanProcessor(SpanProcessor.composite(), prefixes));
+    }
+
+    @Test
+    public void testDropsFastSuccessfulServerSpansByTypedRule() {
+        // Arrange
+        SpanEndRule fastSuccess = new SpanEndRule(SpanKind.SERVER, 0, TimeUnit.MILLISECONDS.toNanos(5),
+                List.of(SpanEndRule.TypedPredicate.longRange("http.response.status_code", 200, 299)));
+        DroppingSpanProcessor typedProcessor = new DroppingSpanProcessor(next, List.of(), List.of(fastSuccess), DecisionAuditLog.disabled());
+        SdkTracerProvider typedProvider = SdkTracerProvider.builder().addSpanProcessor(typedProcessor).build();
+        Tracer typedTracer = typedProvider.get("test");
+
+        // Act
+        endServerSpan(typedTracer, "fast-ok", 200L, 1);
+        endServerSpan(typedTracer, "slow-ok", 204L, 8);
+        endServerSpan(typedTracer, "fast-error", 500L, 1);
+        typedTracer.spanBuilder("fast-string").setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.response.status_code", "200").startSpan().end();
+        typedTracer.spanBuilder("fast-client").setSpanKind(SpanKind.CLIENT)
+                .setAttribute("http.response.status_code", 200L).startSpan().end();
+        typedProvider.close();
+
+        // Assert
+        assertEquals(List.of("slow-ok", "fast-error", "fast-string", "fast-client"), exported);
+        assertEquals(Map.of(fastSuccess.toString(), 1L), typedProcessor.getRuleDropCounts());
+    }
+
+    private static void endServerSpan(Tracer tracer, String name, long statusCode, long durationMillis) {
+        Span span = tracer.spanBuilder(name)
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.response.status_code", statusCode)
+                .setStartTimestamp(1, TimeUnit.SECONDS)
+                .startSpan();
+        span.end(TimeUnit.SECONDS.toMillis(1) + durationMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testRejectsInvalidTypedCondition() {
+        // Arrange
+        DropRuleConfig.TypedCondition condition = new DropRuleConfig.TypedCondition();
+        condition.setKey("http.response.status_code");
+        condition.setType("long");
+        condition.setMin("300");
+        condition.setMax("200");
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> SpanEndRule.TypedPredicate.compile(condition));
+    }
+}
@@ -0,0 +1,107 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitingSamplerTest {
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+    private static final AttributeKey<String> HTTP_ROUTE = AttributeKey.stringKey("http.route");
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static int sampled(Sampler sampler, String route, int count) {
+        int sampled = 0;
+        for (int i = 0; i < count; i++) {
+            SamplingDecision decision = sampler.shouldSample(Context.root(), TRACE_ID, "span", SpanKind.SERVER,
+                    Attributes.of(HTTP_ROUTE, route), Collections.emptyList()).getDecision();
+            if (decision == SamplingDecision.RECORD_AND_SAMPLE) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Test
+    public void testLimitsEachValueAndRefills() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        RateLimitingSampler sampler = new RateLimitingSampler(HTTP_ROUTE, 5, 10, clock::get);
+
+        // Act
+        int firstSecond = sampled(sampler, "/hello", 100);
+        int otherRoute = sampled(sampler, "/world", 100);
+        clock.addAndGet(SECOND / 5);
+        int afterOneInterval = sampled(sampler, "/hello", 100);
+        clock.addAndGet(SECOND);
+        int afterOneSecond = sampled(sampler, "/hello", 100);
+
+        // Assert
+        assertEquals(5, firstSecond);
+        assertEquals(5, otherRoute);
+        assertEquals(1, afterOneInterval);
+        assertEquals(5, afterOneSecond);
+    }
+
+    @Test
+    public void testValuesBeyondMaxBucketsShareOverflowBucket() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        RateLimitingSampler sampler = new RateLimitingSampler(HTTP_ROUTE, 1, 2, clock::get);
+
+        // Act
+        sampled(sampler, "/a", 1);
+        sampled(sampler, "/b", 1);
+        int firstOverflow = sampled(sampler, "/c", 1);
+        int secondOverflow = sampled(sampler, "/d", 1);
+
+        // Assert
+        assertEquals(2, sampler.getBucketCount());
+        assertEquals(1, firstOverflow);
+        assertEquals(0, secondOverflow);
+    }
+
+    @Test
+    public void testRefilledBucketsArePurgedWhenFull() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        RateLimitingSampler sampler = new RateLimitingSampler(HTTP_ROUTE, 1, 2, clock::get);
+        sampled(sampler, "/a", 1);
+        sampled(sampler, "/b", 1);
+
+        // Act
+        clock.addAndGet(2 * SECOND);
+        int sampledNewRoute = sampled(sampler, "/c", 1);
+
+        // Assert
+        assertEquals(1, sampledNewRoute);
+        assertEquals(1, sampler.getBucketCount());
+    }
+
+    @Test
+    public void testRuleBasedSamplerAppliesRateLimitAfterDropRules() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        Sampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(HTTP_ROUTE, "^/health$")
+                .customize(HTTP_ROUTE, "^/.*$", new RateLimitingSampler(HTTP_ROUTE, 2, 10, clock::get))
+                .build();
+
+        // Act
+        int health = sampled(sampler, "/health", 10);
+        int hello = sampled(sampler, "/hello", 10);
+
+        // Assert
+        assertEquals(0, health);
+        assertEquals(2, hello);
+    }
+}
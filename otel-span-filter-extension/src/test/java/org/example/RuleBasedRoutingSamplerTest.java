@@ -0,0 +1,206 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleBasedRoutingSamplerTest {
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+    private static final AttributeKey<String> URL_PATH = AttributeKey.stringKey("url.path");
+    private static final AttributeKey<String> HTTP_ROUTE = AttributeKey.stringKey("http.route");
+
+    private static SamplingDecision decide(Sampler sampler, SpanKind kind, Attributes attributes) {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "span", kind, attributes, Collections.emptyList())
+                .getDecision();
+    }
+
+    @Test
+    public void testDropsWhenAnyPatternOnKeyMatches() {
+        // Arrange
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/health$")
+                .drop(URL_PATH, "^/metrics$")
+                .drop(URL_PATH, "/internal/.*")
+                .build();
+
+        // Act & Assert
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/health")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/metrics")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/api/internal/x")));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/hello")));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.CLIENT, Attributes.of(URL_PATH, "/health")));
+    }
+
+    @Test
+    public void testFirstMatchingRuleInDeclarationOrderWins() {
+        // Arrange: "b" appears later in the value than "a", but its rule is declared first
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOff())
+                .recordAndSample(URL_PATH, "b")
+                .drop(URL_PATH, "a")
+                .build();
+
+        // Act & Assert
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "ab")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "a")));
+    }
+
+    @Test
+    public void testFirstMatchWinsAcrossAttributeKeys() {
+        // Arrange
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/health$")
+                .recordAndSample(HTTP_ROUTE, "^/health$")
+                .drop(HTTP_ROUTE, "^/mad$")
+                .recordAndSample(URL_PATH, "^/mad$")
+                .build();
+        Attributes health = Attributes.of(URL_PATH, "/health", HTTP_ROUTE, "/health");
+        Attributes mad = Attributes.of(URL_PATH, "/mad", HTTP_ROUTE, "/mad");
+
+        // Act & Assert
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, health));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, mad));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/mad")));
+    }
+
+    @Test
+    public void testPatternsWithGroupsAndBackReferences() {
+        // Arrange
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/(a|b)(c)$")
+                .drop(URL_PATH, "^/(x)\\1$")
+                .drop(URL_PATH, "^/(?<name>z)$")
+                .build();
+
+        // Act & Assert
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/bc")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/xx")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/z")));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/xy")));
+    }
+
+    @Test
+    public void testLiteralPrefixAndSuffixRules() {
+        // Arrange
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/health$")
+                .drop(URL_PATH, "^/actuator")
+                .drop(URL_PATH, "\\.js$")
+                .drop(URL_PATH, "/internal/")
+                .build();
+
+        // Act & Assert
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/health")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/health\n")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/actuator/info")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/static/app.js")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/api/internal/x")));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/healthz")));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/v1/actuator")));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/app.jsx")));
+    }
+
+    @Test
+    public void testCompiledRulesAgreeWithLinearRegexScan() {
+        // Arrange: a mix of literal, prefix, suffix and regex rules with alternating outcomes
+        String[] patterns = {"^/a$", "^/a", "b$", "/c/", "^/a/b$", "[0-9]+", "^/(x|y)$", "c", "^$", "^/a/c"};
+        String[] values = {"", "/a", "/a/", "/a/b", "/a/c/d", "/b", "/x", "/y", "/z1", "c", "/a\n", "ab\r\n"};
+        RuleBasedRoutingSamplerBuilder builder = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn());
+        for (int i = 0; i < patterns.length; i++) {
+            builder.customize(URL_PATH, patterns[i], i % 2 == 0 ? Sampler.alwaysOff() : Sampler.alwaysOn());
+        }
+        RuleBasedRoutingSampler sampler = builder.build();
+
+        for (String value : values) {
+            // Act
+            SamplingDecision actual = decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, value));
+
+            // Assert
+            SamplingDecision expected = SamplingDecision.RECORD_AND_SAMPLE;
+            for (int i = 0; i < patterns.length; i++) {
+                if (Pattern.compile(patterns[i]).matcher(value).find()) {
+                    expected = i % 2 == 0 ? SamplingDecision.DROP : SamplingDecision.RECORD_AND_SAMPLE;
+                    break;
+                }
+            }
+            assertEquals(expected, actual, "Unexpected decision for value " + value);
+        }
+    }
+
+    @Test
+    public void testDecisionCacheCountsHitsAndMisses() {
+        // Arrange
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/health$")
+                .drop(HTTP_ROUTE, "^/mad$")
+                .cacheDecisions(2)
+                .build();
+
+        // Act
+        SamplingDecision first = decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/health"));
+        SamplingDecision second = decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/health"));
+        SamplingDecision other = decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/hello"));
+        SamplingDecision otherAgain = decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/hello"));
+
+        // Assert
+        assertEquals(SamplingDecision.DROP, first);
+        assertEquals(SamplingDecision.DROP, second);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, other);
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, otherAgain);
+        assertEquals(2, sampler.getCacheHitCount(), "Repeated values should be answered by the cache");
+        assertEquals(2, sampler.getCacheMissCount(), "First sight of each value should miss");
+    }
+
+    @Test
+    public void testDecisionCacheStaysBounded() {
+        // Arrange
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/health$")
+                .cacheDecisions(8)
+                .build();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/item/" + i));
+        }
+
+        // Assert
+        assertTrue(sampler.getCacheSize() <= 8, "Cache should not grow past its size");
+        assertEquals(92, sampler.getCacheEvictionCount());
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/health")));
+    }
+
+    @Test
+    public void testAdaptiveOrderingKeepsDeclarationOrderDecisions() {
+        // Arrange: http.route rules are hotter, but url.path rules are declared first
+        RuleBasedRoutingSampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .recordAndSample(URL_PATH, "^/keep$")
+                .drop(URL_PATH, "^/health$")
+                .drop(HTTP_ROUTE, "^/health$")
+                .drop(HTTP_ROUTE, "^/metrics$")
+                .adaptiveOrdering()
+                .build();
+        for (int i = 0; i < 100; i++) {
+            decide(sampler, SpanKind.SERVER, Attributes.of(HTTP_ROUTE, "/metrics"));
+        }
+
+        // Act
+        sampler.reorderRules();
+
+        // Assert
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE,
+                decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/keep", HTTP_ROUTE, "/health")));
+        assertEquals(SamplingDecision.DROP,
+                decide(sampler, SpanKind.SERVER, Attributes.of(URL_PATH, "/health", HTTP_ROUTE, "/metrics")));
+        assertEquals(SamplingDecision.DROP, decide(sampler, SpanKind.SERVER, Attributes.of(HTTP_ROUTE, "/metrics")));
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE, decide(sampler, SpanKind.SERVER, Attributes.of(HTTP_ROUTE, "/hello")));
+    }
+}
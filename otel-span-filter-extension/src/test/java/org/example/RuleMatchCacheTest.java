@@ -0,0 +1,64 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleMatchCacheTest {
+
+    @Test
+    public void testHotKeySurvivesStreamOfUniqueMisses() {
+        // Arrange
+        RuleMatchCache cache = new RuleMatchCache(8);
+        cache.put("/hello", 3);
+
+        // Act & Assert
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(3, cache.get("/hello"), "hot key evicted after " + i + " misses");
+            String value = "/users/" + i;
+            assertEquals(RuleMatchCache.MISS, cache.get(value));
+            cache.put(value, AttributeRuleMatcher.NO_MATCH);
+            assertTrue(cache.size() <= 8);
+        }
+        assertEquals(10_000 - 7, cache.evictionCount());
+    }
+
+    @Test
+    public void testNewEntrySurvivesTheNextInsert() {
+        // Arrange
+        RuleMatchCache cache = new RuleMatchCache(4);
+        for (int i = 0; i < 4; i++) {
+            cache.put("old-" + i, i);
+        }
+
+        // Act
+        cache.put("new-1", 10);
+        cache.put("new-2", 11);
+
+        // Assert
+        assertEquals(10, cache.get("new-1"));
+        assertEquals(11, cache.get("new-2"));
+        assertEquals(4, cache.size());
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void testEvictsUnreferencedEntriesFirst() {
+        // Arrange
+        RuleMatchCache cache = new RuleMatchCache(3);
+        cache.put("a", 0);
+        cache.put("b", 1);
+        cache.put("c", 2);
+        cache.get("a");
+        cache.get("c");
+
+        // Act
+        cache.put("d", 3);
+
+        // Assert
+        assertEquals(RuleMatchCache.MISS, cache.get("b"));
+        assertEquals(0, cache.get("a"));
+        assertEquals(2, cache.get("c"));
+        assertEquals(3, cache.get("d"));
+    }
+}
@@ -0,0 +1,189 @@
+package org.example;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.metrics.InstrumentType;
+import io.opentelemetry.sdk.metrics.SdkMeterProvider;
+import io.opentelemetry.sdk.metrics.data.AggregationTemporality;
+import io.opentelemetry.sdk.metrics.data.HistogramPointData;
+import io.opentelemetry.sdk.metrics.data.MetricData;
+import io.opentelemetry.sdk.metrics.export.CollectionRegistration;
+import io.opentelemetry.sdk.metrics.export.MetricReader;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpanFilterMetricsTest {
+    private static final AttributeKey<String> URL_PATH = AttributeKey.stringKey("url.path");
+
+    private static void sample(Sampler sampler, SpanKind spanKind, String urlPath) {
+        sampler.shouldSample(Context.root(), "0af7651916cd43dd8448eb211c80319c", "span", spanKind,
+                Attributes.of(URL_PATH, urlPath), Collections.emptyList());
+    }
+
+    @Test
+    public void testCountsRuleMatchesDecisionsAndEvaluations() {
+        // Arrange
+        SpanFilterMetrics metrics = new SpanFilterMetrics(true, 1);
+        Sampler serverSampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/health$")
+                .drop(URL_PATH, "^/metrics$")
+                .metrics(metrics)
+                .build();
+        Sampler sampler = new SpanKindRoutingSampler(Map.of(SpanKind.SERVER, serverSampler), Sampler.alwaysOn(), metrics);
+
+        // Act
+        sample(sampler, SpanKind.SERVER, "/health");
+        sample(sampler, SpanKind.SERVER, "/health");
+        sample(sampler, SpanKind.SERVER, "/hello");
+        sample(sampler, SpanKind.CLIENT, "/health");
+
+        // Assert
+        assertEquals(2L, metrics.getRuleMatches().get("SERVER url.path=^/health$ drop"));
+        assertEquals(0L, metrics.getRuleMatches().get("SERVER url.path=^/metrics$ drop"));
+        assertEquals(2L, metrics.getDecisions().get("SERVER DROP"));
+        assertEquals(1L, metrics.getDecisions().get("SERVER RECORD_AND_SAMPLE"));
+        assertEquals(1L, metrics.getDecisions().get("CLIENT RECORD_AND_SAMPLE"));
+        assertEquals(4L, metrics.getEvaluationTimeHistogram().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    public void testDisabledMetricsCountNothing() {
+        // Arrange
+        SpanFilterMetrics metrics = SpanFilterMetrics.disabled();
+        Sampler serverSampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "^/health$")
+                .metrics(metrics)
+                .build();
+        Sampler sampler = new SpanKindRoutingSampler(Map.of(SpanKind.SERVER, serverSampler), Sampler.alwaysOn(), metrics);
+
+        // Act
+        sample(sampler, SpanKind.SERVER, "/health");
+
+        // Assert
+        assertTrue(metrics.getRuleMatches().isEmpty());
+        assertEquals(0L, metrics.getDecisions().get("SERVER DROP"));
+    }
+
+    @Test
+    public void testCreditsFirstDeclaredRuleOfMatchedSegment() {
+        // Arrange: both rules drop, so the sampler may stop at either one
+        SpanFilterMetrics metrics = new SpanFilterMetrics(true, 1);
+        Sampler sampler = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                .drop(URL_PATH, "health")
+                .drop(URL_PATH, "^/health$")
+                .metrics(metrics)
+                .build();
+
+        // Act
+        sample(sampler, SpanKind.SERVER, "/health");
+        sample(sampler, SpanKind.SERVER, "/healthz");
+
+        // Assert
+        assertEquals(2L, metrics.getRuleMatches().get("SERVER url.path=health drop"));
+        assertEquals(0L, metrics.getRuleMatches().get("SERVER url.path=^/health$ drop"));
+    }
+
+    @Test
+    public void testCountsMatchesPerRuleWhenRulesOverlap() {
+        // Arrange: drop rules on two keys and of every kind, most of them matching the same values
+        AttributeKey<String> route = AttributeKey.stringKey("http.route");
+        for (int cacheSize : new int[] {0, 16}) {
+            SpanFilterMetrics metrics = new SpanFilterMetrics(true, 1);
+            RuleBasedRoutingSamplerBuilder builder = RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn())
+                    .drop(route, "^/internal/.*")
+                    .drop(URL_PATH, "^/internal")
+                    .drop(URL_PATH, "status$")
+                    .drop(URL_PATH, "inter[a-z]+/st")
+                    .drop(URL_PATH, "^/internal/status$")
+                    .drop(URL_PATH, "(a)\\1")
+                    .metrics(metrics);
+            if (cacheSize > 0) {
+                builder.cacheDecisions(cacheSize);
+            }
+            Sampler sampler = builder.build();
+
+            // Act
+            for (int i = 0; i < 3; i++) {
+                sampler.shouldSample(Context.root(), "0af7651916cd43dd8448eb211c80319c", "span", SpanKind.SERVER,
+                        Attributes.of(URL_PATH, "/internal/status", route, "/internal/{id}"), Collections.emptyList());
+                sample(sampler, SpanKind.SERVER, "/internal/status");
+                sample(sampler, SpanKind.SERVER, "/public/status");
+                sample(sampler, SpanKind.SERVER, "/interval/stats");
+                sample(sampler, SpanKind.SERVER, "/baad");
+            }
+
+            // Assert
+            Map<String, Long> matches = metrics.getRuleMatches();
+            assertEquals(3L, matches.get("SERVER http.route=^/internal/.* drop"), "cache size " + cacheSize);
+            assertEquals(3L, matches.get("SERVER url.path=^/internal drop"), "cache size " + cacheSize);
+            assertEquals(3L, matches.get("SERVER url.path=status$ drop"), "cache size " + cacheSize);
+            assertEquals(3L, matches.get("SERVER url.path=inter[a-z]+/st drop"), "cache size " + cacheSize);
+            assertEquals(0L, matches.get("SERVER url.path=^/internal/status$ drop"), "cache size " + cacheSize);
+            assertEquals(3L, matches.get("SERVER url.path=(a)\\1 drop"), "cache size " + cacheSize);
+        }
+    }
+
+    @Test
+    public void testRecordsEvaluationDurationsIntoHistogram() {
+        // Arrange
+        SpanFilterMetrics metrics = new SpanFilterMetrics(true, 1);
+        PullingReader reader = new PullingReader();
+        SdkMeterProvider meterProvider = SdkMeterProvider.builder().registerMetricReader(reader).build();
+        metrics.bind(meterProvider.get(SpanFilterMetrics.INSTRUMENTATION_SCOPE));
+
+        // Act
+        metrics.recordEvaluation(SpanKind.SERVER, 100);
+        metrics.recordEvaluation(SpanKind.SERVER, 2_000);
+        metrics.recordEvaluation(SpanKind.SERVER, 5_000_000);
+        MetricData metric = reader.registration.collectAllMetrics().stream()
+                .filter(data -> data.getName().equals("span_filter.sampler.evaluation.duration"))
+                .findFirst()
+                .orElseThrow();
+        meterProvider.close();
+
+        // Assert
+        HistogramPointData point = metric.getHistogramData().getPoints().iterator().next();
+        assertEquals(3, point.getCount());
+        assertEquals(Arrays.stream(SpanFilterMetrics.EVALUATION_BOUNDS).mapToObj(bound -> (double) bound)
+                .collect(Collectors.toList()), point.getBoundaries());
+        List<Long> counts = point.getCounts();
+        assertEquals(1L, counts.get(0));
+        assertEquals(1L, counts.get(3));
+        assertEquals(1L, counts.get(SpanFilterMetrics.EVALUATION_BOUNDS.length));
+    }
+
+    private static final class PullingReader implements MetricReader {
+        CollectionRegistration registration;
+
+        @Override
+        public void register(CollectionRegistration registration) {
+            this.registration = registration;
+        }
+
+        @Override
+        public AggregationTemporality getAggregationTemporality(InstrumentType instrumentType) {
+            return AggregationTemporality.CUMULATIVE;
+        }
+
+        @Override
+        public CompletableResultCode forceFlush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package org.example;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpoolingSpanExporterTest {
+    private final SdkTracerProvider tracerProvider = SdkTracerProvider.builder().build();
+    private final List<byte[]> sent = new ArrayList<>();
+    private boolean collectorUp;
+    private SpoolingSpanExporter exporter;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    public void tearDown() {
+        if (exporter != null) {
+            exporter.shutdown();
+        }
+        tracerProvider.close();
+    }
+
+    private List<SpanData> batch(String name) {
+        ReadWriteSpan span = (ReadWriteSpan) tracerProvider.get("test").spanBuilder(name).startSpan();
+        span.end();
+        return List.of(span.toSpanData());
+    }
+
+    private SpanExporter delegate() {
+        return new SpanExporter() {
+            @Override
+            public CompletableResultCode export(Collection<SpanData> spans) {
+                if (!collectorUp) {
+                    return CompletableResultCode.ofFailure();
+                }
+                try {
+                    sent.add(SpoolingSpanExporter.serialize(spans));
+                } catch (IOException e) {
+                    return CompletableResultCode.ofFailure();
+                }
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode flush() {
+                return CompletableResultCode.ofSuccess();
+            }
+
+            @Override
+            public CompletableResultCode shutdown() {
+                return CompletableResultCode.ofSuccess();
+            }
+        };
+    }
+
+    @Test
+    public void testSpoolsWhileCollectorIsDownAndReplaysInOrder() throws IOException {
+        // Arrange
+        DiskSpool spool = new DiskSpool(directory, 64 * 1024, 1024 * 1024);
+        exporter = new SpoolingSpanExporter(delegate(), spool, request -> collectorUp && sent.add(request), 60_000);
+        List<SpanData> first = batch("first");
+        List<SpanData> second = batch("second");
+        List<SpanData> third = batch("third");
+
+        // Act
+        CompletableResultCode firstResult = exporter.export(first);
+        CompletableResultCode secondResult = exporter.export(second);
+        exporter.replay();
+        int sentWhileDown = sent.size();
+        collectorUp = true;
+        // still spooled, behind the batches waiting for replay
+        exporter.export(third);
+        exporter.replay();
+
+        // Assert
+        assertTrue(OtlpTraceRequestSerializer.isAvailable());
+        assertTrue(firstResult.isSuccess(), "A spooled batch counts as exported");
+        assertTrue(secondResult.isSuccess());
+        assertEquals(0, sentWhileDown);
+        assertEquals(3, sent.size());
+        assertArrayEquals(SpoolingSpanExporter.serialize(first), sent.get(0));
+        assertArrayEquals(SpoolingSpanExporter.serialize(second), sent.get(1));
+        assertArrayEquals(SpoolingSpanExporter.serialize(third), sent.get(2));
+        assertTrue(spool.isEmpty());
+
+        // the spool is empty, the next batch goes to the exporter
+        exporter.export(batch("fourth"));
+        assertEquals(4, sent.size());
+    }
+}
@@ -0,0 +1,150 @@
+package org.example;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TailSamplingSpanProcessorTest {
+    private final List<String> exported = new ArrayList<>();
+    private final AtomicLong clock = new AtomicLong();
+    private SdkTracerProvider tracerProvider;
+
+    private final SpanProcessor next = new SpanProcessor() {
+        @Override
+        public void onStart(Context parentContext, ReadWriteSpan span) {
+        }
+
+        @Override
+        public boolean isStartRequired() {
+            return false;
+        }
+
+        @Override
+        public void onEnd(ReadableSpan span) {
+            exported.add(span.getName());
+        }
+
+        @Override
+        public boolean isEndRequired() {
+            return true;
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    };
+
+    private Tracer tracer(TailSamplingSpanProcessor processor) {
+        tracerProvider = SdkTracerProvider.builder().addSpanProcessor(processor).build();
+        return tracerProvider.get("test");
+    }
+
+    private static Span child(Tracer tracer, Span parent, String name) {
+        return tracer.spanBuilder(name).setParent(Context.root().with(parent)).startSpan();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (tracerProvider != null) {
+            tracerProvider.close();
+        }
+    }
+
+    @Test
+    public void testKeepsFailedAndSlowTracesAndDropsHealthyOnes() {
+        // Arrange
+        TailSamplingSpanProcessor processor = new TailSamplingSpanProcessor(next, 10_000, 1_000, 0.0, 100, clock::get);
+        Tracer tracer = tracer(processor);
+
+        // Act
+        Span healthy = tracer.spanBuilder("healthy").startSpan();
+        child(tracer, healthy, "healthy-child").end();
+        healthy.end();
+
+        Span failed = tracer.spanBuilder("failed").startSpan();
+        child(tracer, failed, "failed-child").setStatus(StatusCode.ERROR).end();
+        failed.end();
+
+        tracer.spanBuilder("slow").setStartTimestamp(1, TimeUnit.SECONDS).startSpan().end(3, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("failed-child", "failed", "slow"), exported);
+        assertEquals(2, processor.getKeptTraceCount());
+        assertEquals(1, processor.getDroppedTraceCount());
+        assertEquals(0, processor.getBufferedSpanCount());
+    }
+
+    @Test
+    public void testDecidesTracesWithoutRootAfterDecisionWait() {
+        // Arrange
+        TailSamplingSpanProcessor processor = new TailSamplingSpanProcessor(next, 10_000, 1_000, 1.0, 100, clock::get);
+        Tracer tracer = tracer(processor);
+        Span root = tracer.spanBuilder("root").startSpan();
+        child(tracer, root, "child").end();
+
+        // Act
+        processor.decideExpired();
+        List<String> beforeWait = new ArrayList<>(exported);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        processor.decideExpired();
+        root.end();
+
+        // Assert
+        assertEquals(List.of(), beforeWait);
+        assertEquals(List.of("child", "root"), exported, "the late root follows the decision");
+        assertEquals(1, processor.getKeptTraceCount());
+    }
+
+    @Test
+    public void testEvictsOldestTracesAboveMaxBufferedSpans() {
+        // Arrange
+        TailSamplingSpanProcessor processor = new TailSamplingSpanProcessor(next, 10_000, 1_000, 1.0, 2, clock::get);
+        Tracer tracer = tracer(processor);
+        List<Span> roots = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            roots.add(tracer.spanBuilder("root-" + i).startSpan());
+        }
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            child(tracer, roots.get(i), "child-" + i).end();
+        }
+
+        // Assert
+        assertEquals(List.of("child-0"), exported);
+        assertEquals(1, processor.getEvictedTraceCount());
+        assertEquals(2, processor.getBufferedSpanCount());
+        assertEquals(2, processor.getBufferedTraceCount());
+    }
+
+    @Test
+    public void testTraceKeyParsesHexTraceId() {
+        // Arrange
+        String traceId = "0af7651916cd43dd8448eb211c80319c";
+
+        // Act
+        TraceKey key = TraceKey.fromHex(traceId);
+
+        // Assert
+        assertEquals(0x0af7651916cd43ddL, key.high);
+        assertEquals(0x8448eb211c80319cL, key.low);
+        assertEquals(traceId, key.toString());
+        assertEquals(TraceKey.fromHex(traceId.toUpperCase()), key);
+    }
+}
@@ -0,0 +1,59 @@
+package org.example;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TargetThroughputSamplerTest {
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static void sample(TargetThroughputSampler sampler, int count) {
+        for (int i = 0; i < count; i++) {
+            sampler.shouldSample(Context.root(), TRACE_ID, "span", SpanKind.SERVER, Attributes.empty(), Collections.emptyList());
+        }
+    }
+
+    @Test
+    public void testKeepsEverythingBelowTarget() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        TargetThroughputSampler sampler = new TargetThroughputSampler(100, 5, clock::get);
+
+        // Act
+        sample(sampler, 50);
+        clock.addAndGet(SECOND);
+        sample(sampler, 1);
+
+        // Assert
+        assertEquals(1.0, sampler.getRatio());
+    }
+
+    @Test
+    public void testLowersRatioUnderLoadAndRecoversWhenQuiet() {
+        // Arrange
+        AtomicLong clock = new AtomicLong();
+        TargetThroughputSampler sampler = new TargetThroughputSampler(100, 2, clock::get);
+
+        // Act: 1000 spans in the first second
+        sample(sampler, 1000);
+        clock.addAndGet(SECOND);
+        sample(sampler, 1);
+        double underLoad = sampler.getRatio();
+
+        // Act: the window slides past the spike
+        clock.addAndGet(3 * SECOND);
+        sample(sampler, 1);
+
+        // Assert
+        assertEquals(0.1, underLoad, 1e-3);
+        assertEquals(1.0, sampler.getRatio());
+    }
+}
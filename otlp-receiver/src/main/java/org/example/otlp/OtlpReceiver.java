@@ -0,0 +1,322 @@
+package org.example.otlp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A collector stand-in that receives OTLP trace exports over gRPC and over HTTP with protobuf, on
+ * the loopback interface, so that tests and benchmarks can export spans without a collector.
+ *
+ * <p>It counts the requests, spans and bytes it accepts and keeps the number of spans of each
+ * request. To act as a slow or failing collector, every request can be held for a delay before it
+ * is answered, and a share of the requests can be failed with a retryable error: {@code 503} over
+ * HTTP, {@code UNAVAILABLE} over gRPC. Requests are served by a fixed number of threads, so a
+ * delay also limits how many exports the receiver accepts at once, as a loaded collector would.
+ *
+ * <pre>{@code
+ * try (OtlpReceiver receiver = OtlpReceiver.start()) {
+ *     SpanExporter exporter = OtlpHttpSpanExporter.builder().setEndpoint(receiver.getHttpTracesEndpoint()).build();
+ *     ...
+ *     receiver.awaitSpans(100, Duration.ofSeconds(5));
+ * }
+ * }</pre>
+ */
+public final class OtlpReceiver implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(OtlpReceiver.class.getName());
+    private static final String TRACE_SERVICE = "opentelemetry.proto.collector.trace.v1.TraceService";
+    private static final String TRACES_PATH = "/v1/traces";
+    private static final byte[] EMPTY_RESPONSE = new byte[0];
+    private static final int DEFAULT_THREADS = 4;
+
+    private static final MethodDescriptor.Marshaller<byte[]> BYTES = new MethodDescriptor.Marshaller<>() {
+        @Override
+        public InputStream stream(byte[] value) {
+            return new ByteArrayInputStream(value);
+        }
+
+        @Override
+        public byte[] parse(InputStream stream) {
+            try {
+                return stream.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+    private static final MethodDescriptor<byte[], byte[]> EXPORT = MethodDescriptor.<byte[], byte[]>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName(TRACE_SERVICE, "Export"))
+            .setRequestMarshaller(BYTES)
+            .setResponseMarshaller(BYTES)
+            .build();
+
+    private final ExecutorService executor;
+    private final HttpServer httpServer;
+    private final Server grpcServer;
+
+    private volatile long delayNanos;
+    private volatile double errorRate;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong spans = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    // spans per accepted request, guarded by this
+    private int[] batchSizes = new int[64];
+    private int batchCount;
+
+    private OtlpReceiver(int httpPort, int grpcPort, int threads) throws IOException {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "otlp-receiver-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.httpServer = HttpServer.create(new InetSocketAddress(loopback, httpPort), 0);
+        httpServer.setExecutor(executor);
+        httpServer.createContext(TRACES_PATH, this::handleHttp);
+        this.grpcServer = NettyServerBuilder.forAddress(new InetSocketAddress(loopback, grpcPort))
+                .executor(executor)
+                .addService(ServerServiceDefinition.builder(TRACE_SERVICE)
+                        .addMethod(EXPORT, ServerCalls.asyncUnaryCall(this::handleGrpc))
+                        .build())
+                .build();
+        httpServer.start();
+        try {
+            grpcServer.start();
+        } catch (IOException e) {
+            httpServer.stop(0);
+            executor.shutdownNow();
+            throw e;
+        }
+        logger.log(Level.INFO, "Started OtlpReceiver: " + this);
+    }
+
+    /** Starts a receiver on ephemeral ports. */
+    public static OtlpReceiver start() throws IOException {
+        return start(0, 0, DEFAULT_THREADS);
+    }
+
+    /**
+     * Starts a receiver on the given ports, 0 for an ephemeral one, answering with the given
+     * number of threads.
+     */
+    public static OtlpReceiver start(int httpPort, int grpcPort, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        return new OtlpReceiver(httpPort, grpcPort, threads);
+    }
+
+    /** Returns the base endpoint for OTLP over HTTP, e.g. for {@code otel.exporter.otlp.endpoint}. */
+    public String getHttpEndpoint() {
+        return "http://127.0.0.1:" + httpServer.getAddress().getPort();
+    }
+
+    /** Returns the traces endpoint for OTLP over HTTP, as {@code OtlpHttpSpanExporter} expects it. */
+    public String getHttpTracesEndpoint() {
+        return getHttpEndpoint() + TRACES_PATH;
+    }
+
+    public String getGrpcEndpoint() {
+        return "http://127.0.0.1:" + grpcServer.getPort();
+    }
+
+    /** Holds every request for the given time before answering it. */
+    public void setResponseDelay(Duration delay) {
+        this.delayNanos = delay.toNanos();
+    }
+
+    /** Fails the given share of requests, from 0 to 1, with a retryable error. */
+    public void setErrorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("errorRate must be between 0 and 1");
+        }
+        this.errorRate = errorRate;
+    }
+
+    private void handleHttp(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType != null && !contentType.startsWith("application/x-protobuf")) {
+                // OTLP over HTTP with JSON is not read
+                exchange.sendResponseHeaders(415, -1);
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            byte[] request = body;
+            if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                    request = in.readAllBytes();
+                }
+            }
+            int status = receive(request, body.length);
+            exchange.getResponseHeaders().set("Content-Type", "application/x-protobuf");
+            exchange.sendResponseHeaders(status, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleGrpc(byte[] request, StreamObserver<byte[]> response) {
+        int status = receive(request, request.length);
+        if (status == 200) {
+            response.onNext(EMPTY_RESPONSE);
+            response.onCompleted();
+        } else if (status == 503) {
+            response.onError(Status.UNAVAILABLE.withDescription("injected error").asRuntimeException());
+        } else {
+            response.onError(Status.INVALID_ARGUMENT.withDescription("malformed request").asRuntimeException());
+        }
+    }
+
+    // returns the HTTP status to answer with
+    private int receive(byte[] request, int wireBytes) {
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+        try {
+            long delay = delayNanos;
+            if (delay > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            double rate = errorRate;
+            if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+                rejected.incrementAndGet();
+                return 503;
+            }
+            int count;
+            try {
+                count = OtlpTraceRequests.countSpans(request);
+            } catch (IllegalArgumentException e) {
+                logger.log(Level.WARNING, "Rejecting a malformed trace export", e);
+                return 400;
+            }
+            requests.incrementAndGet();
+            spans.addAndGet(count);
+            bytes.addAndGet(wireBytes);
+            recordBatch(count);
+            return 200;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private synchronized void recordBatch(int count) {
+        if (batchCount == batchSizes.length) {
+            batchSizes = Arrays.copyOf(batchSizes, batchCount * 2);
+        }
+        batchSizes[batchCount++] = count;
+        notifyAll();
+    }
+
+    /**
+     * Waits until at least the given number of spans have been accepted since the start or the
+     * last {@link #reset()}; returns whether they were.
+     */
+    public synchronized boolean awaitSpans(long count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (spans.get() < count) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /** Returns the number of export requests accepted. */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /** Returns the number of export requests failed on purpose. */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getSpanCount() {
+        return spans.get();
+    }
+
+    /** Returns the bytes of the accepted requests as received, compressed if they were. */
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    /** Returns the number of spans of each accepted request, in the order they were accepted. */
+    public synchronized int[] getBatchSizes() {
+        return Arrays.copyOf(batchSizes, batchCount);
+    }
+
+    /** Returns the most requests that were being answered at once. */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /** Clears the counts and batch sizes; the delay and error rate are kept. */
+    public synchronized void reset() {
+        requests.set(0);
+        rejected.set(0);
+        spans.set(0);
+        bytes.set(0);
+        maxInFlight.set(0);
+        batchCount = 0;
+    }
+
+    @Override
+    public void close() {
+        httpServer.stop(0);
+        grpcServer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String toString() {
+        return "OtlpReceiver{"
+                + "http="
+                + getHttpEndpoint()
+                + ", grpc="
+                + getGrpcEndpoint()
+                + '}';
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.otlp;
+
+/**
+ * Counts the spans in a serialized {@code ExportTraceServiceRequest}, reading the protobuf wire
+ * format directly rather than decoding the messages.
+ *
+ * <p>Only the nesting down to the spans is followed: {@code resource_spans} (field 1 of the
+ * request), their {@code scope_spans} (field 2) and the {@code spans} of those (field 2). Every
+ * other field is skipped by its wire type, and spans are counted without being read.
+ */
+final class OtlpTraceRequests {
+    private static final int VARINT = 0;
+    private static final int FIXED64 = 1;
+    private static final int LENGTH_DELIMITED = 2;
+    private static final int FIXED32 = 5;
+
+    private OtlpTraceRequests() {
+    }
+
+    /**
+     * Returns the number of spans in the request.
+     *
+     * @throws IllegalArgumentException if the bytes are not a well-formed protobuf message
+     */
+    static int countSpans(byte[] request) {
+        return count(request, 0, request.length, 0);
+    }
+
+    // depth 0 is the request, 1 a ResourceSpans, 2 a ScopeSpans
+    private static int count(byte[] bytes, int start, int end, int depth) {
+        int spans = 0;
+        int[] position = {start};
+        while (position[0] < end) {
+            long tag = readVarint(bytes, position, end);
+            int field = (int) (tag >>> 3);
+            int wireType = (int) (tag & 7);
+            switch (wireType) {
+                case VARINT:
+                    readVarint(bytes, position, end);
+                    break;
+                case FIXED64:
+                    skip(position, 8, end);
+                    break;
+                case FIXED32:
+                    skip(position, 4, end);
+                    break;
+                case LENGTH_DELIMITED:
+                    long length = readVarint(bytes, position, end);
+                    if (length < 0 || length > end - position[0]) {
+                        throw new IllegalArgumentException("Field " + field + " runs past the end of its message");
+                    }
+                    int fieldStart = position[0];
+                    int fieldEnd = fieldStart + (int) length;
+                    if (depth == 0 && field == 1) {
+                        spans += count(bytes, fieldStart, fieldEnd, 1);
+                    } else if (depth == 1 && field == 2) {
+                        spans += count(bytes, fieldStart, fieldEnd, 2);
+                    } else if (depth == 2 && field == 2) {
+                        spans++;
+                    }
+                    position[0] = fieldEnd;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported wire type " + wireType);
+            }
+        }
+        return spans;
+    }
+
+    private static long readVarint(byte[] bytes, int[] position, int end) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= end) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static void skip(int[] position, int length, int end) {
+        if (end - position[0] < length) {
+            throw new IllegalArgumentException("Truncated fixed-width field");
+        }
+        position[0] += length;
+    }
+}
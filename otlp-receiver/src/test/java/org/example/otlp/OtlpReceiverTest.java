@@ -0,0 +1,152 @@
+package org.example.otlp;
+
+import io.opentelemetry.exporter.otlp.http.trace.OtlpHttpSpanExporter;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OtlpReceiverTest {
+    private final SdkTracerProvider spanSource = SdkTracerProvider.builder().build();
+    private OtlpReceiver receiver;
+    private SdkTracerProvider tracerProvider;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        receiver = OtlpReceiver.start(0, 0, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (tracerProvider != null) {
+            tracerProvider.close();
+        }
+        spanSource.close();
+        receiver.close();
+    }
+
+    private List<SpanData> spans(int count) {
+        List<SpanData> spans = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ReadWriteSpan span = (ReadWriteSpan) spanSource.get("test").spanBuilder("span-" + i).startSpan();
+            span.end();
+            spans.add(span.toSpanData());
+        }
+        return spans;
+    }
+
+    @Test
+    public void testCountsSpansExportedOverHttp() throws InterruptedException {
+        // Arrange
+        SpanExporter exporter = OtlpHttpSpanExporter.builder().setEndpoint(receiver.getHttpTracesEndpoint()).build();
+
+        // Act
+        CompletableResultCode first = exporter.export(spans(3)).join(5, TimeUnit.SECONDS);
+        CompletableResultCode second = exporter.export(spans(5)).join(5, TimeUnit.SECONDS);
+        exporter.shutdown();
+
+        // Assert
+        assertTrue(first.isSuccess());
+        assertTrue(second.isSuccess());
+        assertTrue(receiver.awaitSpans(8, Duration.ofSeconds(5)));
+        assertEquals(2, receiver.getRequestCount());
+        assertArrayEquals(new int[] {3, 5}, receiver.getBatchSizes());
+        assertTrue(receiver.getByteCount() > 0);
+    }
+
+    @Test
+    public void testCountsSpansExportedOverGrpc() throws InterruptedException {
+        // Arrange
+        SpanExporter exporter = OtlpGrpcSpanExporter.builder().setEndpoint(receiver.getGrpcEndpoint()).build();
+
+        // Act
+        CompletableResultCode result = exporter.export(spans(4)).join(5, TimeUnit.SECONDS);
+        exporter.shutdown();
+
+        // Assert
+        assertTrue(result.isSuccess());
+        assertTrue(receiver.awaitSpans(4, Duration.ofSeconds(5)));
+        assertArrayEquals(new int[] {4}, receiver.getBatchSizes());
+    }
+
+    @Test
+    public void testInjectedErrorsFailExports() {
+        // Arrange
+        receiver.setErrorRate(1.0);
+        SpanExporter exporter = OtlpHttpSpanExporter.builder()
+                .setEndpoint(receiver.getHttpTracesEndpoint())
+                .setRetryPolicy(null)
+                .build();
+
+        // Act
+        CompletableResultCode result = exporter.export(spans(2)).join(5, TimeUnit.SECONDS);
+        exporter.shutdown();
+
+        // Assert
+        assertTrue(result.isDone());
+        assertFalse(result.isSuccess());
+        assertEquals(1, receiver.getRejectedCount());
+        assertEquals(0, receiver.getSpanCount());
+    }
+
+    @Test
+    public void testSlowReceiverMakesBatchSpanProcessorDropSpans() throws InterruptedException {
+        // Arrange
+        receiver.setResponseDelay(Duration.ofMillis(200));
+        tracerProvider = SdkTracerProvider.builder()
+                .addSpanProcessor(BatchSpanProcessor.builder(
+                                OtlpHttpSpanExporter.builder().setEndpoint(receiver.getHttpTracesEndpoint()).build())
+                        .setMaxQueueSize(16)
+                        .setMaxExportBatchSize(8)
+                        .setScheduleDelay(Duration.ofMillis(1))
+                        .build())
+                .build();
+
+        // Act
+        for (int i = 0; i < 200; i++) {
+            tracerProvider.get("test").spanBuilder("span-" + i).startSpan().end();
+        }
+        receiver.setResponseDelay(Duration.ZERO);
+        tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(receiver.getSpanCount() > 0);
+        assertTrue(receiver.getSpanCount() < 200, "the full queue should have dropped spans");
+        assertTrue(Arrays.stream(receiver.getBatchSizes()).allMatch(size -> size <= 8));
+        assertEquals(1, receiver.getMaxInFlight());
+    }
+
+    @Test
+    public void testCountsSpansInSerializedRequest() {
+        // Arrange
+        // request { resource_spans { scope_spans { spans {} spans {} } scope_spans { spans {} } } }
+        byte[] request = {
+                0x0a, 0x0c,
+                0x12, 0x04, 0x12, 0x00, 0x12, 0x00,
+                0x12, 0x02, 0x12, 0x00,
+                0x1a, 0x00
+        };
+
+        // Act
+        int spans = OtlpTraceRequests.countSpans(request);
+
+        // Assert
+        assertEquals(3, spans);
+        assertThrows(IllegalArgumentException.class, () -> OtlpTraceRequests.countSpans(new byte[] {0x0a, 0x05, 0x00}));
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.overhead;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads, over JMX, how much an application has allocated and how long it has spent collecting
+ * garbage.
+ *
+ * <p>Allocation is read from the heap rather than from the threads: what the heap holds now, plus
+ * what every collection since the meter connected has freed, as its notification reports. Per
+ * thread counters would miss virtual threads, which are not listed, and the threads that ended
+ * between two readings. Only the difference between two readings is meaningful.
+ */
+final class AllocationMeter implements AutoCloseable {
+    private static final long NOTIFICATION_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final JMXConnector connector;
+    private final MemoryMXBean memory;
+    private final List<GarbageCollectorMXBean> collectors = new ArrayList<>();
+    private final Set<String> heapPools = new HashSet<>();
+    private final LongAdder freedBytes = new LongAdder();
+    private final AtomicLong notifiedCollections = new AtomicLong();
+    // collections that happened before the listeners were added
+    private final long missedCollections;
+
+    AllocationMeter(int jmxPort) throws IOException, JMException {
+        JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + jmxPort + "/jmxrmi");
+        this.connector = JMXConnectorFactory.connect(url);
+        MBeanServerConnection connection = connector.getMBeanServerConnection();
+        this.memory = ManagementFactory.newPlatformMXBeanProxy(connection, ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
+        for (ObjectName name : connection.queryNames(new ObjectName(ManagementFactory.MEMORY_POOL_MXBEAN_DOMAIN_TYPE + ",*"), null)) {
+            MemoryPoolMXBean pool = ManagementFactory.newPlatformMXBeanProxy(connection, name.toString(), MemoryPoolMXBean.class);
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (ObjectName name : connection.queryNames(new ObjectName(ManagementFactory.GARBAGE_COLLECTOR_MXBEAN_DOMAIN_TYPE + ",*"), null)) {
+            collectors.add(ManagementFactory.newPlatformMXBeanProxy(connection, name.toString(), GarbageCollectorMXBean.class));
+            connection.addNotificationListener(name, (notification, handback) -> collected(notification), null, null);
+        }
+        this.missedCollections = collectionCount();
+    }
+
+    private void collected(Notification notification) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GcInfo gc = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()).getGcInfo();
+        long freed = 0;
+        for (String pool : heapPools) {
+            MemoryUsage before = gc.getMemoryUsageBeforeGc().get(pool);
+            MemoryUsage after = gc.getMemoryUsageAfterGc().get(pool);
+            // a pool can grow as another is promoted into it, the sum is what left the heap
+            if (before != null && after != null) {
+                freed += before.getUsed() - after.getUsed();
+            }
+        }
+        freedBytes.add(freed);
+        notifiedCollections.incrementAndGet();
+    }
+
+    /** Returns the bytes allocated since the meter connected, from the heap and the collections. */
+    long allocatedBytes() throws InterruptedException {
+        long collections;
+        long used;
+        do {
+            collections = collectionCount();
+            used = memory.getHeapMemoryUsage().getUsed();
+            // a collection in between would be counted twice or not at all
+        } while (collections != collectionCount());
+        // notifications arrive after the collection, wait for those of the collections counted
+        long deadline = System.nanoTime() + NOTIFICATION_WAIT_NANOS;
+        while (notifiedCollections.get() < collections - missedCollections && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return used + freedBytes.sum();
+    }
+
+    private long collectionCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            total += Math.max(collector.getCollectionCount(), 0);
+        }
+        return total;
+    }
+
+    long collectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            total += Math.max(collector.getCollectionTime(), 0);
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        connector.close();
+    }
+}
@@ -0,0 +1,158 @@
+package org.example.overhead;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A stand-in for Redis that answers the few commands the applications send, so that the benchmark
+ * measures tracing rather than a real server.
+ *
+ * <p>It speaks RESP2 and knows {@code PING}, {@code INCR} and {@code INCRBY}; {@code HELLO} is
+ * refused, which makes Lettuce fall back to RESP2, and {@code CLIENT} and {@code SELECT} are
+ * accepted. Each connection is served by a thread of its own.
+ */
+final class FakeRedis implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+    private final AtomicLong commands = new AtomicLong();
+    private final Thread acceptor;
+
+    FakeRedis(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.acceptor = new Thread(this::acceptLoop, "fake-redis-accept");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    long getCommandCount() {
+        return commands.get();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread connection = new Thread(() -> serve(socket), "fake-redis-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream());
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream())) {
+            List<String> command;
+            while ((command = readCommand(in)) != null) {
+                commands.incrementAndGet();
+                execute(command, out);
+                // pipelined commands are answered together
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (SocketException e) {
+            // the client went away
+        } catch (IOException e) {
+            System.err.println("Fake Redis connection failed: " + e);
+        }
+    }
+
+    private void execute(List<String> command, OutputStream out) throws IOException {
+        if (command.isEmpty()) {
+            return;
+        }
+        switch (command.get(0).toUpperCase(Locale.ROOT)) {
+            case "PING":
+                write(out, "+PONG\r\n");
+                break;
+            case "INCR":
+                write(out, ":" + counter(command.get(1)).incrementAndGet() + "\r\n");
+                break;
+            case "INCRBY":
+                write(out, ":" + counter(command.get(1)).addAndGet(Long.parseLong(command.get(2))) + "\r\n");
+                break;
+            case "CLIENT":
+            case "SELECT":
+                write(out, "+OK\r\n");
+                break;
+            default:
+                write(out, "-ERR unknown command '" + command.get(0) + "'\r\n");
+        }
+    }
+
+    private AtomicLong counter(String key) {
+        return counters.computeIfAbsent(key, k -> new AtomicLong());
+    }
+
+    // an array of bulk strings, null at the end of the stream
+    private static List<String> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        if (header.isEmpty() || header.charAt(0) != '*') {
+            // an inline command
+            List<String> inline = new ArrayList<>();
+            for (String part : header.trim().split("\\s+")) {
+                if (!part.isEmpty()) {
+                    inline.add(part);
+                }
+            }
+            return inline;
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<String> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String length = readLine(in);
+            if (length == null || length.isEmpty() || length.charAt(0) != '$') {
+                throw new IOException("Expected a bulk string, got " + length);
+            }
+            byte[] bytes = in.readNBytes(Integer.parseInt(length.substring(1)));
+            // the CRLF after the bytes
+            in.readNBytes(2);
+            command.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\r') {
+                in.read();
+                return line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static void write(OutputStream out, String reply) throws IOException {
+        out.write(reply.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.overhead;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps every latency of a run, so that the percentiles are exact rather than bucketed. The array
+ * is sized for the requests the run will send, before it starts.
+ */
+final class LatencyRecorder {
+    private final long[] latencies;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder errors = new LongAdder();
+    private long[] sorted;
+
+    LatencyRecorder(int capacity) {
+        this.latencies = new long[capacity];
+    }
+
+    void record(long nanos) {
+        int index = size.getAndIncrement();
+        if (index < latencies.length) {
+            latencies[index] = nanos;
+        }
+    }
+
+    void recordError() {
+        errors.increment();
+    }
+
+    int getCount() {
+        return Math.min(size.get(), latencies.length);
+    }
+
+    long getErrorCount() {
+        return errors.sum();
+    }
+
+    /** Returns the latency at the given quantile in nanoseconds, once the run is over. */
+    synchronized long percentile(double quantile) {
+        if (sorted == null) {
+            sorted = Arrays.copyOf(latencies, getCount());
+            Arrays.sort(sorted);
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
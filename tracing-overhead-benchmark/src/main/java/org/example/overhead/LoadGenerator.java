@@ -0,0 +1,140 @@
+package org.example.overhead;
+
+import org.example.utils.TracingUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed rate, whatever the server's latency, and measures each from the time
+ * it was due rather than the time it was sent.
+ *
+ * <p>A closed loop that waits for each response before sending the next request slows down with
+ * the server, and so never sends the requests that would have waited behind a slow one: the
+ * coordinated omission that hides stalls from the high percentiles. Here the schedule is fixed up
+ * front, every request runs on a thread of its own, and when sending falls behind the schedule,
+ * the delay counts in the latency.
+ *
+ * <p>Requests run on virtual threads on Java 21 and later, on a growing pool of platform threads
+ * otherwise. The paths are sent in turn.
+ */
+final class LoadGenerator implements AutoCloseable {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final HttpClient client;
+
+    LoadGenerator() {
+        ExecutorService virtual = TracingUtils.newVirtualThreadPerTaskExecutor();
+        this.virtualThreads = virtual != null;
+        if (virtual != null) {
+            this.executor = virtual;
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "load-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+    }
+
+    boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Sends {@code ratePerSecond} requests a second for the given duration and waits for the
+     * responses; returns the latencies per path, in the order of the paths.
+     *
+     * <p>A request still unanswered a request timeout after the last one was sent counts as an
+     * error, with its latency up to then; whatever it gets later is ignored, so that it cannot
+     * land in the results of the next run.
+     */
+    Map<String, LatencyRecorder> run(URI base, List<String> paths, int ratePerSecond, Duration duration) throws InterruptedException {
+        long total = ratePerSecond * duration.getSeconds();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        List<HttpRequest> requests = new ArrayList<>(paths.size());
+        List<LatencyRecorder> recorders = new ArrayList<>(paths.size());
+        Map<String, LatencyRecorder> results = new LinkedHashMap<>();
+        for (String path : paths) {
+            requests.add(HttpRequest.newBuilder(base.resolve(path)).timeout(REQUEST_TIMEOUT).GET().build());
+            LatencyRecorder recorder = new LatencyRecorder((int) (total / paths.size() + 1));
+            recorders.add(recorder);
+            results.put(path, recorder);
+        }
+        // set once a request is recorded, by its task or by the end of the run
+        AtomicIntegerArray settled = new AtomicIntegerArray((int) total);
+        AtomicInteger outstanding = new AtomicInteger();
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long due = start + i * intervalNanos;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = (int) i;
+            HttpRequest request = requests.get(index % paths.size());
+            LatencyRecorder recorder = recorders.get(index % paths.size());
+            outstanding.incrementAndGet();
+            executor.execute(() -> {
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (settled.compareAndSet(index, 0, 1)) {
+                        if (response.statusCode() >= 400) {
+                            recorder.recordError();
+                        }
+                        recorder.record(System.nanoTime() - due);
+                    }
+                } catch (IOException e) {
+                    if (settled.compareAndSet(index, 0, 1)) {
+                        recorder.recordError();
+                        recorder.record(System.nanoTime() - due);
+                    }
+                } catch (InterruptedException e) {
+                    // settled as timed out at the end of the run
+                    Thread.currentThread().interrupt();
+                } finally {
+                    outstanding.decrementAndGet();
+                }
+            });
+        }
+        long deadline = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long end = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            if (settled.compareAndSet(i, 0, 1)) {
+                LatencyRecorder recorder = recorders.get(i % paths.size());
+                recorder.recordError();
+                recorder.record(end - (start + i * intervalNanos));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,255 @@
+package org.example.overhead;
+
+import org.example.otlp.OtlpReceiver;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Measures what tracing costs each of the applications, end to end: each one is started in a
+ * child JVM without tracing, with every span sampled and with drop rules, and the same fixed-rate
+ * load is sent to its hello, health and metrics endpoints.
+ *
+ * <p>Redis and the collector are replaced by in-process stand-ins, {@link FakeRedis} and {@link
+ * OtlpReceiver}, which answer at once, so that the differences between runs come from the
+ * applications. Every run reports, per path, the throughput achieved and the latency percentiles
+ * free of coordinated omission (see {@link LoadGenerator}), and for the whole application the
+ * allocation rate, the time spent in GC and the OTLP bytes exported per second.
+ *
+ * <p>Settings are system properties:
+ *
+ * <ul>
+ *   <li>{@code benchmark.apps}: {@code hello-server,spring-sdk,spring-agent}
+ *   <li>{@code benchmark.tracing}: {@code none,always-on,drop-rules}
+ *   <li>{@code benchmark.rates}: requests per second, {@code 200,1000}
+ *   <li>{@code benchmark.warmup.seconds} ({@code 10}) and {@code benchmark.duration.seconds}
+ *       ({@code 30}) per rate
+ *   <li>{@code benchmark.agent.jar}, {@code benchmark.extension.jar}, {@code
+ *       benchmark.drop.rules.file}, {@code benchmark.spring.sdk.jar} and {@code
+ *       benchmark.spring.agent.jar}: where the artifacts are, relative to the project root by
+ *       default; a run whose artifact is missing is skipped
+ *   <li>{@code benchmark.jvm.args}: more arguments for the child JVMs, {@code -Xms512m -Xmx512m}
+ * </ul>
+ */
+public class OverheadBenchmark {
+    private static final int HELLO_SERVER_PORT = 8080;
+    private static final String HEADER = String.format("%-13s %-11s %6s %-18s %8s %9s %9s %9s %9s %7s %10s %7s %10s",
+            "app", "tracing", "rate", "path", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "alloc MB/s", "gc ms", "otlp KB/s");
+
+    enum App {
+        HELLO_SERVER("hello-server", "/hello", "/health", "/metrics"),
+        // spring-boot-hello-world, traced by the SDK set up in OpenTelemetryConfig
+        SPRING_SDK("spring-sdk", "/hello", "/actuator/health", "/actuator/metrics"),
+        // spring-boot-hello-world-agent, traced by the agent
+        SPRING_AGENT("spring-agent", "/hello", "/actuator/health", "/actuator/metrics");
+
+        final String id;
+        final List<String> paths;
+
+        App(String id, String... paths) {
+            this.id = id;
+            this.paths = Arrays.asList(paths);
+        }
+
+        String healthPath() {
+            return paths.get(1);
+        }
+    }
+
+    enum Tracing {
+        NONE("none"),
+        ALWAYS_ON("always-on"),
+        DROP_RULES("drop-rules");
+
+        final String id;
+
+        Tracing(String id) {
+            this.id = id;
+        }
+    }
+
+    private final Path agentJar = Paths.get(System.getProperty("benchmark.agent.jar", "opentelemetry-javaagent-2.14.0.jar"));
+    private final Path extensionJar = Paths.get(System.getProperty("benchmark.extension.jar",
+            "otel-span-filter-extension/target/otel-span-filter-extension-1.0-SNAPSHOT.jar"));
+    private final Path dropRulesFile = Paths.get(System.getProperty("benchmark.drop.rules.file",
+            "hello-server/src/main/resources/sampler-drop-config.yaml"));
+    private final Path springSdkJar = Paths.get(System.getProperty("benchmark.spring.sdk.jar",
+            "spring-boot-hello-world/target/spring-boot-2-hello-world-1.0.2-SNAPSHOT.jar"));
+    private final Path springAgentJar = Paths.get(System.getProperty("benchmark.spring.agent.jar",
+            "spring-boot-hello-world-agent/target/spring-boot-2-hello-world-1.0.2-SNAPSHOT.jar"));
+    private final List<String> jvmArgs = split(System.getProperty("benchmark.jvm.args", "-Xms512m -Xmx512m"), " ");
+    private final int redisPort = Integer.getInteger("benchmark.redis.port", 6379);
+    private final int otlpPort = Integer.getInteger("benchmark.otlp.port", 4318);
+    private final int springPort = Integer.getInteger("benchmark.spring.port", 10002);
+    private final int jmxPort = Integer.getInteger("benchmark.jmx.port", 9010);
+    private final Duration warmup = Duration.ofSeconds(Integer.getInteger("benchmark.warmup.seconds", 10));
+    private final Duration duration = Duration.ofSeconds(Integer.getInteger("benchmark.duration.seconds", 30));
+    private final Path logDirectory = Paths.get(System.getProperty("benchmark.log.dir", "target/overhead-logs"));
+
+    public static void main(String[] args) throws Exception {
+        List<App> apps = split(System.getProperty("benchmark.apps", "hello-server,spring-sdk,spring-agent"), ",").stream()
+                .map(id -> Arrays.stream(App.values()).filter(app -> app.id.equals(id)).findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown app: " + id)))
+                .collect(Collectors.toList());
+        List<Tracing> tracings = split(System.getProperty("benchmark.tracing", "none,always-on,drop-rules"), ",").stream()
+                .map(id -> Arrays.stream(Tracing.values()).filter(tracing -> tracing.id.equals(id)).findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown tracing: " + id)))
+                .collect(Collectors.toList());
+        List<Integer> rates = split(System.getProperty("benchmark.rates", "200,1000"), ",").stream()
+                .map(Integer::parseInt)
+                .collect(Collectors.toList());
+        new OverheadBenchmark().run(apps, tracings, rates);
+    }
+
+    void run(List<App> apps, List<Tracing> tracings, List<Integer> rates) throws Exception {
+        Files.createDirectories(logDirectory);
+        try (FakeRedis redis = new FakeRedis(redisPort);
+             OtlpReceiver receiver = OtlpReceiver.start(otlpPort, 0, 4);
+             LoadGenerator load = new LoadGenerator()) {
+            System.out.println("Sending requests on " + (load.usesVirtualThreads() ? "virtual threads" : "platform threads"));
+            System.out.println(HEADER);
+            for (App app : apps) {
+                for (Tracing tracing : tracings) {
+                    String skipped = unavailable(app, tracing);
+                    if (skipped != null) {
+                        System.out.printf("%-13s %-11s skipped: %s%n", app.id, tracing.id, skipped);
+                        continue;
+                    }
+                    runApp(app, tracing, rates, load, receiver);
+                }
+            }
+            System.out.println("Fake Redis answered " + redis.getCommandCount() + " commands");
+        }
+    }
+
+    private void runApp(App app, Tracing tracing, List<Integer> rates, LoadGenerator load, OtlpReceiver receiver) throws Exception {
+        URI base = URI.create("http://localhost:" + (app == App.HELLO_SERVER ? HELLO_SERVER_PORT : springPort));
+        Path log = logDirectory.resolve(app.id + "-" + tracing.id + ".log");
+        try (AppProcess process = AppProcess.start(command(app, tracing), log)) {
+            process.awaitReady(base.resolve(app.healthPath()));
+            try (AllocationMeter meter = new AllocationMeter(jmxPort)) {
+                for (int rate : rates) {
+                    load.run(base, app.paths, rate, warmup);
+                    long allocated = meter.allocatedBytes();
+                    long collecting = meter.collectionMillis();
+                    long exported = receiver.getByteCount();
+                    long start = System.nanoTime();
+                    Map<String, LatencyRecorder> results = load.run(base, app.paths, rate, duration);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    double allocationRate = (meter.allocatedBytes() - allocated) / seconds / (1024 * 1024);
+                    long gcMillis = meter.collectionMillis() - collecting;
+                    double exportRate = (receiver.getByteCount() - exported) / seconds / 1024;
+                    for (Map.Entry<String, LatencyRecorder> result : results.entrySet()) {
+                        LatencyRecorder latencies = result.getValue();
+                        System.out.printf(Locale.ROOT, "%-13s %-11s %6d %-18s %8.1f %9.3f %9.3f %9.3f %9.3f %7d %10.1f %7d %10.1f%n",
+                                app.id, tracing.id, rate, result.getKey(),
+                                latencies.getCount() / seconds,
+                                millis(latencies.percentile(0.5)),
+                                millis(latencies.percentile(0.99)),
+                                millis(latencies.percentile(0.999)),
+                                millis(latencies.percentile(1.0)),
+                                latencies.getErrorCount(),
+                                allocationRate, gcMillis, exportRate);
+                    }
+                }
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    // why the run cannot be made, null if it can
+    private String unavailable(App app, Tracing tracing) {
+        if (app == App.SPRING_SDK && tracing == Tracing.ALWAYS_ON) {
+            return "the application always installs its own drop rule for /actuator";
+        }
+        List<Path> needed = new ArrayList<>();
+        if (app == App.SPRING_SDK) {
+            needed.add(springSdkJar);
+        } else if (app == App.SPRING_AGENT) {
+            needed.add(springAgentJar);
+        }
+        if (tracing != Tracing.NONE && app != App.SPRING_SDK) {
+            needed.add(agentJar);
+            if (tracing == Tracing.DROP_RULES || app == App.HELLO_SERVER) {
+                needed.add(extensionJar);
+            }
+        }
+        if (tracing == Tracing.DROP_RULES && app != App.SPRING_SDK) {
+            needed.add(dropRulesFile);
+        }
+        for (Path path : needed) {
+            if (!Files.exists(path)) {
+                return path + " not found";
+            }
+        }
+        return null;
+    }
+
+    List<String> command(App app, Tracing tracing) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.add("-Dcom.sun.management.jmxremote.port=" + jmxPort);
+        command.add("-Dcom.sun.management.jmxremote.rmi.port=" + jmxPort);
+        command.add("-Dcom.sun.management.jmxremote.authenticate=false");
+        command.add("-Dcom.sun.management.jmxremote.ssl=false");
+        command.add("-Djava.rmi.server.hostname=localhost");
+        if (tracing != Tracing.NONE) {
+            if (app != App.SPRING_SDK) {
+                command.add("-javaagent:" + agentJar.toAbsolutePath());
+                if (tracing == Tracing.DROP_RULES || app == App.HELLO_SERVER) {
+                    command.add("-Dotel.javaagent.extensions=" + extensionJar.toAbsolutePath());
+                }
+                if (tracing == Tracing.DROP_RULES) {
+                    command.add("-Dotel.traces.sampler=RuleBasedSamplerProvider");
+                    command.add("-Drule.sampler.drop.conf.file=" + dropRulesFile.toAbsolutePath());
+                } else {
+                    command.add("-Dotel.traces.sampler=always_on");
+                }
+            }
+            command.add("-Dotel.service.name=" + app.id);
+            command.add("-Dotel.exporter.otlp.endpoint=http://localhost:" + otlpPort);
+            command.add("-Dotel.exporter.otlp.protocol=http/protobuf");
+            command.add("-Dotel.metrics.exporter=none");
+            command.add("-Dotel.logs.exporter=none");
+        } else if (app == App.SPRING_SDK) {
+            command.add("-Dotel.sdk.disabled=true");
+        }
+        switch (app) {
+            case HELLO_SERVER:
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add("org.example.HelloServer");
+                break;
+            case SPRING_SDK:
+            case SPRING_AGENT:
+                command.add("-Dserver.port=" + springPort);
+                command.add("-Dmanagement.endpoints.web.exposure.include=health,metrics");
+                command.add("-jar");
+                command.add((app == App.SPRING_SDK ? springSdkJar : springAgentJar).toAbsolutePath().toString());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown app: " + app);
+        }
+        return command;
+    }
+
+    private static List<String> split(String value, String separator) {
+        return Arrays.stream(value.split(separator))
+                .map(String::trim)
+                .filter(part -> !part.isEmpty())
+                .collect(Collectors.toList());
+    }
+}